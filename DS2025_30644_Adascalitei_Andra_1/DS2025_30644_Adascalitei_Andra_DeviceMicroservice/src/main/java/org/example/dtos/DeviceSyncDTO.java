@@ -12,4 +12,5 @@ public class DeviceSyncDTO {
     private Long deviceId;
     private String deviceName;
     private Long userId;
+    private Double maxConsumption;
 }
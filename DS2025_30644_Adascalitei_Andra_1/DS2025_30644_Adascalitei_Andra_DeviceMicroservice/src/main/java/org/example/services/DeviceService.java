@@ -52,7 +52,8 @@ public class DeviceService {
         device = deviceRepository.save(device);
         
 
-        syncPublisherService.publishDeviceCreated(device.getId(), device.getName(), device.getUserId());
+        syncPublisherService.publishDeviceCreated(device.getId(), device.getName(), device.getUserId(),
+            device.getMaxConsumption());
         
         return device.getId();
     }
@@ -73,7 +74,8 @@ public class DeviceService {
         deviceRepository.save(device);
         
 
-        syncPublisherService.publishDeviceUpdated(device.getId(), device.getName(), device.getUserId());
+        syncPublisherService.publishDeviceUpdated(device.getId(), device.getName(), device.getUserId(),
+            device.getMaxConsumption());
     }
 
     public void deleteDevice(Long id) {
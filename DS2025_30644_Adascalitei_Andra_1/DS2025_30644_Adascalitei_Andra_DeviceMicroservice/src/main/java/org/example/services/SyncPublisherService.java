@@ -17,12 +17,13 @@ public class SyncPublisherService {
     @Value("${sync.queue.name}")
     private String syncQueueName;
 
-    public void publishDeviceCreated(Long deviceId, String deviceName, Long userId) {
+    public void publishDeviceCreated(Long deviceId, String deviceName, Long userId, Double maxConsumption) {
         DeviceSyncDTO syncMessage = new DeviceSyncDTO(
             "DEVICE_CREATED",
             deviceId,
             deviceName,
-            userId
+            userId,
+            maxConsumption
         );
         
         rabbitTemplate.convertAndSend(syncQueueName, syncMessage);
@@ -30,12 +31,13 @@ public class SyncPublisherService {
             deviceName, deviceId, userId);
     }
 
-    public void publishDeviceUpdated(Long deviceId, String deviceName, Long userId) {
+    public void publishDeviceUpdated(Long deviceId, String deviceName, Long userId, Double maxConsumption) {
         DeviceSyncDTO syncMessage = new DeviceSyncDTO(
             "DEVICE_UPDATED",
             deviceId,
             deviceName,
-            userId
+            userId,
+            maxConsumption
         );
         
         rabbitTemplate.convertAndSend(syncQueueName, syncMessage);
@@ -47,6 +49,7 @@ public class SyncPublisherService {
             "DEVICE_DELETED",
             deviceId,
             null,
+            null,
             null
         );
         
@@ -59,7 +62,8 @@ public class SyncPublisherService {
             "DEVICE_USER_MAPPING",
             deviceId,
             null,
-            userId
+            userId,
+            null
         );
         
         rabbitTemplate.convertAndSend(syncQueueName, syncMessage);
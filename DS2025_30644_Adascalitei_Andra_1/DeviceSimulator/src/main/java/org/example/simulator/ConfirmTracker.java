@@ -0,0 +1,191 @@
+package org.example.simulator;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+// Publishes on one channel and tracks what the broker confirmed. ASYNC keeps at most maxInFlight
+// unconfirmed messages and matches the broker's acks to their publish times in a confirm listener.
+// BATCH publishes batchSize messages and then waits for all of their confirms at once. NONE only
+// times the basicPublish call, which says little more than that the socket buffer had room.
+public class ConfirmTracker {
+
+    public enum Mode { NONE, ASYNC, BATCH }
+
+    private final Channel channel;
+    private final Settings settings;
+    private final LatencyHistogram latencies;
+
+    // ASYNC: publish time of every unconfirmed delivery tag
+    private final ConcurrentNavigableMap<Long, Long> outstanding = new ConcurrentSkipListMap<>();
+    private final Semaphore inFlight;
+    // BATCH: publish times of the current batch, only touched by the publishing thread
+    private final long[] batchStarts;
+    private int batchCount;
+
+    private final LongAdder confirmed = new LongAdder();
+    private final LongAdder nacked = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+
+    public ConfirmTracker(Channel channel, Settings settings, LatencyHistogram latencies) throws IOException {
+        this.channel = channel;
+        this.settings = settings;
+        this.latencies = latencies;
+        this.inFlight = new Semaphore(settings.maxInFlight());
+        this.batchStarts = new long[settings.mode() == Mode.BATCH ? settings.batchSize() : 0];
+        if (settings.mode() != Mode.NONE) {
+            channel.confirmSelect();
+        }
+        if (settings.mode() == Mode.ASYNC) {
+            channel.addConfirmListener(
+                (deliveryTag, multiple) -> settle(deliveryTag, multiple, true),
+                (deliveryTag, multiple) -> settle(deliveryTag, multiple, false));
+        }
+    }
+
+    public void publish(String exchange, String routingKey, AMQP.BasicProperties properties, byte[] body)
+            throws IOException, InterruptedException {
+        switch (settings.mode()) {
+            case ASYNC:
+                while (!inFlight.tryAcquire(100, TimeUnit.MILLISECONDS)) {
+                    if (!channel.isOpen()) {
+                        throw new IOException("Channel closed with " + outstanding.size() + " unconfirmed messages");
+                    }
+                }
+                long deliveryTag = channel.getNextPublishSeqNo();
+                outstanding.put(deliveryTag, System.nanoTime());
+                try {
+                    channel.basicPublish(exchange, routingKey, properties, body);
+                } catch (IOException | RuntimeException e) {
+                    if (outstanding.remove(deliveryTag) != null) {
+                        inFlight.release();
+                    }
+                    throw e;
+                }
+                break;
+            case BATCH:
+                long batchStart = System.nanoTime();
+                channel.basicPublish(exchange, routingKey, properties, body);
+                batchStarts[batchCount++] = batchStart;
+                if (batchCount == batchStarts.length) {
+                    awaitBatch();
+                }
+                break;
+            default:
+                long start = System.nanoTime();
+                channel.basicPublish(exchange, routingKey, properties, body);
+                latencies.record(System.nanoTime() - start);
+                break;
+        }
+    }
+
+    // Waits for the confirms still outstanding, up to the confirm timeout
+    public void finish() throws InterruptedException {
+        switch (settings.mode()) {
+            case ASYNC:
+                long deadline = System.nanoTime() + settings.timeoutMs() * 1_000_000L;
+                while (!outstanding.isEmpty() && System.nanoTime() < deadline && channel.isOpen()) {
+                    Thread.sleep(10);
+                }
+                timedOut.add(outstanding.size());
+                outstanding.clear();
+                break;
+            case BATCH:
+                if (batchCount > 0 && channel.isOpen()) {
+                    awaitBatch();
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    public long confirmed() {
+        return confirmed.sum();
+    }
+
+    public long nacked() {
+        return nacked.sum();
+    }
+
+    public long timedOut() {
+        return timedOut.sum();
+    }
+
+    public int inFlight() {
+        return settings.mode() == Mode.ASYNC ? outstanding.size() : batchCount;
+    }
+
+    // Acks and nacks with multiple=true settle every tag up to and including deliveryTag
+    private void settle(long deliveryTag, boolean multiple, boolean ack) {
+        long now = System.nanoTime();
+        int settled = 0;
+        if (multiple) {
+            ConcurrentNavigableMap<Long, Long> done = outstanding.headMap(deliveryTag, true);
+            for (Map.Entry<Long, Long> entry : done.entrySet()) {
+                if (done.remove(entry.getKey()) != null) {
+                    if (ack) {
+                        latencies.record(now - entry.getValue());
+                    }
+                    settled++;
+                }
+            }
+        } else {
+            Long start = outstanding.remove(deliveryTag);
+            if (start != null) {
+                if (ack) {
+                    latencies.record(now - start);
+                }
+                settled = 1;
+            }
+        }
+        (ack ? confirmed : nacked).add(settled);
+        inFlight.release(settled);
+    }
+
+    // The broker confirms the batch as a whole, so one nack fails all of it
+    private void awaitBatch() throws InterruptedException {
+        try {
+            boolean acked = channel.waitForConfirms(settings.timeoutMs());
+            long now = System.nanoTime();
+            if (acked) {
+                for (int i = 0; i < batchCount; i++) {
+                    latencies.record(now - batchStarts[i]);
+                }
+                confirmed.add(batchCount);
+            } else {
+                nacked.add(batchCount);
+            }
+        } catch (TimeoutException e) {
+            timedOut.add(batchCount);
+        } finally {
+            batchCount = 0;
+        }
+    }
+
+    public record Settings(Mode mode, int maxInFlight, int batchSize, long timeoutMs) {
+
+        public static Settings from(Properties config) {
+            Settings settings = new Settings(
+                Mode.valueOf(config.getProperty("publish.confirms", "none").trim().toUpperCase(Locale.ROOT)),
+                Integer.parseInt(config.getProperty("publish.max-in-flight", "1000").trim()),
+                Integer.parseInt(config.getProperty("publish.batch-size", "100").trim()),
+                Long.parseLong(config.getProperty("publish.confirm-timeout-ms", "10000").trim()));
+            if (settings.maxInFlight() <= 0 || settings.batchSize() <= 0 || settings.timeoutMs() <= 0) {
+                throw new IllegalArgumentException("publish.max-in-flight, publish.batch-size and " +
+                    "publish.confirm-timeout-ms must be positive");
+            }
+            return settings;
+        }
+    }
+}
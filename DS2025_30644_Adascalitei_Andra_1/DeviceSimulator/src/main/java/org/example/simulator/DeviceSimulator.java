@@ -1,19 +1,21 @@
 package org.example.simulator;
 
-import com.google.gson.Gson;
 import com.rabbitmq.client.Channel;
 import com.rabbitmq.client.Connection;
 import com.rabbitmq.client.ConnectionFactory;
 
 import java.io.FileInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.LocalTime;
+import java.util.Locale;
 import java.util.Properties;
 import java.util.Random;
 import java.util.Scanner;
 
 public class DeviceSimulator {
     private static final String QUEUE_NAME = "data_collection_queue";
-    private static final Gson gson = new Gson();
     private static final Random random = new Random();
 
     public static void main(String[] args) {
@@ -21,10 +23,20 @@ public class DeviceSimulator {
         Properties config = new Properties();
         Long deviceId;
         String host;
+        String exchange;
+        WireFormat format;
         
         try (FileInputStream fis = new FileInputStream("config.properties")) {
             config.load(fis);
 
+            // Every mode but "single" drives many devices from this process; the mode can also be given
+            // as first argument
+            String mode = args.length > 0 ? args[0] : config.getProperty("simulator.mode", "single").trim();
+            if (!mode.equalsIgnoreCase("single")) {
+                runFleetMode(mode.toLowerCase(Locale.ROOT), config);
+                return;
+            }
+
             String deviceIdStr = config.getProperty("device.id");
             if (deviceIdStr == null || deviceIdStr.trim().isEmpty()) {
                 System.err.println("ERROR: device.id is not configured in config.properties");
@@ -34,9 +46,14 @@ public class DeviceSimulator {
             
             deviceId = Long.parseLong(deviceIdStr);
             host = config.getProperty("rabbitmq.host", "localhost");
+            exchange = config.getProperty("rabbitmq.exchange", "").trim();
+            format = WireFormat.from(config);
 
             System.out.println("  Device ID: " + deviceId);
             System.out.println("  RabbitMQ Host: " + host);
+            if (!exchange.isEmpty()) {
+                System.out.println("  Exchange: " + exchange + " (consistent hash on device id)");
+            }
         } catch (java.io.FileNotFoundException e) {
             System.err.println("ERROR: config.properties file not found!");
             System.err.println("Please create config.properties file with device.id configuration");
@@ -52,15 +69,21 @@ public class DeviceSimulator {
             return;
         }
 
-        ConnectionFactory factory = new ConnectionFactory();
-        factory.setHost(host);
-        factory.setUsername("user");
-        factory.setPassword("password");
+        ConnectionFactory factory = connectionFactory(config);
 
         try (Connection connection = factory.newConnection();
              Channel channel = connection.createChannel()) {
 
-            channel.queueDeclare(QUEUE_NAME, true, false, false, null);
+            // Sharded monitoring declares the consistent-hash exchange and its shard queues itself;
+            // the device id is the routing key, so every sample of a device lands on the same shard
+            String routingKey;
+            if (exchange.isEmpty()) {
+                channel.queueDeclare(QUEUE_NAME, true, false, false, null);
+                routingKey = QUEUE_NAME;
+            } else {
+                channel.exchangeDeclarePassive(exchange);
+                routingKey = String.valueOf(deviceId);
+            }
             
             System.out.println("\n=== Device Simulator Started ===");
             System.out.println("Device ID: " + deviceId);
@@ -72,20 +95,8 @@ public class DeviceSimulator {
             while (true) {
                 double consumption = generateConsumption(baseLoad);
                 
-                DeviceMeasurement measurement = new DeviceMeasurement(
-                    System.currentTimeMillis(),
-                    deviceId,
-                    consumption
-                );
-
-                String message = gson.toJson(measurement);
-                
-
-                com.rabbitmq.client.AMQP.BasicProperties props = new com.rabbitmq.client.AMQP.BasicProperties.Builder()
-                    .contentType("application/json")
-                    .build();
-                
-                channel.basicPublish("", QUEUE_NAME, props, message.getBytes());
+                channel.basicPublish(exchange, routingKey, format.properties(),
+                    format.encode(System.currentTimeMillis(), deviceId, consumption));
                 
                 System.out.println("Sent: " + String.format("%.2f kWh", consumption) + 
                     " at " + java.time.LocalDateTime.now().format(
@@ -100,10 +111,84 @@ public class DeviceSimulator {
         }
     }
 
+    // fleet: generated devices, replay: a recorded dataset, both with the faults of faults.profile;
+    // export: generated devices written to replay.file; verify: monitoring against fleet.ground-truth
+    private static void runFleetMode(String mode, Properties config) {
+        try {
+            switch (mode) {
+                case "fleet":
+                    new FleetSimulator(FleetSimulator.Settings.from(config),
+                        withFaults(new SyntheticSource(SyntheticSource.Settings.from(config)), config),
+                        connectionFactory(config)).run();
+                    break;
+                case "replay":
+                    Path file = replayFile(config);
+                    new FleetSimulator(FleetSimulator.Settings.from(config),
+                        withFaults(new MeasurementFile(file, MeasurementFile.formatOf(file,
+                            config.getProperty("replay.format"))), config),
+                        connectionFactory(config)).run();
+                    break;
+                case "export":
+                    export(config);
+                    break;
+                case "verify":
+                    if (!new MonitoringVerifier(MonitoringVerifier.Settings.from(config)).run()) {
+                        System.exit(1);
+                    }
+                    break;
+                default:
+                    System.err.println("ERROR: unknown simulator.mode " + mode +
+                        " (single, fleet, replay, export or verify)");
+                    System.exit(1);
+            }
+        } catch (Exception e) {
+            System.err.println("ERROR: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static MeasurementSource withFaults(MeasurementSource source, Properties config) {
+        FaultySource.Settings faults = FaultySource.Settings.from(config);
+        return faults.enabled() ? new FaultySource(source, faults) : source;
+    }
+
+    private static void export(Properties config) throws Exception {
+        SyntheticSource.Settings settings = SyntheticSource.Settings.from(config);
+        if (settings.rounds() == 0) {
+            throw new IllegalArgumentException("export needs fleet.rounds, the number of measurements per device");
+        }
+        Path file = replayFile(config);
+        MeasurementFile.Format format = MeasurementFile.formatOf(file, config.getProperty("replay.format"));
+        SyntheticSource source = new SyntheticSource(settings);
+        System.out.println("Exporting " + source.describe());
+        long start = System.nanoTime();
+        long written = MeasurementFile.write(file, format, source);
+        System.out.printf("Wrote %,d measurements to %s (%s, %,d bytes) in %.1f s%n", written, file, format,
+            Files.size(file), (System.nanoTime() - start) / 1e9);
+    }
+
+    private static Path replayFile(Properties config) {
+        String file = config.getProperty("replay.file", "").trim();
+        if (file.isEmpty()) {
+            throw new IllegalArgumentException("replay.file is not configured");
+        }
+        return Paths.get(file);
+    }
+
+    static ConnectionFactory connectionFactory(Properties config) {
+        ConnectionFactory factory = new ConnectionFactory();
+        factory.setHost(config.getProperty("rabbitmq.host", "localhost"));
+        factory.setUsername(config.getProperty("rabbitmq.username", "user"));
+        factory.setPassword(config.getProperty("rabbitmq.password", "password"));
+        return factory;
+    }
+
     private static double generateConsumption(double baseLoad) {
-        LocalTime now = LocalTime.now();
-        int hour = now.getHour();
-        
+        return generateConsumption(baseLoad, LocalTime.now().getHour(), random.nextDouble());
+    }
+
+    // noise in [0, 1) sets the +-10% variation
+    static double generateConsumption(double baseLoad, int hour, double noise) {
         double hourlyFactor;
         if (hour >= 0 && hour < 6) {
             hourlyFactor = 0.5;
@@ -117,7 +202,7 @@ public class DeviceSimulator {
             hourlyFactor = 1.0;
         }
         
-        double randomVariation = 0.9 + random.nextDouble() * 0.2;
+        double randomVariation = 0.9 + noise * 0.2;
         
         return baseLoad * hourlyFactor * randomVariation;
     }
@@ -0,0 +1,269 @@
+package org.example.simulator;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.atomic.LongAdder;
+
+// Wraps a source and injects the faults of a profile: duplicate messages, a measurement sent after
+// the device's next one, devices whose clock is off by a fixed amount, outages whose measurements are
+// held back and sent in one burst on reconnect, and gaps whose measurements are never sent. Every
+// decision is a hash of the fault seed, the device and the timestamp, so a run can be repeated.
+public class FaultySource implements MeasurementSource {
+
+    private static final long DUPLICATE = 0x6475706CL;
+    private static final long REORDER = 0x72656F72L;
+    private static final long SKEW = 0x736B6577L;
+    private static final long OUTAGE = 0x6F757467L;
+    private static final long GAP = 0x67617073L;
+
+    private final MeasurementSource source;
+    private final Settings settings;
+
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder reordered = new LongAdder();
+    private final LongAdder skewedDevices = new LongAdder();
+    private final LongAdder outages = new LongAdder();
+    private final LongAdder burstMeasurements = new LongAdder();
+    private final LongAdder gaps = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    public FaultySource(MeasurementSource source, Settings settings) {
+        this.source = source;
+        this.settings = settings;
+    }
+
+    @Override
+    public long startMillis() {
+        return source.startMillis();
+    }
+
+    @Override
+    public double messagesPerSimulatedSecond() {
+        return source.messagesPerSimulatedSecond();
+    }
+
+    @Override
+    public String describe() {
+        return source.describe() + "\nFaults: " + settings;
+    }
+
+    @Override
+    public void forEach(int worker, int workers, MeasurementHandler handler) throws Exception {
+        Map<Long, DeviceState> devices = new HashMap<>();
+        boolean[] stopped = {false};
+        source.forEach(worker, workers, (sendAt, timestamp, deviceId, value) -> {
+            DeviceState state = devices.computeIfAbsent(deviceId, this::newDeviceState);
+            long sent = timestamp + state.skewMs;
+
+            if (timestamp < state.gapUntil) {
+                dropped.increment();
+                return true;
+            }
+            if (timestamp < state.outageUntil) {
+                state.hold(sent, value);
+                return true;
+            }
+            if (state.buffered > 0 && !state.release(handler, sendAt, deviceId)) {
+                return stop(stopped);
+            }
+
+            if (roll(GAP, deviceId, timestamp) < settings.gapRate()) {
+                state.gapUntil = timestamp + settings.gapMs();
+                gaps.increment();
+                dropped.increment();
+                return true;
+            }
+            if (roll(OUTAGE, deviceId, timestamp) < settings.outageRate()) {
+                state.outageUntil = timestamp + settings.outageMs();
+                outages.increment();
+                state.hold(sent, value);
+                return true;
+            }
+            // At most one measurement per device is held back for reordering at a time
+            if (!state.reorderPending && roll(REORDER, deviceId, timestamp) < settings.reorderRate()) {
+                state.reorderPending = true;
+                state.reorderTimestamp = sent;
+                state.reorderValue = value;
+                return true;
+            }
+
+            if (!emit(handler, sendAt, sent, deviceId, value)) {
+                return stop(stopped);
+            }
+            if (state.reorderPending) {
+                state.reorderPending = false;
+                reordered.increment();
+                if (!emit(handler, sendAt, state.reorderTimestamp, deviceId, state.reorderValue)) {
+                    return stop(stopped);
+                }
+            }
+            return true;
+        });
+
+        // Whatever is still held back goes out at the end, unless the run was stopped
+        if (stopped[0]) {
+            return;
+        }
+        for (Map.Entry<Long, DeviceState> entry : devices.entrySet()) {
+            DeviceState state = entry.getValue();
+            long deviceId = entry.getKey();
+            if (state.buffered > 0 && !state.release(handler, state.timestamps[state.buffered - 1], deviceId)) {
+                return;
+            }
+            if (state.reorderPending) {
+                state.reorderPending = false;
+                reordered.increment();
+                if (!emit(handler, state.reorderTimestamp, state.reorderTimestamp, deviceId, state.reorderValue)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    public String summary() {
+        return String.format("%,d duplicates, %,d reordered, %,d skewed devices, %,d outages (%,d measurements " +
+                "sent in bursts), %,d gaps (%,d measurements never sent)", duplicates.sum(), reordered.sum(),
+            skewedDevices.sum(), outages.sum(), burstMeasurements.sum(), gaps.sum(), dropped.sum());
+    }
+
+    public Map<String, Long> counts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        counts.put("duplicates", duplicates.sum());
+        counts.put("reordered", reordered.sum());
+        counts.put("skewed-devices", skewedDevices.sum());
+        counts.put("outages", outages.sum());
+        counts.put("burst-measurements", burstMeasurements.sum());
+        counts.put("gaps", gaps.sum());
+        counts.put("dropped", dropped.sum());
+        return counts;
+    }
+
+    private boolean emit(MeasurementHandler handler, long sendAt, long timestamp, long deviceId, double value)
+            throws Exception {
+        if (!handler.accept(sendAt, timestamp, deviceId, value)) {
+            return false;
+        }
+        if (roll(DUPLICATE, deviceId, timestamp) < settings.duplicateRate()) {
+            duplicates.increment();
+            return handler.accept(sendAt, timestamp, deviceId, value);
+        }
+        return true;
+    }
+
+    private static boolean stop(boolean[] stopped) {
+        stopped[0] = true;
+        return false;
+    }
+
+    // A skewed device keeps the same offset, between -skewMs and +skewMs, for the whole run
+    private DeviceState newDeviceState(long deviceId) {
+        DeviceState state = new DeviceState();
+        if (settings.skewMs() > 0 && roll(SKEW, deviceId, 0) < settings.skewDeviceRate()) {
+            state.skewMs = Math.round((roll(SKEW, deviceId, 1) * 2 - 1) * settings.skewMs());
+            skewedDevices.increment();
+        }
+        return state;
+    }
+
+    private double roll(long fault, long deviceId, long timestamp) {
+        return SyntheticSource.unit(settings.seed() ^ fault, deviceId, timestamp);
+    }
+
+    private final class DeviceState {
+        private long skewMs;
+        private long gapUntil = Long.MIN_VALUE;
+        private long outageUntil = Long.MIN_VALUE;
+        private long[] timestamps;
+        private double[] values;
+        private int buffered;
+        private boolean reorderPending;
+        private long reorderTimestamp;
+        private double reorderValue;
+
+        private void hold(long timestamp, double value) {
+            if (timestamps == null) {
+                timestamps = new long[8];
+                values = new double[8];
+            } else if (buffered == timestamps.length) {
+                timestamps = Arrays.copyOf(timestamps, buffered * 2);
+                values = Arrays.copyOf(values, buffered * 2);
+            }
+            timestamps[buffered] = timestamp;
+            values[buffered] = value;
+            buffered++;
+        }
+
+        // The reconnect burst: every measurement of the outage at once, in their original order
+        private boolean release(MeasurementHandler handler, long sendAt, long deviceId) throws Exception {
+            int count = buffered;
+            buffered = 0;
+            for (int i = 0; i < count; i++) {
+                if (!emit(handler, sendAt, timestamps[i], deviceId, values[i])) {
+                    return false;
+                }
+            }
+            burstMeasurements.add(count);
+            if (timestamps.length > 64) {
+                timestamps = null;
+                values = null;
+            }
+            return true;
+        }
+    }
+
+    public record Settings(String profile, double duplicateRate, double reorderRate, double skewDeviceRate,
+                           long skewMs, double outageRate, long outageMs, double gapRate, long gapMs, long seed) {
+
+        public boolean enabled() {
+            return duplicateRate > 0 || reorderRate > 0 || (skewDeviceRate > 0 && skewMs > 0)
+                || outageRate > 0 || gapRate > 0;
+        }
+
+        // The profile sets the defaults, and every faults.* key overrides its own
+        public static Settings from(Properties config) {
+            String profile = config.getProperty("faults.profile", "none").trim().toLowerCase(Locale.ROOT);
+            boolean chaos = profile.equals("chaos");
+            if (!chaos && !profile.matches("none|duplicates|reorder|skew|reconnect|gaps")) {
+                throw new IllegalArgumentException("Unknown faults.profile " + profile +
+                    " (none, duplicates, reorder, skew, reconnect, gaps or chaos)");
+            }
+            String seed = config.getProperty("faults.seed", "").trim();
+            return new Settings(profile,
+                rate(config, "faults.duplicate-rate", chaos || profile.equals("duplicates") ? 0.05 : 0),
+                rate(config, "faults.reorder-rate", chaos || profile.equals("reorder") ? 0.05 : 0),
+                rate(config, "faults.skew-device-rate", chaos || profile.equals("skew") ? 0.1 : 0),
+                millis(config, "faults.skew-ms", 120_000),
+                rate(config, "faults.outage-rate", chaos || profile.equals("reconnect") ? 0.001 : 0),
+                millis(config, "faults.outage-ms", 3_600_000),
+                rate(config, "faults.gap-rate", chaos || profile.equals("gaps") ? 0.001 : 0),
+                millis(config, "faults.gap-ms", 7_200_000),
+                seed.isEmpty() ? new Random().nextLong() : Long.parseLong(seed));
+        }
+
+        private static double rate(Properties config, String key, double profileDefault) {
+            String value = config.getProperty(key, "").trim();
+            double rate = value.isEmpty() ? profileDefault : Double.parseDouble(value);
+            if (rate < 0 || rate > 1) {
+                throw new IllegalArgumentException(key + " must be between 0 and 1");
+            }
+            return rate;
+        }
+
+        private static long millis(Properties config, String key, long defaultValue) {
+            String value = config.getProperty(key, "").trim();
+            return value.isEmpty() ? defaultValue : Long.parseLong(value);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("profile %s, duplicates %.3f, reorder %.3f, skew %.3f of devices by up to %d ms, " +
+                    "outages %.4f for %d ms, gaps %.4f for %d ms, seed %d", profile, duplicateRate, reorderRate,
+                skewDeviceRate, skewMs, outageRate, outageMs, gapRate, gapMs, seed);
+        }
+    }
+}
@@ -0,0 +1,324 @@
+package org.example.simulator;
+
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.ConnectionFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// Publishes the measurements of a whole fleet of devices from one process: generated ones, or a
+// recorded dataset. The devices are split over a few publisher threads, each with a channel of its
+// own (channels must not be shared between threads) on one connection. Each measurement is sent when
+// the simulated clock, running clockSpeed times faster than the wall clock from the source's start,
+// reaches its timestamp; an optional rate cap holds the publishers back further. Publishes go through
+// a ConfirmTracker per channel, which can wait for publisher confirms. With fleet.ground-truth set,
+// every publisher also counts what it sent per device and hour, for MonitoringVerifier to check the
+// hourly totals of monitoring against.
+public class FleetSimulator {
+
+    private static final String QUEUE_NAME = "data_collection_queue";
+
+    private final Settings settings;
+    private final MeasurementSource source;
+    private final ConnectionFactory factory;
+
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final List<ConfirmTracker> trackers = new ArrayList<>();
+    private final List<LatencyHistogram> latencies = new ArrayList<>();
+    private final List<GroundTruth> groundTruths = new ArrayList<>();
+    // Simulated time of the most recent send, and how far the slowest publisher is behind its schedule
+    private final AtomicLong simulatedNow = new AtomicLong();
+    private final AtomicLong lagNanos = new AtomicLong();
+    private final CountDownLatch finished = new CountDownLatch(1);
+
+    private volatile boolean running = true;
+    private long wallStart;
+
+    public FleetSimulator(Settings settings, MeasurementSource source, ConnectionFactory factory) {
+        this.settings = settings;
+        this.source = source;
+        this.factory = factory;
+    }
+
+    public void run() {
+        System.out.println("\n=== Fleet Simulator Started ===");
+        System.out.println("Source: " + source.describe());
+        System.out.printf("Channels: %d, clock %s, rate cap %s%n", settings.channels(),
+            settings.clockSpeed() > 0 ? "x" + settings.clockSpeed() : "unpaced",
+            settings.rate() > 0 ? settings.rate() + " msg/s" : "none");
+        System.out.printf("Format: %s, confirms: %s", settings.format(), settings.confirms().mode());
+        switch (settings.confirms().mode()) {
+            case ASYNC:
+                System.out.printf(" (at most %d in flight per channel)", settings.confirms().maxInFlight());
+                break;
+            case BATCH:
+                System.out.printf(" (batches of %d)", settings.confirms().batchSize());
+                break;
+            default:
+                break;
+        }
+        System.out.println();
+        if (scheduledRate() > 0) {
+            System.out.printf("Scheduled rate: %.0f msg/s%n", scheduledRate());
+        }
+        System.out.println();
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            running = false;
+            try {
+                finished.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+
+        try (Connection connection = factory.newConnection()) {
+            List<Thread> publishers = new ArrayList<>();
+            wallStart = System.nanoTime();
+            simulatedNow.set(source.startMillis());
+            for (int i = 0; i < settings.channels(); i++) {
+                Channel channel = connection.createChannel();
+                if (settings.exchange().isEmpty()) {
+                    channel.queueDeclare(QUEUE_NAME, true, false, false, null);
+                } else {
+                    channel.exchangeDeclarePassive(settings.exchange());
+                }
+                LatencyHistogram histogram = new LatencyHistogram();
+                ConfirmTracker tracker = new ConfirmTracker(channel, settings.confirms(), histogram);
+                GroundTruth groundTruth = settings.groundTruth().isEmpty() ? null : new GroundTruth();
+                latencies.add(histogram);
+                trackers.add(tracker);
+                if (groundTruth != null) {
+                    groundTruths.add(groundTruth);
+                }
+                int worker = i;
+                Thread publisher = new Thread(() -> publish(worker, channel, tracker, groundTruth),
+                    "fleet-publisher-" + i);
+                publishers.add(publisher);
+                publisher.start();
+            }
+
+            Thread reporter = new Thread(this::report, "fleet-reporter");
+            reporter.setDaemon(true);
+            reporter.start();
+
+            long deadline = settings.durationSeconds() > 0
+                ? wallStart + TimeUnit.SECONDS.toNanos(settings.durationSeconds())
+                : Long.MAX_VALUE;
+            // A dataset or a fixed number of rounds ends on its own
+            while (running && System.nanoTime() < deadline && publishers.stream().anyMatch(Thread::isAlive)) {
+                Thread.sleep(100);
+            }
+            running = false;
+            long stopped = System.nanoTime();
+            // Publishers wait for their outstanding confirms before they exit
+            for (Thread publisher : publishers) {
+                publisher.join();
+            }
+            printSummary(stopped);
+        } catch (Exception e) {
+            System.err.println("Error: " + e.getMessage());
+            e.printStackTrace();
+        } finally {
+            running = false;
+            finished.countDown();
+        }
+    }
+
+    // Parks until each measurement is due; a publisher that fell behind sends without parking until it
+    // has caught up
+    private void publish(int worker, Channel channel, ConfirmTracker tracker, GroundTruth groundTruth) {
+        double nanosPerSimulatedMs = settings.clockSpeed() > 0 ? 1_000_000.0 / settings.clockSpeed() : 0;
+        double rateNanos = settings.rate() > 0 ? 1e9 * settings.channels() / settings.rate() : 0;
+        long[] published = {0};
+
+        try {
+            source.forEach(worker, settings.channels(), (sendAt, timestamp, deviceId, value) -> {
+                long due = wallStart + Math.max((long) ((sendAt - source.startMillis()) * nanosPerSimulatedMs),
+                    (long) (published[0] * rateNanos));
+                long wait = due - System.nanoTime();
+                if (wait < 0) {
+                    lagNanos.accumulateAndGet(-wait, Math::max);
+                }
+                while (wait > 0 && running) {
+                    LockSupport.parkNanos(wait);
+                    wait = due - System.nanoTime();
+                }
+                if (!running) {
+                    return false;
+                }
+
+                String routingKey = settings.exchange().isEmpty() ? QUEUE_NAME : String.valueOf(deviceId);
+                try {
+                    tracker.publish(settings.exchange(), routingKey, settings.format().properties(),
+                        settings.format().encode(timestamp, deviceId, value));
+                    sent.increment();
+                    if (groundTruth != null) {
+                        groundTruth.record(deviceId, timestamp, value);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                } catch (Exception e) {
+                    errors.increment();
+                    if (!channel.isOpen()) {
+                        System.err.println("Channel of " + Thread.currentThread().getName() + " closed: " + e.getMessage());
+                        return false;
+                    }
+                }
+                published[0]++;
+                simulatedNow.accumulateAndGet(sendAt, Math::max);
+                return true;
+            });
+        } catch (Exception e) {
+            errors.increment();
+            System.err.println("Reading measurements failed in " + Thread.currentThread().getName() + ": " + e.getMessage());
+        } finally {
+            try {
+                tracker.finish();
+                channel.close();
+            } catch (Exception ignored) {
+                // The connection is closed right after anyway
+            }
+        }
+    }
+
+    private void report() {
+        long intervalNanos = TimeUnit.SECONDS.toNanos(settings.reportIntervalSeconds());
+        long lastSent = 0;
+        long lastTime = wallStart;
+        while (running) {
+            LockSupport.parkNanos(intervalNanos);
+            long now = System.nanoTime();
+            long total = sent.sum();
+            System.out.printf("[%6.0f s] sent %,d (%,.0f msg/s now, %,.0f msg/s overall), simulated %s, lag %.1f s, errors %d%s%n",
+                (now - wallStart) / 1e9, total, (total - lastSent) * 1e9 / (now - lastTime),
+                total * 1e9 / (now - wallStart), simulatedTime(), lagNanos.getAndSet(0) / 1e9, errors.sum(),
+                settings.confirms().mode() == ConfirmTracker.Mode.NONE ? ""
+                    : String.format(", confirmed %,d, in flight %,d", confirmed(), inFlight()));
+            lastSent = total;
+            lastTime = now;
+        }
+    }
+
+    private void printSummary(long stopped) {
+        double seconds = (stopped - wallStart) / 1e9;
+        double confirmSeconds = (System.nanoTime() - wallStart) / 1e9;
+        long total = sent.sum();
+        System.out.println("\n=== Fleet Simulator Stopped ===");
+        System.out.printf("Sent %,d measurements in %.1f s: %,.0f msg/s%s, %d errors%n", total, seconds,
+            total / seconds, scheduledRate() > 0 ? String.format(" (scheduled %,.0f msg/s)", scheduledRate()) : "",
+            errors.sum());
+        System.out.println("Simulated time reached: " + simulatedTime());
+
+        LatencyHistogram merged = new LatencyHistogram();
+        latencies.forEach(merged::add);
+        if (settings.confirms().mode() != ConfirmTracker.Mode.NONE) {
+            long nacked = trackers.stream().mapToLong(ConfirmTracker::nacked).sum();
+            long timedOut = trackers.stream().mapToLong(ConfirmTracker::timedOut).sum();
+            System.out.printf("Confirmed %,d: %,.0f msg/s, %d nacked, %d unconfirmed after %d ms%n",
+                confirmed(), confirmed() / confirmSeconds, nacked, timedOut, settings.confirms().timeoutMs());
+        }
+        System.out.printf("%s latency over %,d messages: p50 %s, p99 %s, p999 %s, max %s, mean %s%n",
+            settings.confirms().mode() == ConfirmTracker.Mode.NONE ? "basicPublish" : "Publish-to-confirm",
+            merged.count(), millis(merged.percentile(0.5)), millis(merged.percentile(0.99)),
+            millis(merged.percentile(0.999)), millis(merged.max()), millis((long) merged.mean()));
+        if (source instanceof FaultySource faulty) {
+            System.out.println("Faults injected: " + faulty.summary());
+        }
+        if (!settings.groundTruth().isEmpty()) {
+            writeGroundTruth(Paths.get(settings.groundTruth()));
+        }
+    }
+
+    // The # lines ahead of the rows record the run: source, faults and what may spoil the totals
+    private void writeGroundTruth(Path file) {
+        long unconfirmed = trackers.stream().mapToLong(t -> t.nacked() + t.timedOut()).sum();
+        List<String> header = new ArrayList<>();
+        for (String line : source.describe().split("\n")) {
+            header.add("source: " + line);
+        }
+        header.add("sent: " + sent.sum());
+        header.add("errors: " + errors.sum());
+        header.add("nacked-or-unconfirmed: " + unconfirmed);
+        if (source instanceof FaultySource faulty) {
+            for (Map.Entry<String, Long> count : faulty.counts().entrySet()) {
+                header.add(count.getKey() + ": " + count.getValue());
+            }
+        }
+        try {
+            long hours = GroundTruth.write(file, header, groundTruths);
+            System.out.printf("Ground truth of %,d device hours written to %s%n", hours, file);
+            if (unconfirmed > 0) {
+                System.out.println("WARNING: nacked and unconfirmed messages are counted as sent, " +
+                    "so monitoring may fall short of the ground truth");
+            }
+        } catch (IOException e) {
+            System.err.println("Writing the ground truth to " + file + " failed: " + e.getMessage());
+        }
+    }
+
+    private long confirmed() {
+        return trackers.stream().mapToLong(ConfirmTracker::confirmed).sum();
+    }
+
+    private long inFlight() {
+        return trackers.stream().mapToLong(ConfirmTracker::inFlight).sum();
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.3f ms", nanos / 1e6);
+    }
+
+    // 0 when unknown: a dataset, or neither a clock nor a rate cap
+    private double scheduledRate() {
+        double clockRate = source.messagesPerSimulatedSecond() * settings.clockSpeed();
+        if (settings.rate() > 0) {
+            return clockRate > 0 ? Math.min(clockRate, settings.rate()) : settings.rate();
+        }
+        return clockRate;
+    }
+
+    private LocalDateTime simulatedTime() {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(simulatedNow.get()), ZoneId.systemDefault());
+    }
+
+    public record Settings(int channels, double clockSpeed, double rate, long durationSeconds,
+                           long reportIntervalSeconds, String exchange, ConfirmTracker.Settings confirms,
+                           String groundTruth, WireFormat format) {
+
+        // fleet.clock-speed 0 sends as fast as the rate cap and the broker allow
+        public static Settings from(Properties config) {
+            Settings settings = new Settings(
+                Integer.parseInt(config.getProperty("fleet.channels", "4").trim()),
+                Double.parseDouble(config.getProperty("fleet.clock-speed", "1").trim()),
+                Double.parseDouble(config.getProperty("fleet.rate", "0").trim()),
+                Long.parseLong(config.getProperty("fleet.duration-s", "0").trim()),
+                Long.parseLong(config.getProperty("fleet.report-interval-s", "5").trim()),
+                config.getProperty("rabbitmq.exchange", "").trim(),
+                ConfirmTracker.Settings.from(config),
+                config.getProperty("fleet.ground-truth", "").trim(),
+                WireFormat.from(config));
+            if (settings.channels() <= 0 || settings.clockSpeed() < 0 || settings.reportIntervalSeconds() <= 0) {
+                throw new IllegalArgumentException("fleet.channels and fleet.report-interval-s must be positive, " +
+                    "fleet.clock-speed must not be negative");
+            }
+            return settings;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package org.example.simulator;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// What one publisher actually sent, per device and hour, counted the way monitoring counts it: the
+// first sample of each 10-minute slot of the hour, later ones in the same slot being duplicates.
+// Only the publisher's own thread records into it.
+public class GroundTruth {
+
+    static final long HOUR_MILLIS = 3_600_000L;
+    private static final long SLOT_MILLIS = 600_000L;
+
+    private final Map<Long, Map<Long, Hour>> devices = new HashMap<>();
+
+    public void record(long deviceId, long timestamp, double value) {
+        long hourStart = Math.floorDiv(timestamp, HOUR_MILLIS) * HOUR_MILLIS;
+        Hour hour = devices.computeIfAbsent(deviceId, id -> new HashMap<>())
+            .computeIfAbsent(hourStart, start -> new Hour());
+        hour.messages++;
+        int bit = 1 << (int) ((timestamp - hourStart) / SLOT_MILLIS);
+        if ((hour.slotMask & bit) == 0) {
+            hour.slotMask |= bit;
+            hour.samples++;
+            hour.total += value;
+        }
+    }
+
+    // The header lines as # comments, then one line per device and hour, sorted:
+    // deviceId,hourStart (epoch ms),samples,total,messages
+    public static long write(Path file, List<String> header, List<GroundTruth> parts) throws IOException {
+        Map<Long, Map<Long, Hour>> merged = new TreeMap<>();
+        for (GroundTruth part : parts) {
+            // Every device is published by exactly one thread, so the parts never overlap
+            part.devices.forEach((deviceId, hours) -> merged.put(deviceId, new TreeMap<>(hours)));
+        }
+        long rows = 0;
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.US_ASCII)) {
+            for (String line : header) {
+                out.write("# " + line + "\n");
+            }
+            out.write("deviceId,hourStart,samples,total,messages\n");
+            for (Map.Entry<Long, Map<Long, Hour>> device : merged.entrySet()) {
+                for (Map.Entry<Long, Hour> entry : device.getValue().entrySet()) {
+                    Hour hour = entry.getValue();
+                    out.write(device.getKey() + "," + entry.getKey() + "," + hour.samples + "," + hour.total + ","
+                        + hour.messages + "\n");
+                    rows++;
+                }
+            }
+        }
+        return rows;
+    }
+
+    // Hourly totals per device and hour start, as written by write()
+    public static Map<Long, TreeMap<Long, Double>> readTotals(Path file) throws IOException {
+        Map<Long, TreeMap<Long, Double>> totals = new TreeMap<>();
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.US_ASCII)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.isEmpty() || !Character.isDigit(line.charAt(0))) {
+                    continue;
+                }
+                String[] fields = line.split(",");
+                totals.computeIfAbsent(Long.parseLong(fields[0]), id -> new TreeMap<>())
+                    .put(Long.parseLong(fields[1]), Double.parseDouble(fields[3]));
+            }
+        }
+        return totals;
+    }
+
+    private static final class Hour {
+        private int slotMask;
+        private int samples;
+        private int messages;
+        private double total;
+    }
+}
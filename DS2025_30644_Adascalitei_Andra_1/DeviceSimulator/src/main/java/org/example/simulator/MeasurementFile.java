@@ -0,0 +1,267 @@
+package org.example.simulator;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+
+// A recorded dataset replayed through memory-mapped windows of the file, so files of any size stream
+// from the page cache without read buffers. Measurements must be in timestamp order, at least per device.
+//
+// CSV: one "timestamp,deviceId,measurementValue" line per measurement (epoch ms, id, kWh); lines
+// that do not start with a digit, such as a header, are skipped.
+// BINARY: 24-byte big-endian records of timestamp (long), deviceId (long) and value (double), as
+// written by DataOutputStream.
+public class MeasurementFile implements MeasurementSource {
+
+    public enum Format { CSV, BINARY }
+
+    public static final int RECORD_BYTES = 24;
+    private static final long CSV_WINDOW_BYTES = 1L << 30;
+    private static final long BINARY_WINDOW_BYTES = RECORD_BYTES * (1L << 25);
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18
+    };
+
+    private final Path path;
+    private final Format format;
+    private final long size;
+    private final long startMillis;
+
+    public MeasurementFile(Path path, Format format) throws Exception {
+        this.path = path;
+        this.format = format;
+        this.size = Files.size(path);
+        if (format == Format.BINARY && size % RECORD_BYTES != 0) {
+            throw new IOException(path + " is not a whole number of " + RECORD_BYTES + "-byte records");
+        }
+        long[] first = {Long.MIN_VALUE};
+        forEach(0, 1, (sendAt, timestamp, deviceId, value) -> {
+            first[0] = timestamp;
+            return false;
+        });
+        if (first[0] == Long.MIN_VALUE) {
+            throw new IOException(path + " holds no measurements");
+        }
+        this.startMillis = first[0];
+    }
+
+    // By extension unless given: .csv is CSV, anything else binary
+    public static Format formatOf(Path path, String configured) {
+        if (configured != null && !configured.isBlank()) {
+            return Format.valueOf(configured.trim().toUpperCase(Locale.ROOT));
+        }
+        return path.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".csv") ? Format.CSV : Format.BINARY;
+    }
+
+    @Override
+    public long startMillis() {
+        return startMillis;
+    }
+
+    @Override
+    public double messagesPerSimulatedSecond() {
+        return 0;
+    }
+
+    @Override
+    public String describe() {
+        return String.format("%s (%s, %,d bytes)", path, format, size);
+    }
+
+    // Every worker maps the whole file and keeps the devices that hash to it
+    @Override
+    public void forEach(int worker, int workers, MeasurementHandler handler) throws Exception {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long windowBytes = format == Format.CSV ? CSV_WINDOW_BYTES : BINARY_WINDOW_BYTES;
+            long position = 0;
+            while (position < size) {
+                int length = (int) Math.min(windowBytes, size - position);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                int end = length;
+                if (format == Format.CSV && position + length < size) {
+                    // The next window starts at the line cut off by this one
+                    while (end > 0 && buffer.get(end - 1) != '\n') {
+                        end--;
+                    }
+                    if (end == 0) {
+                        throw new IOException("Line longer than " + windowBytes + " bytes at offset " + position);
+                    }
+                }
+                boolean more = format == Format.CSV
+                    ? readCsv(buffer, end, worker, workers, handler)
+                    : readBinary(buffer, end, worker, workers, handler);
+                if (!more) {
+                    return;
+                }
+                position += end;
+            }
+        }
+    }
+
+    private static boolean readBinary(MappedByteBuffer buffer, int end, int worker, int workers,
+                                      MeasurementHandler handler) throws Exception {
+        for (int offset = 0; offset < end; offset += RECORD_BYTES) {
+            long deviceId = buffer.getLong(offset + 8);
+            if (Math.floorMod(deviceId, workers) == worker
+                    && !handler.accept(buffer.getLong(offset), deviceId, buffer.getDouble(offset + 16))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean readCsv(MappedByteBuffer buffer, int end, int worker, int workers,
+                            MeasurementHandler handler) throws Exception {
+        CsvLine line = new CsvLine(buffer);
+        int position = 0;
+        while (position < end) {
+            int lineEnd = position;
+            while (lineEnd < end && buffer.get(lineEnd) != '\n') {
+                lineEnd++;
+            }
+            line.reset(position, lineEnd);
+            position = lineEnd + 1;
+            if (!line.startsWithNumber()) {
+                continue;
+            }
+            long timestamp = line.nextLong();
+            long deviceId = line.nextLong();
+            if (Math.floorMod(deviceId, workers) != worker) {
+                continue;
+            }
+            if (!handler.accept(timestamp, deviceId, line.nextDouble())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static long write(Path path, Format format, MeasurementSource source) throws Exception {
+        long[] written = {0};
+        if (format == Format.CSV) {
+            try (BufferedWriter out = Files.newBufferedWriter(path, StandardCharsets.US_ASCII)) {
+                out.write("timestamp,deviceId,measurementValue\n");
+                source.forEach(0, 1, (sendAt, timestamp, deviceId, value) -> {
+                    out.write(timestamp + "," + deviceId + "," + value + "\n");
+                    written[0]++;
+                    return true;
+                });
+            }
+        } else {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 16))) {
+                source.forEach(0, 1, (sendAt, timestamp, deviceId, value) -> {
+                    out.writeLong(timestamp);
+                    out.writeLong(deviceId);
+                    out.writeDouble(value);
+                    written[0]++;
+                    return true;
+                });
+            }
+        }
+        return written[0];
+    }
+
+    // Parses the comma separated fields of one line in place. Plain decimals of up to 18 digits are
+    // read as a whole number divided by a power of ten, which is correctly rounded below 2^53; anything
+    // else (exponents, longer mantissas) goes through Double.parseDouble.
+    private static final class CsvLine {
+        private final MappedByteBuffer buffer;
+        private int position;
+        private int end;
+
+        private CsvLine(MappedByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        private void reset(int start, int lineEnd) {
+            position = start;
+            end = lineEnd > start && buffer.get(lineEnd - 1) == '\r' ? lineEnd - 1 : lineEnd;
+        }
+
+        private boolean startsWithNumber() {
+            if (position >= end) {
+                return false;
+            }
+            byte first = buffer.get(position);
+            return first == '-' || (first >= '0' && first <= '9');
+        }
+
+        private long nextLong() throws IOException {
+            int start = position;
+            boolean negative = buffer.get(position) == '-';
+            if (negative) {
+                position++;
+            }
+            long value = 0;
+            while (position < end && buffer.get(position) != ',') {
+                byte b = buffer.get(position++);
+                if (b < '0' || b > '9') {
+                    throw new IOException("Not a whole number: " + text(start));
+                }
+                value = value * 10 + (b - '0');
+            }
+            position++;
+            return negative ? -value : value;
+        }
+
+        private double nextDouble() throws IOException {
+            int start = position;
+            boolean negative = position < end && buffer.get(position) == '-';
+            if (negative) {
+                position++;
+            }
+            long mantissa = 0;
+            int digits = 0;
+            int decimals = -1;
+            while (position < end && buffer.get(position) != ',') {
+                byte b = buffer.get(position++);
+                if (b >= '0' && b <= '9') {
+                    mantissa = mantissa * 10 + (b - '0');
+                    digits++;
+                    if (decimals >= 0) {
+                        decimals++;
+                    }
+                } else if (b == '.' && decimals < 0) {
+                    decimals = 0;
+                } else {
+                    return parseSlow(start);
+                }
+            }
+            position++;
+            if (digits == 0 || digits > 18 || mantissa >= (1L << 53)) {
+                return parseSlow(start);
+            }
+            double value = decimals > 0 ? mantissa / POWERS_OF_TEN[decimals] : mantissa;
+            return negative ? -value : value;
+        }
+
+        private double parseSlow(int start) throws IOException {
+            String field = text(start);
+            try {
+                return Double.parseDouble(field);
+            } catch (NumberFormatException e) {
+                throw new IOException("Not a number: " + field);
+            }
+        }
+
+        // The field starting at start, leaving the cursor after its comma
+        private String text(int start) {
+            int fieldEnd = start;
+            while (fieldEnd < end && buffer.get(fieldEnd) != ',') {
+                fieldEnd++;
+            }
+            byte[] bytes = new byte[fieldEnd - start];
+            buffer.get(start, bytes);
+            position = fieldEnd + 1;
+            return new String(bytes, StandardCharsets.US_ASCII);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package org.example.simulator;
+
+// Where the fleet's measurements come from. Publisher `worker` of `workers` is handed its share of
+// the devices, and every device's measurements arrive in timestamp order.
+public interface MeasurementSource {
+
+    // Simulated time at which the run starts; the wall clock is paced against it
+    long startMillis();
+
+    // Measurements per simulated second, or 0 when the source cannot tell up front
+    double messagesPerSimulatedSecond();
+
+    String describe();
+
+    void forEach(int worker, int workers, MeasurementHandler handler) throws Exception;
+
+    interface MeasurementHandler {
+        // sendAtMillis is the simulated time the measurement goes out, which faults can set apart from
+        // its timestamp. Returning false stops the source.
+        boolean accept(long sendAtMillis, long timestamp, long deviceId, double value) throws Exception;
+
+        default boolean accept(long timestamp, long deviceId, double value) throws Exception {
+            return accept(timestamp, timestamp, deviceId, value);
+        }
+    }
+}
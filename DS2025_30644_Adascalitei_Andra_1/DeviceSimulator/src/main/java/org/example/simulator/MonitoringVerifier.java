@@ -0,0 +1,169 @@
+package org.example.simulator;
+
+import com.google.gson.Gson;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+// Checks the hourly totals monitoring wrote against a ground truth file of a fleet run, through
+// POST /consumption/query: every hour sent must be there with the same total, and no other hour of
+// those devices within the run's time range may show up.
+public class MonitoringVerifier {
+
+    // The limits of /consumption/query
+    private static final int MAX_DEVICES = 500;
+    private static final long MAX_POINTS = 1_000_000;
+    private static final int MAX_EXAMPLES = 20;
+
+    private final Settings settings;
+    private final Gson gson = new Gson();
+    private final HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+
+    private long checked;
+    private long missing;
+    private long mismatched;
+    private long unexpected;
+    private final List<String> examples = new ArrayList<>();
+
+    public MonitoringVerifier(Settings settings) {
+        this.settings = settings;
+    }
+
+    // true when monitoring matches the ground truth
+    public boolean run() throws Exception {
+        Map<Long, TreeMap<Long, Double>> expected = GroundTruth.readTotals(settings.groundTruth());
+        if (expected.isEmpty()) {
+            throw new IllegalArgumentException("No device hours in " + settings.groundTruth());
+        }
+        long firstHour = Long.MAX_VALUE;
+        long lastHour = Long.MIN_VALUE;
+        for (TreeMap<Long, Double> hours : expected.values()) {
+            firstHour = Math.min(firstHour, hours.firstKey());
+            lastHour = Math.max(lastHour, hours.lastKey());
+        }
+        // Monitoring takes local dates of its own time zone, so the range is padded by a day on both ends
+        LocalDate from = LocalDate.ofInstant(Instant.ofEpochMilli(firstHour), ZoneOffset.UTC).minusDays(1);
+        LocalDate to = LocalDate.ofInstant(Instant.ofEpochMilli(lastHour), ZoneOffset.UTC).plusDays(1);
+        long hoursPerDevice = (to.toEpochDay() - from.toEpochDay() + 1) * 24;
+        int batch = (int) Math.min(MAX_DEVICES, MAX_POINTS / hoursPerDevice);
+        if (batch == 0) {
+            throw new IllegalArgumentException("The ground truth spans more hours than one query may return");
+        }
+
+        System.out.printf("Verifying %,d devices from %s to %s against %s%n", expected.size(), from, to,
+            settings.url());
+        List<Long> deviceIds = new ArrayList<>(expected.keySet());
+        for (int i = 0; i < deviceIds.size(); i += batch) {
+            List<Long> devices = deviceIds.subList(i, Math.min(i + batch, deviceIds.size()));
+            QueryResult result = query(devices, from, to);
+            Map<Long, DeviceSeries> actual = new HashMap<>();
+            if (result.devices() != null) {
+                result.devices().forEach(series -> actual.put(series.deviceId(), series));
+            }
+            for (long deviceId : devices) {
+                compare(deviceId, expected.get(deviceId), actual.get(deviceId), firstHour, lastHour);
+            }
+        }
+
+        System.out.printf("Checked %,d device hours: %,d missing, %,d with another total, %,d unexpected%n",
+            checked, missing, mismatched, unexpected);
+        examples.forEach(example -> System.out.println("  " + example));
+        if (missing + mismatched + unexpected > examples.size()) {
+            System.out.printf("  ... and %,d more%n", missing + mismatched + unexpected - examples.size());
+        }
+        return missing + mismatched + unexpected == 0;
+    }
+
+    private void compare(long deviceId, TreeMap<Long, Double> expected, DeviceSeries actual, long firstHour,
+                         long lastHour) {
+        Map<Long, Double> found = new HashMap<>();
+        if (actual != null && actual.timestamps() != null) {
+            for (int i = 0; i < actual.timestamps().length; i++) {
+                found.put(actual.timestamps()[i], actual.values()[i]);
+            }
+        }
+        for (Map.Entry<Long, Double> hour : expected.entrySet()) {
+            checked++;
+            Double total = found.remove(hour.getKey());
+            if (total == null) {
+                missing++;
+                example("missing: device %d, hour %s, expected %.4f", deviceId, hour.getKey(), hour.getValue());
+            } else if (Math.abs(total - hour.getValue()) > settings.tolerance()) {
+                mismatched++;
+                example("total: device %d, hour %s, expected %.4f, monitoring has %.4f", deviceId, hour.getKey(),
+                    hour.getValue(), total);
+            }
+        }
+        // Hours outside the run may hold earlier data of the same devices
+        for (Map.Entry<Long, Double> hour : found.entrySet()) {
+            if (hour.getKey() >= firstHour && hour.getKey() <= lastHour) {
+                unexpected++;
+                example("unexpected: device %d, hour %s, monitoring has %.4f", deviceId, hour.getKey(),
+                    hour.getValue());
+            }
+        }
+    }
+
+    private void example(String format, long deviceId, long hour, double... values) {
+        if (examples.size() < MAX_EXAMPLES) {
+            Object[] args = new Object[values.length + 2];
+            args[0] = deviceId;
+            args[1] = Instant.ofEpochMilli(hour);
+            for (int i = 0; i < values.length; i++) {
+                args[i + 2] = values[i];
+            }
+            examples.add(String.format(format, args));
+        }
+    }
+
+    private QueryResult query(List<Long> deviceIds, LocalDate from, LocalDate to) throws Exception {
+        Map<String, Object> body = new HashMap<>();
+        body.put("deviceIds", deviceIds);
+        body.put("from", from.toString());
+        body.put("to", to.toString());
+        body.put("resolution", "HOUR");
+        HttpRequest request = HttpRequest.newBuilder(URI.create(settings.url() + "/consumption/query"))
+            .timeout(Duration.ofSeconds(60))
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString(gson.toJson(body)))
+            .build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("POST /consumption/query answered " + response.statusCode() + ": "
+                + response.body());
+        }
+        return gson.fromJson(response.body(), QueryResult.class);
+    }
+
+    private record QueryResult(List<DeviceSeries> devices) {
+    }
+
+    private record DeviceSeries(long deviceId, long[] timestamps, double[] values) {
+    }
+
+    public record Settings(Path groundTruth, String url, double tolerance) {
+
+        public static Settings from(Properties config) {
+            String file = config.getProperty("fleet.ground-truth", "").trim();
+            if (file.isEmpty()) {
+                throw new IllegalArgumentException("fleet.ground-truth is not configured");
+            }
+            String url = config.getProperty("verify.url", "http://localhost/monitoring").trim();
+            return new Settings(Path.of(file), url.endsWith("/") ? url.substring(0, url.length() - 1) : url,
+                Double.parseDouble(config.getProperty("verify.tolerance", "0.001").trim()));
+        }
+    }
+}
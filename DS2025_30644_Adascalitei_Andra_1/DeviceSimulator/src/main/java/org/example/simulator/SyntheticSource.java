@@ -0,0 +1,93 @@
+package org.example.simulator;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Properties;
+import java.util.Random;
+
+// Generated measurements: every device once per interval, at a phase spread evenly over the interval so
+// the load is flat. Base loads and noise are a hash of (seed, device, timestamp) instead of a shared
+// random stream, so the same seed and start give the same measurements whatever the channel count.
+public class SyntheticSource implements MeasurementSource {
+
+    private final Settings settings;
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    public SyntheticSource(Settings settings) {
+        this.settings = settings;
+    }
+
+    @Override
+    public long startMillis() {
+        return settings.startMillis();
+    }
+
+    @Override
+    public double messagesPerSimulatedSecond() {
+        return settings.devices() * 1000.0 / settings.intervalMs();
+    }
+
+    @Override
+    public String describe() {
+        return String.format("%d synthetic devices (ids %d..%d), one measurement per %d ms, seed %d, start %s%s",
+            settings.devices(), settings.firstDeviceId(), settings.firstDeviceId() + settings.devices() - 1,
+            settings.intervalMs(), settings.seed(),
+            LocalDateTime.ofInstant(Instant.ofEpochMilli(settings.startMillis()), zone),
+            settings.rounds() > 0 ? ", " + settings.rounds() + " rounds" : "");
+    }
+
+    // The worker's devices come due in index order each round, so it walks them in that order
+    @Override
+    public void forEach(int worker, int workers, MeasurementHandler handler) throws Exception {
+        int devices = settings.devices();
+        double phaseMs = (double) settings.intervalMs() / devices;
+        for (long round = 0; settings.rounds() == 0 || round < settings.rounds(); round++) {
+            for (int device = worker; device < devices; device += workers) {
+                long timestamp = settings.startMillis() + round * settings.intervalMs() + (long) (device * phaseMs);
+                long deviceId = settings.firstDeviceId() + device;
+                if (!handler.accept(timestamp, deviceId, value(deviceId, timestamp))) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private double value(long deviceId, long timestamp) {
+        double baseLoad = 0.5 + unit(settings.seed(), deviceId, -1) * 1.5;
+        int hour = Instant.ofEpochMilli(timestamp).atZone(zone).getHour();
+        return DeviceSimulator.generateConsumption(baseLoad, hour, unit(settings.seed(), deviceId, timestamp));
+    }
+
+    // SplitMix64 finalizer over the three inputs, as a double in [0, 1)
+    static double unit(long seed, long deviceId, long timestamp) {
+        long z = seed ^ (deviceId * 0x9E3779B97F4A7C15L) ^ (timestamp * 0xC2B2AE3D27D4EB4FL);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z ^= z >>> 31;
+        return (z >>> 11) * 0x1.0p-53;
+    }
+
+    public record Settings(int devices, long firstDeviceId, long intervalMs, long startMillis, long rounds, long seed) {
+
+        // An empty fleet.seed draws one, which describe() prints so the run can be repeated
+        public static Settings from(Properties config) {
+            String start = config.getProperty("fleet.start", "").trim();
+            String seed = config.getProperty("fleet.seed", "").trim();
+            Settings settings = new Settings(
+                Integer.parseInt(config.getProperty("fleet.devices", "100000").trim()),
+                Long.parseLong(config.getProperty("fleet.first-device-id", "1").trim()),
+                Long.parseLong(config.getProperty("fleet.interval-ms", "600000").trim()),
+                start.isEmpty()
+                    ? System.currentTimeMillis()
+                    : LocalDateTime.parse(start).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli(),
+                Long.parseLong(config.getProperty("fleet.rounds", "0").trim()),
+                seed.isEmpty() ? new Random().nextLong() : Long.parseLong(seed));
+            if (settings.devices() <= 0 || settings.intervalMs() <= 0 || settings.rounds() < 0) {
+                throw new IllegalArgumentException("fleet.devices and fleet.interval-ms must be positive, " +
+                    "fleet.rounds must not be negative");
+            }
+            return settings;
+        }
+    }
+}
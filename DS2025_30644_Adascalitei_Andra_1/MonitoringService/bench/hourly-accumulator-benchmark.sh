@@ -0,0 +1,11 @@
+#!/usr/bin/env bash
+# Bytes per open window and add throughput of the hourly window table. Needs only a JDK; no database
+# or broker.
+#
+# Usage: ./hourly-accumulator-benchmark.sh [windows] [rounds]
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+./mvnw -q -DskipTests test-compile
+java -Xmx2g -cp target/classes:target/test-classes \
+  org.example.monitoringservice.window.HourlyAccumulatorBenchmark "${1:-1000000}" "${2:-5}"
@@ -0,0 +1,127 @@
+#!/usr/bin/env bash
+# Compares query latency on a month-partitioned copy of hourly_consumption against an unpartitioned
+# one, both filled with DEVICES x HOURS synthetic rows (100M by default: 10k devices over 10k hours,
+# about 14 months). Runs in a scratch schema inside monitoring-db; the service's tables are untouched.
+# Filling 2 x 100M rows takes a while and about 20 GB of disk; pass smaller numbers to try it first.
+#
+# Usage: ./hourly-partition-benchmark.sh [devices] [hours] [runs]
+# Run with the stack up (monitoring-db container running).
+set -euo pipefail
+
+DEVICES=${1:-10000}
+HOURS=${2:-10000}
+RUNS=${3:-20}
+START='2025-01-01 00:00:00'
+
+mysql_root() {
+  docker exec -i monitoring-db mysql -uroot -proot --batch --skip-column-names "$@" 2>/dev/null
+}
+
+echo "Creating monitoring_bench with $DEVICES devices x $HOURS hours per table"
+mysql_root <<SQL
+DROP DATABASE IF EXISTS monitoring_bench;
+CREATE DATABASE monitoring_bench;
+USE monitoring_bench;
+SET SESSION cte_max_recursion_depth = 100000000;
+
+CREATE TABLE devices (id BIGINT PRIMARY KEY);
+INSERT INTO devices WITH RECURSIVE d (id) AS (SELECT 1 UNION ALL SELECT id + 1 FROM d WHERE id < $DEVICES) SELECT id FROM d;
+
+CREATE TABLE flat (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    device_id BIGINT NOT NULL,
+    timestamp DATETIME(6) NOT NULL,
+    energy_consumption DOUBLE NOT NULL,
+    sample_count INT,
+    complete BIT(1),
+    slot_mask INT,
+    PRIMARY KEY (id),
+    UNIQUE KEY uk_device_hour (device_id, timestamp),
+    KEY idx_timestamp_id (timestamp, id)
+) ENGINE = InnoDB;
+
+CREATE TABLE partitioned LIKE flat;
+ALTER TABLE partitioned DROP PRIMARY KEY, ADD PRIMARY KEY (id, timestamp);
+SQL
+
+# One partition per month covered by the data, as HourlyPartitionMaintenance would create them
+PARTITIONS=$(python3 - "$START" "$HOURS" <<'PY'
+import sys, datetime
+start = datetime.datetime.fromisoformat(sys.argv[1])
+end = start + datetime.timedelta(hours=int(sys.argv[2]))
+parts, y, m = [], start.year, start.month
+while datetime.datetime(y, m, 1) <= end:
+    ny, nm = (y + 1, 1) if m == 12 else (y, m + 1)
+    parts.append(f"PARTITION p{y:04d}{m:02d} VALUES LESS THAN ('{ny:04d}-{nm:02d}-01 00:00:00')")
+    y, m = ny, nm
+parts.append("PARTITION pmax VALUES LESS THAN (MAXVALUE)")
+print(", ".join(parts))
+PY
+)
+mysql_root monitoring_bench -e "ALTER TABLE partitioned PARTITION BY RANGE COLUMNS (timestamp) ($PARTITIONS)"
+
+# Hour by hour, so each INSERT stays a manageable transaction
+for table in flat partitioned; do
+  begin=$(date +%s)
+  for ((hour = 0; hour < HOURS; hour += 24)); do
+    mysql_root monitoring_bench -e "
+      INSERT INTO $table (device_id, timestamp, energy_consumption, sample_count, complete, slot_mask)
+      WITH RECURSIVE h (n) AS (SELECT $hour UNION ALL SELECT n + 1 FROM h WHERE n < LEAST($hour + 23, $HOURS - 1))
+      SELECT d.id, TIMESTAMP('$START') + INTERVAL h.n HOUR, RAND() * 2, 6, 1, 63 FROM devices d CROSS JOIN h"
+  done
+  echo "Filled $table in $(( $(date +%s) - begin )) s"
+done
+mysql_root monitoring_bench -e "ANALYZE TABLE flat, partitioned" > /dev/null
+
+# Average latency in microseconds of a query over RUNS runs, each for a random device, timed inside MySQL
+time_query() {
+  local table=$1 where=$2
+  mysql_root monitoring_bench <<SQL
+SET @total = 0;
+DELIMITER //
+CREATE PROCEDURE IF NOT EXISTS bench_run(IN q TEXT, IN runs INT)
+BEGIN
+  DECLARE i INT DEFAULT 0;
+  DECLARE t DATETIME(6);
+  SET @total = 0;
+  WHILE i < runs DO
+    SET @device = 1 + FLOOR(RAND() * $DEVICES);
+    SET @sql = q;
+    PREPARE stmt FROM @sql;
+    SET t = NOW(6);
+    EXECUTE stmt USING @device;
+    SET @total = @total + TIMESTAMPDIFF(MICROSECOND, t, NOW(6));
+    DEALLOCATE PREPARE stmt;
+    SET i = i + 1;
+  END WHILE;
+END //
+DELIMITER ;
+CALL bench_run('SELECT SQL_NO_CACHE COUNT(*), SUM(energy_consumption) FROM $table WHERE $where', $RUNS);
+SELECT ROUND(@total / $RUNS);
+SQL
+}
+
+partitions_read() {
+  local table=$1 where=$2
+  mysql_root monitoring_bench -e "EXPLAIN SELECT * FROM $table WHERE ${where//\?/1}" | cut -f4
+}
+
+DAY="device_id = ? AND timestamp BETWEEN '2025-06-15 00:00:00' AND '2025-06-15 23:59:59'"
+MONTH="device_id = ? AND timestamp BETWEEN '2025-06-01 00:00:00' AND '2025-06-30 23:59:59'"
+FLEET_HOUR="device_id >= ? AND timestamp = '2025-06-15 12:00:00'"
+
+printf '%-12s %-12s %12s  %s\n' query table avg_us partitions
+for name in DAY MONTH FLEET_HOUR; do
+  where=${!name}
+  for table in flat partitioned; do
+    printf '%-12s %-12s %12s  %s\n' "$name" "$table" "$(time_query "$table" "$where")" "$(partitions_read "$table" "$where")"
+  done
+done
+
+# Retention: dropping a month versus deleting it row by row
+begin=$(date +%s%N)
+mysql_root monitoring_bench -e "ALTER TABLE partitioned DROP PARTITION p202501"
+echo "DROP PARTITION p202501: $(( ($(date +%s%N) - begin) / 1000000 )) ms"
+begin=$(date +%s%N)
+mysql_root monitoring_bench -e "DELETE FROM flat WHERE timestamp < '2025-02-01 00:00:00'"
+echo "DELETE of January from flat: $(( ($(date +%s%N) - begin) / 1000000 )) ms"
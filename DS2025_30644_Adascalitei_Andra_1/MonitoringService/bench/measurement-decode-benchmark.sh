@@ -0,0 +1,13 @@
+#!/usr/bin/env bash
+# Message size and decode throughput of JSON and binary measurements through the listeners' message
+# converter. Needs only a JDK; no database or broker.
+#
+# Usage: ./measurement-decode-benchmark.sh [messages] [rounds]
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+./mvnw -q -DskipTests test-compile
+# The converter needs Spring AMQP and Jackson at runtime
+./mvnw -q dependency:build-classpath -Dmdep.includeScope=test -Dmdep.outputFile=target/bench.classpath
+java -Xmx2g -cp "target/classes:target/test-classes:$(cat target/bench.classpath)" \
+  org.example.monitoringservice.consumer.MeasurementDecodeBenchmark "${1:-1000000}" "${2:-5}"
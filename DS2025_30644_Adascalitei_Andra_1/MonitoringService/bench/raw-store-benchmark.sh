@@ -0,0 +1,11 @@
+#!/usr/bin/env bash
+# Bytes per sample and day-scan throughput of the embedded raw sample store, on simulator-like data
+# written to a temporary directory. Needs only a JDK; no database or broker.
+#
+# Usage: ./raw-store-benchmark.sh [devices] [days] [scans]
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+./mvnw -q -DskipTests test-compile
+java -Xmx2g -cp target/classes:target/test-classes \
+  org.example.monitoringservice.tsdb.RawSampleStoreBenchmark "${1:-1000}" "${2:-60}" "${3:-5000}"
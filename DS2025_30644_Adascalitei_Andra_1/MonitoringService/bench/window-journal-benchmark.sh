@@ -0,0 +1,11 @@
+#!/usr/bin/env bash
+# Recovery time of one lane's WAL (checkpoint load plus log replay). Needs only a JDK; no database or
+# broker.
+#
+# Usage: ./window-journal-benchmark.sh [devices] [rounds]
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+./mvnw -q -DskipTests test-compile
+java -Xmx2g -cp target/classes:target/test-classes \
+  org.example.monitoringservice.wal.WindowJournalBenchmark "${1:-100000}" "${2:-5}"
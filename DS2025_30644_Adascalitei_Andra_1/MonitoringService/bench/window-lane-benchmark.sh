@@ -0,0 +1,12 @@
+#!/usr/bin/env bash
+# Ingest throughput of one window lane, with and without redelivered samples. Needs only a JDK; no
+# database or broker.
+#
+# Usage: ./window-lane-benchmark.sh [devices] [copies] [rounds]
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+./mvnw -q -DskipTests test-compile
+./mvnw -q dependency:build-classpath -Dmdep.includeScope=test -Dmdep.outputFile=target/bench.classpath
+java -Xmx2g -cp "target/classes:target/test-classes:$(cat target/bench.classpath)" \
+  org.example.monitoringservice.ingest.WindowLaneBenchmark "${1:-50000}" "${2:-4}" "${3:-5}"
@@ -0,0 +1,139 @@
+package org.example.monitoringservice.alert;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Decides which overconsumption alerts reach the users. A device alerts again within its cooldown only
+// if the severity rose; accepted alerts wait per user and are drained once per coalescing window as a
+// single delivery, which is a summary when several devices of the user breached. A device that alerts
+// again before the delivery replaces its pending alert. A user gets at most
+// one delivery per user cooldown, unless it carries a higher severity than the last one.
+// Not thread-safe: NotificationService serializes the calls.
+public class AlertThrottle {
+
+    public static final int MAX_SUMMARY_DEVICES = 20;
+
+    private final long deviceCooldownMs;
+    private final long userCooldownMs;
+
+    private final Map<Long, Sent> sentByDevice = new HashMap<>();
+    private final Map<Long, Sent> sentByUser = new HashMap<>();
+    private final Map<Long, Pending> pendingByUser = new HashMap<>();
+
+    public AlertThrottle(long deviceCooldownMs, long userCooldownMs) {
+        this.deviceCooldownMs = deviceCooldownMs;
+        this.userCooldownMs = userCooldownMs;
+    }
+
+    public static Severity severityOf(double overPercentage) {
+        if (overPercentage > 50) {
+            return Severity.CRITICAL;
+        } else if (overPercentage > 20) {
+            return Severity.WARNING;
+        } else {
+            return Severity.INFO;
+        }
+    }
+
+    public Decision offer(Alert alert, long now) {
+        Sent last = sentByDevice.get(alert.deviceId());
+        boolean coolingDown = last != null && now - last.at() < deviceCooldownMs;
+        if (coolingDown && alert.severity().compareTo(last.severity()) <= 0) {
+            return Decision.SUPPRESSED;
+        }
+        sentByDevice.put(alert.deviceId(), new Sent(now, alert.severity()));
+
+        Pending pending = pendingByUser.get(alert.userId());
+        if (pending == null) {
+            pendingByUser.put(alert.userId(), new Pending(alert));
+        } else {
+            pending.add(alert);
+        }
+        return coolingDown ? Decision.ESCALATED : Decision.ACCEPTED;
+    }
+
+    // Removes and returns the deliveries that are due; users still in their cooldown keep collecting
+    public List<Delivery> drain(long now) {
+        List<Delivery> deliveries = new ArrayList<>();
+        Iterator<Map.Entry<Long, Pending>> iterator = pendingByUser.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Long, Pending> entry = iterator.next();
+            Pending pending = entry.getValue();
+            Sent last = sentByUser.get(entry.getKey());
+            boolean coolingDown = last != null && now - last.at() < userCooldownMs;
+            if (coolingDown && pending.worst.severity().compareTo(last.severity()) <= 0) {
+                continue;
+            }
+            iterator.remove();
+            sentByUser.put(entry.getKey(), new Sent(now, pending.worst.severity()));
+            deliveries.add(new Delivery(entry.getKey(), pending.worst, pending.alertsByDevice.size(),
+                pending.alertsByDevice.keySet().stream().limit(MAX_SUMMARY_DEVICES).toList()));
+        }
+
+        // Forget cooldowns that have run out, so the maps stay as small as the set of recent alerts
+        sentByDevice.values().removeIf(sent -> now - sent.at() >= deviceCooldownMs);
+        sentByUser.values().removeIf(sent -> now - sent.at() >= userCooldownMs);
+        return deliveries;
+    }
+
+    public int pendingUsers() {
+        return pendingByUser.size();
+    }
+
+    public enum Severity {
+        INFO,
+        WARNING,
+        CRITICAL
+    }
+
+    public enum Decision {
+        ACCEPTED,
+        ESCALATED,
+        SUPPRESSED
+    }
+
+    public record Alert(long deviceId, long userId, double consumption, double threshold, double overPercentage,
+                        Severity severity) {
+    }
+
+    // A single alert for one device, otherwise a summary of the user's devices, led by the worst one.
+    // devices counts every breaching device, deviceIds lists at most MAX_SUMMARY_DEVICES of them.
+    public record Delivery(long userId, Alert worst, int devices, List<Long> deviceIds) {
+
+        public boolean isSummary() {
+            return deviceIds.size() > 1;
+        }
+    }
+
+    private record Sent(long at, Severity severity) {
+    }
+
+    private static final class Pending {
+        private Alert worst;
+        // The latest alert of each device, in the order the devices first alerted
+        private final Map<Long, Alert> alertsByDevice = new LinkedHashMap<>();
+
+        private Pending(Alert alert) {
+            worst = alert;
+            alertsByDevice.put(alert.deviceId(), alert);
+        }
+
+        private void add(Alert alert) {
+            Alert replaced = alertsByDevice.put(alert.deviceId(), alert);
+            if (replaced == worst) {
+                worst = alert;
+                for (Alert pending : alertsByDevice.values()) {
+                    if (pending.overPercentage() > worst.overPercentage()) {
+                        worst = pending;
+                    }
+                }
+            } else if (alert.overPercentage() > worst.overPercentage()) {
+                worst = alert;
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package org.example.monitoringservice.cache;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.example.monitoringservice.entity.HourlyConsumption;
+import org.example.monitoringservice.metrics.CacheMetrics;
+import org.example.monitoringservice.repository.HourlyConsumptionRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.zip.CRC32;
+
+// Read-through cache of the hourly rows of one device-day, as served by the /date endpoints.
+// MonitoringService invalidates a device-day whenever it persists a row for it, late corrections
+// included. The TTL bounds how stale an entry can get when another replica wrote the row; it is the
+// same for past days, since a late correction stored by another shard owner changes them too.
+@Component
+@RequiredArgsConstructor
+public class DailyConsumptionCache {
+
+    private final HourlyConsumptionRepository hourlyConsumptionRepository;
+    private final CacheMetrics cacheMetrics;
+
+    @Value("${monitoring.cache.daily.max-entries:10000}")
+    private int maxEntries;
+
+    @Value("${monitoring.cache.daily.ttl-ms:60000}")
+    private long ttlMs;
+
+    private LruTtlCache<DeviceDay, Day> cache;
+    // Bumped by every invalidation; a load that overlapped one may have read the old rows and is not cached
+    private long generation;
+
+    @PostConstruct
+    public void init() {
+        cache = new LruTtlCache<>(maxEntries, cacheMetrics::recordEviction);
+        cacheMetrics.registerSize(this::size);
+    }
+
+    public Day get(Long deviceId, LocalDate date) {
+        DeviceDay key = new DeviceDay(deviceId, date);
+        long now = System.currentTimeMillis();
+        long loadedAt;
+        synchronized (this) {
+            Day day = cache.get(key, now);
+            if (day != null) {
+                cacheMetrics.recordHit();
+                return day;
+            }
+            loadedAt = generation;
+        }
+        cacheMetrics.recordMiss();
+
+        // Loaded outside the lock; two concurrent misses both query, and the later put wins
+        List<HourlyConsumption> rows = hourlyConsumptionRepository.findByDeviceIdAndTimestampBetween(
+            deviceId, date.atStartOfDay(), date.atTime(LocalTime.MAX));
+        Day day = new Day(List.copyOf(rows), etag(deviceId, date, rows));
+        synchronized (this) {
+            if (generation == loadedAt) {
+                cache.put(key, day, now + ttlMs);
+            }
+        }
+        return day;
+    }
+
+    public synchronized void invalidate(List<HourlyConsumption> persistedRows) {
+        generation++;
+        for (HourlyConsumption row : persistedRows) {
+            cache.invalidate(new DeviceDay(row.getDeviceId(), row.getTimestamp().toLocalDate()));
+        }
+    }
+
+    private synchronized int size() {
+        return cache.size();
+    }
+
+    // Derived from the content, so it stays valid across restarts and replicas and changes with any row
+    private static String etag(Long deviceId, LocalDate date, List<HourlyConsumption> rows) {
+        CRC32 crc = new CRC32();
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES * 2 + Integer.BYTES);
+        for (HourlyConsumption row : rows) {
+            buffer.clear();
+            buffer.putLong(row.getTimestamp().toEpochSecond(ZoneOffset.UTC));
+            buffer.putLong(Double.doubleToLongBits(row.getEnergyConsumption()));
+            buffer.putInt(row.getSampleCount() != null ? row.getSampleCount() : -1);
+            crc.update(buffer.array(), 0, buffer.position());
+        }
+        return "\"" + deviceId + "-" + date + "-" + rows.size() + "-" + Long.toHexString(crc.getValue()) + "\"";
+    }
+
+    public record Day(List<HourlyConsumption> rows, String etag) {
+    }
+
+    private record DeviceDay(long deviceId, LocalDate date) {
+    }
+}
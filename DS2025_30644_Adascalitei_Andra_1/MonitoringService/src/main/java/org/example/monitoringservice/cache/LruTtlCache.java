@@ -0,0 +1,68 @@
+package org.example.monitoringservice.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Size-bounded LRU map whose entries also expire individually. Callers pass the current time, so the
+// cache has no clock of its own. Not thread-safe.
+public class LruTtlCache<K, V> {
+
+    private final int maxEntries;
+    private final EvictionListener listener;
+    private final LinkedHashMap<K, Entry<V>> entries;
+
+    public LruTtlCache(int maxEntries, EvictionListener listener) {
+        this.maxEntries = maxEntries;
+        this.listener = listener;
+        // Access order: iteration starts at the least recently used entry
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    // Null on a miss or once the entry has expired
+    public V get(K key, long now) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAt() <= now) {
+            entries.remove(key);
+            listener.onEviction(Cause.EXPIRED);
+            return null;
+        }
+        return entry.value();
+    }
+
+    public void put(K key, V value, long expiresAt) {
+        entries.put(key, new Entry<>(value, expiresAt));
+        Iterator<Map.Entry<K, Entry<V>>> eldest = entries.entrySet().iterator();
+        while (entries.size() > maxEntries && eldest.hasNext()) {
+            eldest.next();
+            eldest.remove();
+            listener.onEviction(Cause.SIZE);
+        }
+    }
+
+    public void invalidate(K key) {
+        if (entries.remove(key) != null) {
+            listener.onEviction(Cause.INVALIDATED);
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public enum Cause {
+        SIZE,
+        EXPIRED,
+        INVALIDATED
+    }
+
+    public interface EvictionListener {
+        void onEviction(Cause cause);
+    }
+
+    private record Entry<V>(V value, long expiresAt) {
+    }
+}
@@ -1,6 +1,8 @@
 package org.example.monitoringservice.config;
 
+import org.example.monitoringservice.consumer.MeasurementMessageConverter;
 import org.springframework.amqp.core.*;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.amqp.support.converter.Jackson2JavaTypeMapper;
@@ -10,6 +12,9 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @Configuration
 public class RabbitMQConfig {
 
@@ -22,15 +27,96 @@ public class RabbitMQConfig {
     @Value("${notification.queue.name}")
     private String notificationQueueName;
 
+    @Value("${data.consumer.batch.size:100}")
+    private int dataBatchSize;
+
+    @Value("${data.consumer.batch.receive-timeout-ms:1000}")
+    private long dataBatchReceiveTimeoutMs;
+
+    @Value("${data.consumer.prefetch:250}")
+    private int dataPrefetch;
+
+    @Value("${data.consumer.concurrency:1}")
+    private int dataConcurrency;
+
+    @Value("${data.consumer.max-concurrency:1}")
+    private int dataMaxConcurrency;
+
+    @Value("${monitoring.sharding.enabled:false}")
+    private boolean shardingEnabled;
+
+    @Value("${monitoring.sharding.exchange:measurements_exchange}")
+    private String shardingExchange;
+
+    @Value("${monitoring.sharding.shards:16}")
+    private int shards;
+
+    @Value("${monitoring.sharding.replica-index:0}")
+    private int replicaIndex;
+
+    @Value("${monitoring.sharding.replica-count:1}")
+    private int replicaCount;
+
     // Notification exchange and routing key
     public static final String NOTIFICATION_EXCHANGE = "notification_exchange";
     public static final String OVERCONSUMPTION_ROUTING_KEY = "notification.overconsumption";
+    // Running totals of open hours; the WebSocket service declares and binds the queue
+    public static final String LIVE_CONSUMPTION_ROUTING_KEY = "consumption.live";
+    // Appended to data.queue.name for the queue that holds undecodable measurements
+    public static final String DEAD_LETTER_SUFFIX = ".dlq";
 
     @Bean
     public Queue dataQueue() {
         return new Queue(dataQueueName, true);
     }
 
+    // BatchDataConsumer publishes undecodable measurements here itself: the data queue is also declared
+    // by the simulator, without arguments, so it cannot be given a dead-letter exchange
+    @Bean
+    public Queue dataDeadLetterQueue() {
+        return new Queue(dataQueueName + DEAD_LETTER_SUFFIX, true);
+    }
+
+    // Queues the measurement listeners consume: the single data queue, or this replica's shard queues
+    @Bean
+    public String[] dataQueueNames() {
+        if (!shardingEnabled) {
+            return new String[]{dataQueueName};
+        }
+        if (replicaIndex < 0 || replicaIndex >= replicaCount || replicaCount > shards) {
+            throw new IllegalStateException("Invalid sharding setup: replica " + replicaIndex + " of " +
+                replicaCount + " over " + shards + " shards");
+        }
+        List<String> owned = new ArrayList<>();
+        for (int shard = replicaIndex; shard < shards; shard += replicaCount) {
+            owned.add(shardQueueName(shard));
+        }
+        return owned.toArray(new String[0]);
+    }
+
+    // Every replica declares the whole ring, so each shard queue stays bound and keeps collecting its
+    // devices' measurements even while no replica is consuming it. The consistent-hash exchange hashes
+    // the routing key (the device id) onto the queues in proportion to the binding weights.
+    @Bean
+    public Declarables shardTopology() {
+        if (!shardingEnabled) {
+            return new Declarables();
+        }
+        List<Declarable> declarables = new ArrayList<>();
+        CustomExchange exchange = new CustomExchange(shardingExchange, "x-consistent-hash", true, false);
+        declarables.add(exchange);
+        for (int shard = 0; shard < shards; shard++) {
+            // Single active consumer: while replicas are being reassigned, two of them never
+            // process the same shard at once
+            Queue queue = QueueBuilder.durable(shardQueueName(shard))
+                .singleActiveConsumer()
+                .build();
+            declarables.add(queue);
+            declarables.add(BindingBuilder.bind(queue).to(exchange).with("1").noargs());
+        }
+        return new Declarables(declarables);
+    }
+
     @Bean
     public Queue syncQueue() {
         return new Queue(syncQueueName, true);
@@ -61,6 +147,52 @@ public class RabbitMQConfig {
         return converter;
     }
 
+    // Measurements arrive as JSON or as binary records, told apart by content type. Not a bean: a second
+    // MessageConverter bean would keep Boot from picking the JSON one for its default listener factory.
+    private MessageConverter measurementMessageConverter() {
+        return new MeasurementMessageConverter(jsonMessageConverter());
+    }
+
+    // One listener call per measurement, acknowledged automatically like the default factory's
+    @Bean
+    public SimpleRabbitListenerContainerFactory dataListenerContainerFactory(ConnectionFactory connectionFactory) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        factory.setConnectionFactory(connectionFactory);
+        factory.setMessageConverter(measurementMessageConverter());
+        factory.setDefaultRequeueRejected(false);
+        return factory;
+    }
+
+    @Bean
+    public SimpleRabbitListenerContainerFactory batchListenerContainerFactory(ConnectionFactory connectionFactory) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        factory.setConnectionFactory(connectionFactory);
+        factory.setMessageConverter(measurementMessageConverter());
+        factory.setDefaultRequeueRejected(false);
+        // Collect up to batchSize deliveries (or whatever arrived within the receive timeout)
+        // into a single listener call
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(dataBatchSize);
+        factory.setReceiveTimeout(dataBatchReceiveTimeoutMs);
+        // The listener acks the whole batch itself once the WAL is synced, so the broker keeps
+        // redelivering anything the service accepted but had not made durable yet. It receives the raw
+        // messages and decodes them one by one, so it can dead-letter just the ones that fail.
+        factory.setAcknowledgeMode(AcknowledgeMode.MANUAL);
+        factory.setPrefetchCount(Math.max(dataPrefetch, dataBatchSize));
+        factory.setConcurrentConsumers(dataConcurrency);
+        factory.setMaxConcurrentConsumers(Math.max(dataConcurrency, dataMaxConcurrency));
+        return factory;
+    }
+
+    private String shardQueueName(int shard) {
+        return shardQueueName(dataQueueName, shard);
+    }
+
+    public static String shardQueueName(String dataQueueName, int shard) {
+        return dataQueueName + ".shard-" + shard;
+    }
+
     @Bean
     public RabbitTemplate rabbitTemplate(ConnectionFactory connectionFactory) {
         RabbitTemplate rabbitTemplate = new RabbitTemplate(connectionFactory);
@@ -69,6 +201,9 @@ public class RabbitMQConfig {
             message.getMessageProperties().setPriority(null);
             return message;
         });
+        // Unroutable notifications come back as returns instead of vanishing; NotificationPublisher
+        // retries them together with nacked ones
+        rabbitTemplate.setMandatory(true);
         return rabbitTemplate;
     }
 }
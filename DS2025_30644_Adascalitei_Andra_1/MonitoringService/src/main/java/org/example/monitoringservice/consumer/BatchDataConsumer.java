@@ -0,0 +1,135 @@
+package org.example.monitoringservice.consumer;
+
+import com.rabbitmq.client.Channel;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.monitoringservice.config.RabbitMQConfig;
+import org.example.monitoringservice.dto.DeviceMeasurementDTO;
+import org.example.monitoringservice.metrics.IngestMetrics;
+import org.example.monitoringservice.service.MonitoringService;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// With MANUAL acks the container never settles a failed batch on its own, and the next batch's
+// cumulative ack would silently take whatever was left unacked. So every delivery is settled here:
+// a measurement that cannot be decoded is moved to the dead-letter queue, and a batch that cannot be
+// made durable is retried with backoff and only then requeued.
+@Component
+@RequiredArgsConstructor
+@Slf4j
+@ConditionalOnProperty(name = "data.consumer.batch.enabled", havingValue = "true")
+public class BatchDataConsumer {
+
+    private final MonitoringService monitoringService;
+    private final IngestMetrics ingestMetrics;
+    private final RabbitTemplate rabbitTemplate;
+    private final MessageConverter jsonMessageConverter;
+
+    @Value("${data.queue.name}")
+    private String dataQueueName;
+
+    @Value("${data.consumer.retry.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${data.consumer.retry.initial-backoff-ms:1000}")
+    private long initialBackoffMs;
+
+    @Value("${data.consumer.retry.max-backoff-ms:30000}")
+    private long maxBackoffMs;
+
+    @Value("${data.consumer.dead-letter.confirm-timeout-ms:5000}")
+    private long deadLetterConfirmTimeoutMs;
+
+    @RabbitListener(queues = "#{@dataQueueNames}", containerFactory = "batchListenerContainerFactory")
+    public void consumeBatch(List<Message> messages, Channel channel) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        log.debug("Received batch of {} measurements from queue", messages.size());
+
+        MeasurementMessageConverter converter = new MeasurementMessageConverter(jsonMessageConverter);
+        List<DeviceMeasurementDTO> measurements = new ArrayList<>(messages.size());
+        // Delivery tags grow monotonically on a channel, so the last decoded one covers the rest of the
+        // batch; dead-lettered messages are already settled and must not be acked a second time
+        long lastDeliveryTag = 0;
+        for (Message message : messages) {
+            message.getMessageProperties().setInferredArgumentType(DeviceMeasurementDTO.class);
+            try {
+                measurements.add((DeviceMeasurementDTO) converter.fromMessage(message));
+                lastDeliveryTag = message.getMessageProperties().getDeliveryTag();
+            } catch (RuntimeException e) {
+                deadLetter(message, channel, e);
+            }
+        }
+        if (measurements.isEmpty()) {
+            return;
+        }
+
+        if (!process(measurements)) {
+            log.error("❌Failed to make batch of {} measurements durable after {} attempts, requeueing",
+                messages.size(), maxAttempts);
+            channel.basicNack(lastDeliveryTag, true, true);
+            return;
+        }
+
+        channel.basicAck(lastDeliveryTag, true);
+        ingestMetrics.recordBatch(measurements.size(), start);
+    }
+
+    // Retrying a batch that was partly applied is safe: its samples land in slots that are already set.
+    // The backoff also paces the requeue loop while the failure lasts, e.g. a full WAL disk.
+    private boolean process(List<DeviceMeasurementDTO> measurements) throws InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                monitoringService.processBatch(measurements);
+                return true;
+            } catch (Exception e) {
+                log.warn("Failed to make batch of {} measurements durable (attempt {} of {}): {}",
+                    measurements.size(), attempt, maxAttempts, e.getMessage());
+                ingestMetrics.recordBatchRetry();
+                Thread.sleep(Math.min(maxBackoffMs, initialBackoffMs << Math.min(attempt - 1, 20)));
+                if (attempt >= maxAttempts) {
+                    return false;
+                }
+            }
+        }
+    }
+
+    // Acked only once the broker confirmed the copy, otherwise put back on the data queue
+    private void deadLetter(Message message, Channel channel, RuntimeException cause) throws IOException {
+        String deadLetterQueue = dataQueueName + RabbitMQConfig.DEAD_LETTER_SUFFIX;
+        long deliveryTag = message.getMessageProperties().getDeliveryTag();
+        log.error("❌Undecodable measurement from {}, moving it to {}: {}",
+            message.getMessageProperties().getConsumerQueue(), deadLetterQueue, cause.getMessage());
+        message.getMessageProperties().setHeader("x-exception-message", String.valueOf(cause.getMessage()));
+        message.getMessageProperties().setHeader("x-original-queue", message.getMessageProperties().getConsumerQueue());
+
+        CorrelationData correlation = new CorrelationData(UUID.randomUUID().toString());
+        try {
+            rabbitTemplate.send("", deadLetterQueue, message, correlation);
+            CorrelationData.Confirm confirm = correlation.getFuture().get(deadLetterConfirmTimeoutMs, TimeUnit.MILLISECONDS);
+            if (!confirm.isAck() || correlation.getReturned() != null) {
+                throw new IllegalStateException("not confirmed by the broker");
+            }
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            log.error("❌Failed to dead-letter measurement, requeueing it: {}", e.getMessage());
+            channel.basicNack(deliveryTag, false, true);
+            return;
+        }
+        channel.basicAck(deliveryTag, false);
+        ingestMetrics.recordDeadLettered();
+    }
+}
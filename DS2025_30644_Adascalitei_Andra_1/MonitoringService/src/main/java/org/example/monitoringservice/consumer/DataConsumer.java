@@ -3,20 +3,26 @@ package org.example.monitoringservice.consumer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.example.monitoringservice.dto.DeviceMeasurementDTO;
+import org.example.monitoringservice.metrics.IngestMetrics;
 import org.example.monitoringservice.service.MonitoringService;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 
 @Component
 @RequiredArgsConstructor
 @Slf4j
+@ConditionalOnProperty(name = "data.consumer.batch.enabled", havingValue = "false", matchIfMissing = true)
 public class DataConsumer {
 
     private final MonitoringService monitoringService;
+    private final IngestMetrics ingestMetrics;
 
-    @RabbitListener(queues = "${data.queue.name}")
+    @RabbitListener(queues = "#{@dataQueueNames}", containerFactory = "dataListenerContainerFactory")
     public void consumeMessage(DeviceMeasurementDTO measurement) {
+        long start = System.nanoTime();
         log.info("Received message from queue: {}", measurement);
         monitoringService.processMeasurement(measurement);
+        ingestMetrics.recordSingle(start);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,56 @@
+package org.example.monitoringservice.consumer;
+
+import org.example.monitoringservice.dto.DeviceMeasurementDTO;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.MessageConversionException;
+import org.springframework.amqp.support.converter.MessageConverter;
+
+import java.nio.ByteBuffer;
+
+// Picks the decoding of a measurement by its AMQP content type: BINARY_CONTENT_TYPE bodies are one
+// 24-byte big-endian record of timestamp (epoch ms), device id and value, read straight into the
+// DTO's primitives; anything else goes to the JSON converter, so JSON publishers keep working.
+public class MeasurementMessageConverter implements MessageConverter {
+
+    public static final String BINARY_CONTENT_TYPE = "application/vnd.ems.measurement.v1";
+    public static final int BINARY_BYTES = 24;
+
+    private final MessageConverter jsonConverter;
+
+    public MeasurementMessageConverter(MessageConverter jsonConverter) {
+        this.jsonConverter = jsonConverter;
+    }
+
+    // Monitoring never publishes measurements, so whatever it sends stays JSON
+    @Override
+    public Message toMessage(Object object, MessageProperties messageProperties) {
+        return jsonConverter.toMessage(object, messageProperties);
+    }
+
+    @Override
+    public Object fromMessage(Message message) {
+        if (!BINARY_CONTENT_TYPE.equals(message.getMessageProperties().getContentType())) {
+            return jsonConverter.fromMessage(message);
+        }
+        byte[] body = message.getBody();
+        if (body == null || body.length != BINARY_BYTES) {
+            throw new MessageConversionException("Binary measurement of " + (body == null ? 0 : body.length) +
+                " bytes, expected " + BINARY_BYTES);
+        }
+        return decode(body);
+    }
+
+    public static DeviceMeasurementDTO decode(byte[] body) {
+        ByteBuffer buffer = ByteBuffer.wrap(body);
+        return new DeviceMeasurementDTO(buffer.getLong(), buffer.getLong(), buffer.getDouble());
+    }
+
+    public static byte[] encode(long timestamp, long deviceId, double value) {
+        return ByteBuffer.allocate(BINARY_BYTES)
+            .putLong(timestamp)
+            .putLong(deviceId)
+            .putDouble(value)
+            .array();
+    }
+}
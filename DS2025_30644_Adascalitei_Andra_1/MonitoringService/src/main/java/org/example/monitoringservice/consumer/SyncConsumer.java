@@ -2,7 +2,11 @@ package org.example.monitoringservice.consumer;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.example.monitoringservice.entity.DeviceThreshold;
 import org.example.monitoringservice.entity.User;
+import org.example.monitoringservice.index.DeviceOwnerIndex;
+import org.example.monitoringservice.index.DeviceThresholdIndex;
+import org.example.monitoringservice.repository.DeviceThresholdRepository;
 import org.example.monitoringservice.repository.UserRepository;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
 import org.springframework.stereotype.Component;
@@ -13,6 +17,9 @@ import org.springframework.stereotype.Component;
 public class SyncConsumer {
 
     private final UserRepository userRepository;
+    private final DeviceOwnerIndex deviceOwnerIndex;
+    private final DeviceThresholdRepository deviceThresholdRepository;
+    private final DeviceThresholdIndex deviceThresholdIndex;
 
     @RabbitListener(queues = "${sync.queue.name}")
     public void consumeSyncMessage(Object syncMessage) {
@@ -79,6 +86,7 @@ public class SyncConsumer {
         log.info("User deleted: {}", userId);
 
         userRepository.deleteById(userId);
+        deviceOwnerIndex.removeUser(userId);
         log.info("Deleted user-device mappings for userId={}", userId);
     }
     
@@ -90,6 +98,7 @@ public class SyncConsumer {
         user.setId(userId);
         user.setDeviceId(deviceId);
         userRepository.save(user);
+        deviceOwnerIndex.assign(userId, deviceId);
         log.info("Saved user-device mapping: userId={}, deviceId={}", userId, deviceId);
     }
     
@@ -99,6 +108,7 @@ public class SyncConsumer {
         Object userIdObj = messageMap.get("userId");
         
         log.info("Device created: {} (ID: {})", deviceName, deviceId);
+        saveThreshold(deviceId, messageMap);
         
         if (userIdObj != null) {
             Long userId = ((Number) userIdObj).longValue();
@@ -106,6 +116,7 @@ public class SyncConsumer {
             user.setId(userId);
             user.setDeviceId(deviceId);
             userRepository.save(user);
+            deviceOwnerIndex.assign(userId, deviceId);
             log.info("Auto-created user-device mapping from device creation: userId={}, deviceId={}", userId, deviceId);
         }
     }
@@ -116,6 +127,7 @@ public class SyncConsumer {
         Object userIdObj = messageMap.get("userId");
         
         log.info("Device updated: {} (ID: {})", deviceName, deviceId);
+        saveThreshold(deviceId, messageMap);
         
         if (userIdObj != null) {
             Long userId = ((Number) userIdObj).longValue();
@@ -123,6 +135,7 @@ public class SyncConsumer {
             user.setId(userId);
             user.setDeviceId(deviceId);
             userRepository.save(user);
+            deviceOwnerIndex.assign(userId, deviceId);
             log.info("Updated user-device mapping: userId={}, deviceId={}", userId, deviceId);
         }
     }
@@ -131,12 +144,36 @@ public class SyncConsumer {
         Long deviceId = ((Number) messageMap.get("deviceId")).longValue();
         log.info("Device deleted: {}", deviceId);
 
-        userRepository.findAll().stream()
-            .filter(user -> deviceId.equals(user.getDeviceId()))
+        userRepository.findAllByDeviceId(deviceId)
             .forEach(user -> {
                 userRepository.delete(user);
                 log.info("Deleted user-device mapping for deviceId={}, userId={}", deviceId, user.getId());
             });
+        deviceOwnerIndex.removeDevice(deviceId);
+
+        deleteThreshold(deviceId);
+    }
+
+    // Device events carry the whole device, so a null maxConsumption means the limit was cleared
+    private void saveThreshold(Long deviceId, java.util.Map<String, Object> messageMap) {
+        Object maxConsumptionObj = messageMap.get("maxConsumption");
+        if (maxConsumptionObj == null) {
+            deleteThreshold(deviceId);
+            return;
+        }
+        double maxConsumption = ((Number) maxConsumptionObj).doubleValue();
+        deviceThresholdRepository.save(new DeviceThreshold(deviceId, maxConsumption));
+        deviceThresholdIndex.put(deviceId, maxConsumption);
+        log.info("Saved consumption threshold for device {}: {} kWh", deviceId, maxConsumption);
+    }
+
+    // The device falls back to overconsumption.threshold
+    private void deleteThreshold(Long deviceId) {
+        if (deviceThresholdRepository.existsById(deviceId)) {
+            deviceThresholdRepository.deleteById(deviceId);
+            log.info("Removed consumption threshold of device {}", deviceId);
+        }
+        deviceThresholdIndex.remove(deviceId);
     }
     
     private void handleDeviceUserMapping(java.util.Map<String, Object> messageMap) {
@@ -147,6 +184,7 @@ public class SyncConsumer {
         user.setId(userId);
         user.setDeviceId(deviceId);
         userRepository.save(user);
+        deviceOwnerIndex.assign(userId, deviceId);
         log.info("Saved device-user mapping: deviceId={}, userId={}", deviceId, userId);
     }
 }
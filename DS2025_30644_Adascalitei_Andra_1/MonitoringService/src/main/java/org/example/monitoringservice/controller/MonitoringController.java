@@ -1,90 +1,424 @@
 package org.example.monitoringservice.controller;
 
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
+import org.example.monitoringservice.cache.DailyConsumptionCache;
+import org.example.monitoringservice.dto.ConsumptionCursor;
+import org.example.monitoringservice.dto.ConsumptionQueryRequest;
+import org.example.monitoringservice.dto.ConsumptionQueryResult;
+import org.example.monitoringservice.dto.ConsumptionSeries;
+import org.example.monitoringservice.dto.RawSeries;
+import org.example.monitoringservice.entity.DailyConsumption;
 import org.example.monitoringservice.entity.HourlyConsumption;
+import org.example.monitoringservice.entity.MonthlyConsumption;
 import org.example.monitoringservice.entity.User;
+import org.example.monitoringservice.ingest.WindowLanes;
+import org.example.monitoringservice.repository.ConsumptionQueryRepository;
+import org.example.monitoringservice.repository.DailyConsumptionRepository;
 import org.example.monitoringservice.repository.HourlyConsumptionRepository;
+import org.example.monitoringservice.repository.HourlyConsumptionStreamRepository;
+import org.example.monitoringservice.repository.MonthlyConsumptionRepository;
 import org.example.monitoringservice.repository.UserRepository;
+import org.example.monitoringservice.tsdb.RawSamples;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.WebAsyncTask;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.LocalTime;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
 import java.util.List;
+import java.util.function.Consumer;
 
 @RestController
 @RequestMapping("")
 @RequiredArgsConstructor
-@CrossOrigin(origins = "*")
+@CrossOrigin(origins = "*", exposedHeaders = {MonitoringController.NEXT_CURSOR_HEADER,
+    MonitoringController.SERIES_START_HEADER, MonitoringController.SERIES_STEP_HEADER,
+    MonitoringController.SERIES_PRESENT_HEADER})
 public class MonitoringController {
 
+    // Set on a full page; passing it back as ?cursor= returns the next one
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    // The ConsumptionSeries fields that do not fit in the binary body
+    public static final String SERIES_START_HEADER = "X-Series-Start";
+    public static final String SERIES_STEP_HEADER = "X-Series-Step";
+    public static final String SERIES_PRESENT_HEADER = "X-Series-Present";
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
     private final HourlyConsumptionRepository hourlyConsumptionRepository;
     private final UserRepository userRepository;
+    private final DailyConsumptionRepository dailyConsumptionRepository;
+    private final MonthlyConsumptionRepository monthlyConsumptionRepository;
+    private final HourlyConsumptionStreamRepository hourlyConsumptionStreamRepository;
+    private final DailyConsumptionCache dailyConsumptionCache;
+    private final WindowLanes windowLanes;
+    private final ConsumptionQueryRepository consumptionQueryRepository;
+
+    @Value("${monitoring.api.max-page-size:10000}")
+    private int maxPageSize;
+
+    @Value("${monitoring.api.stream-timeout-ms:1800000}")
+    private long streamTimeoutMs;
+
+    @Value("${monitoring.raw.max-scan-days:31}")
+    private int rawMaxScanDays;
+
+    @Value("${monitoring.api.max-query-devices:500}")
+    private int maxQueryDevices;
+
+    @Value("${monitoring.api.max-query-points:1000000}")
+    private long maxQueryPoints;
 
     @GetMapping("/user/{userId}/consumption")
-    public ResponseEntity<?> getUserConsumption(@PathVariable Long userId) {
+    public ResponseEntity<List<HourlyConsumption>> getUserConsumption(
+            @PathVariable Long userId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "1000") int limit) {
         User user = userRepository.findById(userId)
             .orElseThrow(() -> new RuntimeException("User not found"));
         
-        List<HourlyConsumption> consumptions = hourlyConsumptionRepository
-            .findByDeviceIdOrderByTimestampDesc(user.getDeviceId());
-        
-        return ResponseEntity.ok(consumptions);
+        return devicePage(user.getDeviceId(), cursor, limit);
+    }
+
+    // Without paging parameters: the whole history, as before paging existed
+    @GetMapping(value = "/user/{userId}/consumption", params = {"!cursor", "!limit"})
+    public WebAsyncTask<Void> getUserConsumptionHistory(@PathVariable Long userId, HttpServletResponse response) {
+        User user = userRepository.findById(userId)
+            .orElseThrow(() -> new RuntimeException("User not found"));
+
+        return stream(response, MediaType.APPLICATION_JSON, deviceHistory(user.getDeviceId()));
     }
 
     @GetMapping("/user/{userId}/consumption/date")
     public ResponseEntity<?> getUserConsumptionByDate(
             @PathVariable Long userId,
-            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+            WebRequest request) {
         
         User user = userRepository.findById(userId)
             .orElseThrow(() -> new RuntimeException("User not found"));
         
-        LocalDateTime startOfDay = date.atStartOfDay();
-        LocalDateTime endOfDay = date.atTime(LocalTime.MAX);
-        
-        List<HourlyConsumption> consumptions = hourlyConsumptionRepository
-            .findByDeviceIdAndTimestampBetween(user.getDeviceId(), startOfDay, endOfDay);
-        
-        return ResponseEntity.ok(consumptions);
+        return cachedDay(user.getDeviceId(), date, request);
     }
 
+    // Newest first, one keyset page at a time
     @GetMapping("/device/{deviceId}")
-    public ResponseEntity<List<HourlyConsumption>> getDeviceConsumption(@PathVariable Long deviceId) {
-        List<HourlyConsumption> consumptions = hourlyConsumptionRepository
-            .findByDeviceIdOrderByTimestampDesc(deviceId);
-        return ResponseEntity.ok(consumptions);
+    public ResponseEntity<List<HourlyConsumption>> getDeviceConsumption(
+            @PathVariable Long deviceId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "1000") int limit) {
+        return devicePage(deviceId, cursor, limit);
+    }
+
+    // Without paging parameters: the whole history, as before paging existed
+    @GetMapping(value = "/device/{deviceId}", params = {"!cursor", "!limit"})
+    public WebAsyncTask<Void> getDeviceConsumptionHistory(@PathVariable Long deviceId, HttpServletResponse response) {
+        return stream(response, MediaType.APPLICATION_JSON, deviceHistory(deviceId));
+    }
+
+    // The whole history, newest first, one JSON object per line
+    @GetMapping(value = "/device/{deviceId}/stream", produces = "application/x-ndjson")
+    public WebAsyncTask<Void> streamDeviceConsumption(@PathVariable Long deviceId, HttpServletResponse response) {
+        return stream(response, NDJSON,
+            ndjson(writer -> hourlyConsumptionStreamRepository.streamDevice(deviceId, row -> writeJsonLine(writer, row))));
     }
 
     @GetMapping("/device/{deviceId}/date")
     public ResponseEntity<List<HourlyConsumption>> getDeviceConsumptionByDate(
+            @PathVariable Long deviceId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+            WebRequest request) {
+        return cachedDay(deviceId, date, request);
+    }
+
+    // The chart data of /device/{deviceId}/date as columns: a start, a step and one value per hour
+    @GetMapping(value = "/device/{deviceId}/series", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<ConsumptionSeries> getDeviceSeries(
             @PathVariable Long deviceId,
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
-        
-        LocalDateTime startOfDay = date.atStartOfDay();
-        LocalDateTime endOfDay = date.atTime(LocalTime.MAX);
-        
-        System.out.println("=== Device Consumption Query ===");
-        System.out.println("Device ID: " + deviceId);
-        System.out.println("Date: " + date);
-        System.out.println("Start: " + startOfDay);
-        System.out.println("End: " + endOfDay);
-        
-        List<HourlyConsumption> consumptions = hourlyConsumptionRepository
-            .findByDeviceIdAndTimestampBetween(deviceId, startOfDay, endOfDay);
-        
-        System.out.println("Found " + consumptions.size() + " records");
-        if (!consumptions.isEmpty()) {
-            System.out.println("First record: " + consumptions.get(0));
+        return ResponseEntity.ok(daySeries(deviceId, date));
+    }
+
+    // Same series for Accept: application/octet-stream, as little-endian float32 values (4 bytes per hour)
+    // with the other fields in headers
+    @GetMapping(value = "/device/{deviceId}/series", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<byte[]> getDeviceSeriesBinary(
+            @PathVariable Long deviceId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+        ConsumptionSeries series = daySeries(deviceId, date);
+        ByteBuffer body = ByteBuffer.allocate(series.values().length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        for (double value : series.values()) {
+            body.putFloat((float) value);
         }
-        
-        return ResponseEntity.ok(consumptions);
+        return ResponseEntity.ok()
+            .contentType(MediaType.APPLICATION_OCTET_STREAM)
+            .header(SERIES_START_HEADER, Long.toString(series.start()))
+            .header(SERIES_STEP_HEADER, Long.toString(series.step()))
+            .header(SERIES_PRESENT_HEADER, Integer.toString(series.present()))
+            .body(body.array());
+    }
+
+    // Every raw sample with from <= timestamp < to, at the resolution the simulator sent them
+    @GetMapping("/device/{deviceId}/raw")
+    public ResponseEntity<RawSeries> getDeviceRawSamples(
+            @PathVariable Long deviceId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) throws IOException {
+        if (!windowLanes.rawEnabled()) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!to.isAfter(from) || from.plusDays(rawMaxScanDays).isBefore(to)) {
+            return ResponseEntity.badRequest().build();
+        }
+        ZoneId zone = ZoneId.systemDefault();
+        RawSamples samples = windowLanes.rawSamples(deviceId, from.atZone(zone).toInstant().toEpochMilli(),
+            to.atZone(zone).toInstant().toEpochMilli());
+        return ResponseEntity.ok(new RawSeries(samples.timestamps(), samples.values()));
     }
 
+    // Several devices over the same days in one round trip and one SQL statement, e.g. every device of
+    // a user for a dashboard page, at hourly, daily or monthly resolution
+    @PostMapping("/consumption/query")
+    public ResponseEntity<ConsumptionQueryResult> queryConsumption(@RequestBody ConsumptionQueryRequest request) {
+        if (request.getDeviceIds() == null || request.getDeviceIds().isEmpty()
+                || request.getFrom() == null || request.getTo() == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "deviceIds, from and to are required");
+        }
+        if (request.getTo().isBefore(request.getFrom())) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "to is before from");
+        }
+        List<Long> deviceIds = request.getDeviceIds().stream().distinct().toList();
+        if (deviceIds.size() > maxQueryDevices) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                "At most " + maxQueryDevices + " devices per query");
+        }
+        ConsumptionQueryRequest.Resolution resolution = request.getResolution() != null
+            ? request.getResolution() : ConsumptionQueryRequest.Resolution.HOUR;
+        long days = request.getFrom().until(request.getTo(), ChronoUnit.DAYS) + 1;
+        long periods;
+        switch (resolution) {
+            case DAY:
+                periods = days;
+                break;
+            case MONTH:
+                periods = YearMonth.from(request.getFrom()).until(YearMonth.from(request.getTo()), ChronoUnit.MONTHS) + 1;
+                break;
+            default:
+                periods = days * 24;
+        }
+        if (periods * deviceIds.size() > maxQueryPoints) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                "Query covers up to " + periods * deviceIds.size() + " values, the limit is " + maxQueryPoints);
+        }
+
+        return ResponseEntity.ok(new ConsumptionQueryResult(resolution, request.getFrom(), request.getTo(),
+            consumptionQueryRepository.query(deviceIds, resolution, request.getFrom(), request.getTo())));
+    }
+
+    // One row per day, both ends inclusive
+    @GetMapping("/device/{deviceId}/daily")
+    public ResponseEntity<List<DailyConsumption>> getDeviceDailyConsumption(
+            @PathVariable Long deviceId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return ResponseEntity.ok(dailyConsumptionRepository
+            .findByDeviceIdAndDayBetweenOrderByDayAsc(deviceId, from, to));
+    }
+
+    // One row per month (yyyy-MM), both ends inclusive; the last twelve months by default
+    @GetMapping("/device/{deviceId}/monthly")
+    public ResponseEntity<List<MonthlyConsumption>> getDeviceMonthlyConsumption(
+            @PathVariable Long deviceId,
+            @RequestParam(required = false) YearMonth from,
+            @RequestParam(required = false) YearMonth to) {
+        YearMonth last = to != null ? to : YearMonth.now();
+        YearMonth first = from != null ? from : last.minusMonths(11);
+        return ResponseEntity.ok(monthlyConsumptionRepository
+            .findByDeviceIdAndMonthBetweenOrderByMonthAsc(deviceId, first.atDay(1), last.atDay(1)));
+    }
+
+    // Oldest first, one keyset page at a time
     @GetMapping("/all")
-    public ResponseEntity<List<HourlyConsumption>> getAllConsumptions() {
-        return ResponseEntity.ok(hourlyConsumptionRepository.findAll());
+    public ResponseEntity<List<HourlyConsumption>> getAllConsumptions(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "1000") int limit) {
+        Limit pageLimit = pageLimit(limit);
+        List<HourlyConsumption> page;
+        if (cursor == null) {
+            page = hourlyConsumptionRepository.findPage(pageLimit);
+        } else {
+            ConsumptionCursor position = parseCursor(cursor);
+            page = hourlyConsumptionRepository.findPageAfter(position.timestamp(), position.id(), pageLimit);
+        }
+        return withNextCursor(page, pageLimit);
+    }
+
+    // Without paging parameters: the whole table, as before paging existed
+    @GetMapping(value = "/all", params = {"!cursor", "!limit"})
+    public WebAsyncTask<Void> getAllConsumptionsHistory(HttpServletResponse response) {
+        return stream(response, MediaType.APPLICATION_JSON, jsonArray(hourlyConsumptionStreamRepository::streamAll));
+    }
+
+    @GetMapping(value = "/all/stream", produces = "application/x-ndjson")
+    public WebAsyncTask<Void> streamAllConsumptions(HttpServletResponse response) {
+        return stream(response, NDJSON,
+            ndjson(writer -> hourlyConsumptionStreamRepository.streamAll(row -> writeJsonLine(writer, row))));
+    }
+
+    // Served from DailyConsumptionCache with an ETag, so a dashboard refresh that finds nothing new gets
+    // a 304. Every day is revalidated on each request: a late correction, possibly stored by another
+    // replica, can still change a past day.
+    private ResponseEntity<List<HourlyConsumption>> cachedDay(Long deviceId, LocalDate date, WebRequest request) {
+        DailyConsumptionCache.Day day = dailyConsumptionCache.get(deviceId, date);
+        CacheControl cacheControl = CacheControl.noCache().cachePrivate();
+        if (request.checkNotModified(day.etag())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(cacheControl).eTag(day.etag()).build();
+        }
+        return ResponseEntity.ok().cacheControl(cacheControl).eTag(day.etag()).body(day.rows());
+    }
+
+    private ConsumptionSeries daySeries(Long deviceId, LocalDate date) {
+        return ConsumptionSeries.ofDay(date, hourlyConsumptionRepository
+            .findValues(deviceId, date.atStartOfDay(), date.plusDays(1).atStartOfDay()), ZoneId.systemDefault());
+    }
+
+    private StreamingResponseBody deviceHistory(Long deviceId) {
+        return jsonArray(rows -> hourlyConsumptionStreamRepository.streamDevice(deviceId, rows));
+    }
+
+    private ResponseEntity<List<HourlyConsumption>> devicePage(Long deviceId, String cursor, int limit) {
+        Limit pageLimit = pageLimit(limit);
+        List<HourlyConsumption> page;
+        if (cursor == null) {
+            page = hourlyConsumptionRepository.findDevicePage(deviceId, pageLimit);
+        } else {
+            ConsumptionCursor position = parseCursor(cursor);
+            page = hourlyConsumptionRepository.findDevicePageBefore(deviceId, position.timestamp(), position.id(), pageLimit);
+        }
+        return withNextCursor(page, pageLimit);
+    }
+
+    private Limit pageLimit(int limit) {
+        return Limit.of(Math.max(1, Math.min(limit, maxPageSize)));
+    }
+
+    private static ConsumptionCursor parseCursor(String cursor) {
+        try {
+            return ConsumptionCursor.parse(cursor);
+        } catch (RuntimeException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor: " + cursor);
+        }
+    }
+
+    private static ResponseEntity<List<HourlyConsumption>> withNextCursor(List<HourlyConsumption> page, Limit limit) {
+        if (page.size() < limit.max()) {
+            return ResponseEntity.ok(page);
+        }
+        return ResponseEntity.ok()
+            .header(NEXT_CURSOR_HEADER, ConsumptionCursor.of(page.get(page.size() - 1)).toString())
+            .body(page);
+    }
+
+    // Written on an MVC async thread under a timeout of its own, long enough for a whole history, so the
+    // service-wide async request timeout stays in force for every other endpoint
+    private WebAsyncTask<Void> stream(HttpServletResponse response, MediaType contentType, StreamingResponseBody body) {
+        return new WebAsyncTask<>(streamTimeoutMs, () -> {
+            response.setContentType(contentType.toString());
+            body.writeTo(response.getOutputStream());
+            response.flushBuffer();
+            return null;
+        });
+    }
+
+    // The unpaged responses clients relied on before paging existed: one JSON array, written row by row
+    // from the streaming result set so the history is never held in memory
+    private static StreamingResponseBody jsonArray(Consumer<Consumer<HourlyConsumption>> source) {
+        return outputStream -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8), 64 * 1024);
+            writer.write('[');
+            try {
+                boolean[] first = {true};
+                source.accept(row -> {
+                    if (!first[0]) {
+                        write(writer, ",");
+                    }
+                    first[0] = false;
+                    writeJson(writer, row);
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            writer.write(']');
+            writer.flush();
+        };
+    }
+
+    private static StreamingResponseBody ndjson(Consumer<Writer> rows) {
+        return outputStream -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8), 64 * 1024);
+            try {
+                rows.accept(writer);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            writer.flush();
+        };
+    }
+
+    private static void writeJsonLine(Writer writer, HourlyConsumption row) {
+        writeJson(writer, row);
+        write(writer, "\n");
+    }
+
+    private static void write(Writer writer, String text) {
+        try {
+            writer.write(text);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Same fields as the JSON of HourlyConsumption, written straight into the buffered response
+    private static void writeJson(Writer writer, HourlyConsumption row) {
+        try {
+            writer.write("{\"id\":");
+            writer.write(Long.toString(row.getId()));
+            writer.write(",\"deviceId\":");
+            writer.write(Long.toString(row.getDeviceId()));
+            writer.write(",\"timestamp\":\"");
+            writer.write(DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(row.getTimestamp()));
+            writer.write("\",\"energyConsumption\":");
+            writer.write(Double.toString(row.getEnergyConsumption()));
+            writer.write(",\"sampleCount\":");
+            writer.write(String.valueOf(row.getSampleCount()));
+            writer.write(",\"complete\":");
+            writer.write(String.valueOf(row.getComplete()));
+            writer.write(",\"slotMask\":");
+            writer.write(String.valueOf(row.getSlotMask()));
+            writer.write("}");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 }
\ No newline at end of file
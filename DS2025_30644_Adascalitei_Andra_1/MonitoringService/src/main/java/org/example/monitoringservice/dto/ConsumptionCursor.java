@@ -0,0 +1,28 @@
+package org.example.monitoringservice.dto;
+
+import org.example.monitoringservice.entity.HourlyConsumption;
+
+import java.time.LocalDateTime;
+
+// Keyset position in an hourly history: the (timestamp, id) of the last row of a page, sent to
+// clients as "<timestamp>_<id>" in the X-Next-Cursor header
+public record ConsumptionCursor(LocalDateTime timestamp, long id) {
+
+    public static ConsumptionCursor of(HourlyConsumption row) {
+        return new ConsumptionCursor(row.getTimestamp(), row.getId());
+    }
+
+    public static ConsumptionCursor parse(String cursor) {
+        int separator = cursor.lastIndexOf('_');
+        if (separator < 0) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+        return new ConsumptionCursor(LocalDateTime.parse(cursor.substring(0, separator)),
+            Long.parseLong(cursor.substring(separator + 1)));
+    }
+
+    @Override
+    public String toString() {
+        return timestamp + "_" + id;
+    }
+}
@@ -0,0 +1,25 @@
+package org.example.monitoringservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.List;
+
+// Body of POST /consumption/query: several devices over one range of days, both ends inclusive
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConsumptionQueryRequest {
+    private List<Long> deviceIds;
+    private LocalDate from;
+    private LocalDate to;
+    private Resolution resolution = Resolution.HOUR;
+
+    public enum Resolution {
+        HOUR,
+        DAY,
+        MONTH
+    }
+}
@@ -0,0 +1,13 @@
+package org.example.monitoringservice.dto;
+
+import java.time.LocalDate;
+import java.util.List;
+
+// One entry per requested device, in request order; devices without rows have empty columns
+public record ConsumptionQueryResult(ConsumptionQueryRequest.Resolution resolution, LocalDate from, LocalDate to,
+                                     List<DeviceSeries> devices) {
+
+    // timestamps[i] is the start of a period (epoch millis) and values[i] its energy in kWh
+    public record DeviceSeries(long deviceId, long[] timestamps, double[] values, double total) {
+    }
+}
@@ -0,0 +1,36 @@
+package org.example.monitoringservice.dto;
+
+import org.example.monitoringservice.repository.HourlyValue;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+
+// One day of hourly consumption as columns instead of entities: values[i] is the energy of the hour
+// starting at start + i * step (epoch millis), and bit i of present says whether that hour has a row
+// at all (absent hours read 0). A DST day has 23 or 25 values.
+public record ConsumptionSeries(long start, long step, int present, double[] values) {
+
+    public static final long HOUR_MILLIS = 3_600_000L;
+
+    public static ConsumptionSeries ofDay(LocalDate date, List<HourlyValue> rows, ZoneId zone) {
+        long start = date.atStartOfDay(zone).toInstant().toEpochMilli();
+        long end = date.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+        double[] values = new double[(int) ((end - start) / HOUR_MILLIS)];
+        int present = 0;
+        for (HourlyValue row : rows) {
+            int hour = (int) ((epochMillis(row.getTimestamp(), zone) - start) / HOUR_MILLIS);
+            if (hour < 0 || hour >= values.length) {
+                continue;
+            }
+            values[hour] = row.getEnergyConsumption();
+            present |= 1 << hour;
+        }
+        return new ConsumptionSeries(start, HOUR_MILLIS, present, values);
+    }
+
+    private static long epochMillis(LocalDateTime timestamp, ZoneId zone) {
+        return timestamp.atZone(zone).toInstant().toEpochMilli();
+    }
+}
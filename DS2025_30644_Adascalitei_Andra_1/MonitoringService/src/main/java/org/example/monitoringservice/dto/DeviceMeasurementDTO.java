@@ -1,14 +1,29 @@
 package org.example.monitoringservice.dto;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+// Primitive fields, so the binary decoder boxes nothing per measurement
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class DeviceMeasurementDTO {
-    private Long timestamp;
-    private Long deviceId;
-    private Double measurementValue;
+    private long timestamp;
+    private long deviceId;
+    private double measurementValue;
+
+    // JSON is read through boxed values, so a missing or null field fails the message instead of
+    // silently becoming 0
+    @JsonCreator
+    public static DeviceMeasurementDTO fromJson(@JsonProperty("timestamp") Long timestamp,
+                                                @JsonProperty("deviceId") Long deviceId,
+                                                @JsonProperty("measurementValue") Double measurementValue) {
+        if (timestamp == null || deviceId == null || measurementValue == null) {
+            throw new IllegalArgumentException("Measurement without timestamp, deviceId or measurementValue");
+        }
+        return new DeviceMeasurementDTO(timestamp, deviceId, measurementValue);
+    }
 }
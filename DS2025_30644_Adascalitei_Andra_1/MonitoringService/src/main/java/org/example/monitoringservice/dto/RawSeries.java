@@ -0,0 +1,6 @@
+package org.example.monitoringservice.dto;
+
+// Raw samples of one device as two parallel columns, oldest first: timestamps in epoch millis and
+// values in kWh, rounded to monitoring.raw.decimals
+public record RawSeries(long[] timestamps, double[] values) {
+}
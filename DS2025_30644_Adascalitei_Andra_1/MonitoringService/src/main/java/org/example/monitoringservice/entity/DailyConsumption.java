@@ -0,0 +1,37 @@
+package org.example.monitoringservice.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+// Sum of a device's hourly rows for one day, kept current by ConsumptionRollupRepository
+@Entity
+@Table(name = "daily_consumption",
+    uniqueConstraints = @UniqueConstraint(name = "uk_daily_consumption_device_day", columnNames = {"device_id", "day"}))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DailyConsumption {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long deviceId;
+
+    @Column(nullable = false)
+    private LocalDate day;
+
+    @Column(nullable = false, name = "energy_consumption")
+    private Double energyConsumption;
+
+    @Column(name = "sample_count")
+    private Integer sampleCount;
+
+    // Hourly rows the day is made of
+    @Column(name = "hours")
+    private Integer hours;
+}
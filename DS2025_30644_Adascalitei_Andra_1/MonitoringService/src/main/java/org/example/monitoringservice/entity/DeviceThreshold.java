@@ -0,0 +1,19 @@
+package org.example.monitoringservice.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Entity
+@Table(name = "device_threshold")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DeviceThreshold {
+    @Id
+    private Long deviceId;
+
+    @Column(nullable = false, name = "max_consumption")
+    private Double maxConsumption;
+}
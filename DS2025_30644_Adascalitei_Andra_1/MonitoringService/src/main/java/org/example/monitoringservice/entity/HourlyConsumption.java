@@ -1,5 +1,6 @@
 package org.example.monitoringservice.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -8,7 +9,9 @@ import lombok.NoArgsConstructor;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "hourly_consumption")
+@Table(name = "hourly_consumption",
+    uniqueConstraints = @UniqueConstraint(name = "uk_hourly_consumption_device_hour", columnNames = {"device_id", "timestamp"}),
+    indexes = @Index(name = "idx_hourly_consumption_timestamp_id", columnList = "timestamp, id"))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -25,4 +28,20 @@ public class HourlyConsumption {
 
     @Column(nullable = false, name = "energy_consumption")
     private Double energyConsumption;
+
+    @Column(name = "sample_count")
+    private Integer sampleCount;
+
+    @Column(name = "complete")
+    private Boolean complete;
+
+    // Bit i is set once a sample for minutes [10*i, 10*i + 10) of the hour has been counted
+    @Column(name = "slot_mask")
+    private Integer slotMask;
+
+    // Value of each slot in slotMask (index i for bit i), so the upsert only adds the slots a stored row
+    // lacks. Only set on rows swept from the window lanes.
+    @Transient
+    @JsonIgnore
+    private double[] slotValues;
 }
@@ -0,0 +1,38 @@
+package org.example.monitoringservice.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+// Sum of a device's daily rows for one month, kept current by ConsumptionRollupRepository
+@Entity
+@Table(name = "monthly_consumption",
+    uniqueConstraints = @UniqueConstraint(name = "uk_monthly_consumption_device_month", columnNames = {"device_id", "month"}))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MonthlyConsumption {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long deviceId;
+
+    // First day of the month
+    @Column(nullable = false)
+    private LocalDate month;
+
+    @Column(nullable = false, name = "energy_consumption")
+    private Double energyConsumption;
+
+    @Column(name = "sample_count")
+    private Integer sampleCount;
+
+    // Days with at least one hourly row
+    @Column(name = "days")
+    private Integer days;
+}
@@ -6,7 +6,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 @Entity
-@Table(name = "users")
+@Table(name = "users", indexes = @Index(name = "idx_users_device_id", columnList = "deviceId"))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -0,0 +1,134 @@
+package org.example.monitoringservice.index;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.monitoringservice.entity.User;
+import org.example.monitoringservice.repository.UserRepository;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// In-memory copy of the users table (one device per user) in both directions, so the owner of a
+// device is found without touching the database. SyncConsumer keeps it current; the periodic reload
+// catches up with sync events consumed by another monitoring replica.
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class DeviceOwnerIndex {
+
+    public static final long NO_OWNER = LongLongHashMap.NO_VALUE;
+
+    private static final int ASSIGN = 0;
+    private static final int REMOVE_USER = 1;
+    private static final int REMOVE_DEVICE = 2;
+
+    private final UserRepository userRepository;
+
+    private LongLongHashMap ownerByDevice = new LongLongHashMap();
+    private LongLongHashMap deviceByOwner = new LongLongHashMap();
+    // Changes made while a reload reads the table, replayed onto the loaded maps: the read may have
+    // missed them, and swapping the maps in would otherwise undo them until the next reload
+    private List<long[]> changesDuringReload;
+
+    @PostConstruct
+    public void warmUp() {
+        reload();
+    }
+
+    @Scheduled(fixedDelayString = "${monitoring.owner-index.reload-interval-ms:300000}",
+        initialDelayString = "${monitoring.owner-index.reload-interval-ms:300000}")
+    public void reload() {
+        long start = System.nanoTime();
+        List<long[]> changes = new ArrayList<>();
+        synchronized (this) {
+            // Another reload is already reading the table and records this one's changes too
+            if (changesDuringReload != null) {
+                return;
+            }
+            changesDuringReload = changes;
+        }
+        LongLongHashMap owners;
+        LongLongHashMap devices;
+        try {
+            List<User> users = userRepository.findAll();
+            owners = new LongLongHashMap(users.size());
+            devices = new LongLongHashMap(users.size());
+            for (User user : users) {
+                owners.put(user.getDeviceId(), user.getId());
+                devices.put(user.getId(), user.getDeviceId());
+            }
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                changesDuringReload = null;
+            }
+            throw e;
+        }
+        synchronized (this) {
+            // Applied in their original order, so the result is the same as if they followed the read
+            for (long[] change : changes) {
+                apply(owners, devices, (int) change[0], change[1], change[2]);
+            }
+            ownerByDevice = owners;
+            deviceByOwner = devices;
+            changesDuringReload = null;
+        }
+        log.info("Loaded owners of {} devices in {} ms ({} changes replayed)", owners.size(),
+            (System.nanoTime() - start) / 1_000_000, changes.size());
+    }
+
+    // NO_OWNER when the device is not assigned
+    public synchronized long ownerOf(long deviceId) {
+        return ownerByDevice.get(deviceId);
+    }
+
+    // Mirrors users.save(userId, deviceId): the user's previous device, if any, loses its owner
+    public synchronized void assign(long userId, long deviceId) {
+        change(ASSIGN, userId, deviceId);
+    }
+
+    public synchronized void removeUser(long userId) {
+        change(REMOVE_USER, userId, LongLongHashMap.NO_VALUE);
+    }
+
+    public synchronized void removeDevice(long deviceId) {
+        change(REMOVE_DEVICE, LongLongHashMap.NO_VALUE, deviceId);
+    }
+
+    // Caller holds the lock
+    private void change(int type, long userId, long deviceId) {
+        apply(ownerByDevice, deviceByOwner, type, userId, deviceId);
+        if (changesDuringReload != null) {
+            changesDuringReload.add(new long[]{type, userId, deviceId});
+        }
+    }
+
+    private static void apply(LongLongHashMap ownerByDevice, LongLongHashMap deviceByOwner,
+                              int type, long userId, long deviceId) {
+        switch (type) {
+            case ASSIGN -> {
+                long previousDevice = deviceByOwner.put(userId, deviceId);
+                if (previousDevice != LongLongHashMap.NO_VALUE && previousDevice != deviceId
+                        && ownerByDevice.get(previousDevice) == userId) {
+                    ownerByDevice.remove(previousDevice);
+                }
+                ownerByDevice.put(deviceId, userId);
+            }
+            case REMOVE_USER -> {
+                long ownedDevice = deviceByOwner.remove(userId);
+                if (ownedDevice != LongLongHashMap.NO_VALUE && ownerByDevice.get(ownedDevice) == userId) {
+                    ownerByDevice.remove(ownedDevice);
+                }
+            }
+            case REMOVE_DEVICE -> {
+                long owner = ownerByDevice.remove(deviceId);
+                if (owner != LongLongHashMap.NO_VALUE && deviceByOwner.get(owner) == deviceId) {
+                    deviceByOwner.remove(owner);
+                }
+            }
+            default -> throw new IllegalArgumentException("Unknown owner change " + type);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package org.example.monitoringservice.index;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.monitoringservice.entity.DeviceThreshold;
+import org.example.monitoringservice.repository.DeviceThresholdRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Hourly consumption limit of every device, as reported by DeviceMicroservice, kept in memory so a
+// closing hour is checked without a database read. SyncConsumer keeps it current; devices without a
+// limit of their own use overconsumption.threshold.
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class DeviceThresholdIndex {
+
+    private final DeviceThresholdRepository deviceThresholdRepository;
+
+    @Value("${overconsumption.threshold:5.0}")
+    private double defaultThreshold;
+
+    // Values are the raw bits of the threshold doubles; LongLongHashMap.NO_VALUE marks a device without one
+    private LongLongHashMap thresholdBits = new LongLongHashMap();
+    // Changes made while a reload reads the table, as {deviceId, bits or NO_VALUE}, replayed onto the
+    // loaded map so the swap does not undo them
+    private List<long[]> changesDuringReload;
+
+    @PostConstruct
+    public void warmUp() {
+        reload();
+    }
+
+    @Scheduled(fixedDelayString = "${monitoring.owner-index.reload-interval-ms:300000}",
+        initialDelayString = "${monitoring.owner-index.reload-interval-ms:300000}")
+    public void reload() {
+        List<long[]> changes = new ArrayList<>();
+        synchronized (this) {
+            // Another reload is already reading the table and records this one's changes too
+            if (changesDuringReload != null) {
+                return;
+            }
+            changesDuringReload = changes;
+        }
+        LongLongHashMap bits;
+        try {
+            List<DeviceThreshold> thresholds = deviceThresholdRepository.findAll();
+            bits = new LongLongHashMap(thresholds.size());
+            for (DeviceThreshold threshold : thresholds) {
+                bits.put(threshold.getDeviceId(), Double.doubleToRawLongBits(threshold.getMaxConsumption()));
+            }
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                changesDuringReload = null;
+            }
+            throw e;
+        }
+        synchronized (this) {
+            for (long[] change : changes) {
+                apply(bits, change[0], change[1]);
+            }
+            thresholdBits = bits;
+            changesDuringReload = null;
+        }
+        log.info("Loaded consumption thresholds of {} devices ({} changes replayed)", bits.size(), changes.size());
+    }
+
+    public synchronized double thresholdOf(long deviceId) {
+        long bits = thresholdBits.get(deviceId);
+        return bits == LongLongHashMap.NO_VALUE ? defaultThreshold : Double.longBitsToDouble(bits);
+    }
+
+    public synchronized void put(long deviceId, double maxConsumption) {
+        change(deviceId, Double.doubleToRawLongBits(maxConsumption));
+    }
+
+    public synchronized void remove(long deviceId) {
+        change(deviceId, LongLongHashMap.NO_VALUE);
+    }
+
+    // Caller holds the lock
+    private void change(long deviceId, long bits) {
+        apply(thresholdBits, deviceId, bits);
+        if (changesDuringReload != null) {
+            changesDuringReload.add(new long[]{deviceId, bits});
+        }
+    }
+
+    private static void apply(LongLongHashMap thresholdBits, long deviceId, long bits) {
+        if (bits == LongLongHashMap.NO_VALUE) {
+            thresholdBits.remove(deviceId);
+        } else {
+            thresholdBits.put(deviceId, bits);
+        }
+    }
+}
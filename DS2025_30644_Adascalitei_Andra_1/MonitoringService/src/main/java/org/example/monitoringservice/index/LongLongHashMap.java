@@ -0,0 +1,123 @@
+package org.example.monitoringservice.index;
+
+// Open-addressing long -> long map with linear probing over parallel primitive arrays, so lookups
+// allocate nothing and no key or value is boxed. Not thread-safe.
+public class LongLongHashMap {
+
+    public static final long NO_VALUE = Long.MIN_VALUE;
+
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private long[] keys;
+    private long[] values;
+    private boolean[] used;
+
+    private int mask;
+    private int size;
+    private int resizeThreshold;
+
+    public LongLongHashMap() {
+        this(64);
+    }
+
+    public LongLongHashMap(int expectedSize) {
+        allocate(tableSizeFor(expectedSize));
+    }
+
+    // NO_VALUE when the key is absent
+    public long get(long key) {
+        int slot = indexOf(key);
+        return used[slot] ? values[slot] : NO_VALUE;
+    }
+
+    // Returns the previous value, or NO_VALUE
+    public long put(long key, long value) {
+        int slot = indexOf(key);
+        if (used[slot]) {
+            long previous = values[slot];
+            values[slot] = value;
+            return previous;
+        }
+        if (size >= resizeThreshold) {
+            resize(keys.length << 1);
+            slot = indexOf(key);
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        used[slot] = true;
+        size++;
+        return NO_VALUE;
+    }
+
+    // Returns the removed value, or NO_VALUE
+    public long remove(long key) {
+        int slot = indexOf(key);
+        if (!used[slot]) {
+            return NO_VALUE;
+        }
+        long removed = values[slot];
+
+        // Backward-shift deletion, so removed keys leave no tombstones behind
+        int free = slot;
+        int next = (free + 1) & mask;
+        while (used[next]) {
+            int home = hash(keys[next]) & mask;
+            if (((next - home) & mask) >= ((next - free) & mask)) {
+                keys[free] = keys[next];
+                values[free] = values[next];
+                free = next;
+            }
+            next = (next + 1) & mask;
+        }
+        used[free] = false;
+        size--;
+        return removed;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private int indexOf(long key) {
+        int slot = hash(key) & mask;
+        while (used[slot] && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void resize(int newCapacity) {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        boolean[] oldUsed = used;
+
+        allocate(newCapacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldUsed[i]) {
+                int slot = indexOf(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+                used[slot] = true;
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new long[capacity];
+        used = new boolean[capacity];
+        mask = capacity - 1;
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private static int tableSizeFor(int expected) {
+        int needed = (int) Math.ceil(Math.max(expected, 16) / LOAD_FACTOR);
+        return Integer.highestOneBit(needed - 1) << 1;
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 32;
+        return (int) h;
+    }
+}
@@ -0,0 +1,48 @@
+package org.example.monitoringservice.ingest;
+
+import java.util.Arrays;
+
+// The measurements of one listener batch that belong to one lane, as parallel primitive arrays
+public class MeasurementBatch {
+
+    private long[] deviceIds;
+    private long[] timestamps;
+    private double[] values;
+    private int size;
+
+    public MeasurementBatch(int expectedSize) {
+        int capacity = Math.max(expectedSize, 4);
+        this.deviceIds = new long[capacity];
+        this.timestamps = new long[capacity];
+        this.values = new double[capacity];
+    }
+
+    public void add(long deviceId, long timestampMillis, double value) {
+        if (size == deviceIds.length) {
+            int capacity = size << 1;
+            deviceIds = Arrays.copyOf(deviceIds, capacity);
+            timestamps = Arrays.copyOf(timestamps, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+        deviceIds[size] = deviceId;
+        timestamps[size] = timestampMillis;
+        values[size] = value;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long deviceId(int index) {
+        return deviceIds[index];
+    }
+
+    public long timestamp(int index) {
+        return timestamps[index];
+    }
+
+    public double value(int index) {
+        return values[index];
+    }
+}
@@ -0,0 +1,16 @@
+package org.example.monitoringservice.ingest;
+
+import org.example.monitoringservice.window.HourlyAccumulator;
+
+// Window state moving between lanes: open windows, late samples not yet applied to stored rows,
+// and the newest event time the previous owner had seen
+public record WindowHandoff(HourlyAccumulator windows, HourlyAccumulator corrections, long maxEventTime) {
+
+    public static WindowHandoff empty() {
+        return new WindowHandoff(new HourlyAccumulator(16), new HourlyAccumulator(16), Long.MIN_VALUE);
+    }
+
+    public boolean isEmpty() {
+        return windows.size() == 0 && corrections.size() == 0;
+    }
+}
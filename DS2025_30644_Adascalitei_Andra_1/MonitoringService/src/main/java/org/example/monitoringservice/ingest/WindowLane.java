@@ -0,0 +1,459 @@
+package org.example.monitoringservice.ingest;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.monitoringservice.entity.HourlyConsumption;
+import org.example.monitoringservice.live.LiveTotals;
+import org.example.monitoringservice.live.LiveUpdate;
+import org.example.monitoringservice.metrics.IngestMetrics;
+import org.example.monitoringservice.metrics.RawStoreMetrics;
+import org.example.monitoringservice.tsdb.HeadChunks;
+import org.example.monitoringservice.tsdb.RawSamples;
+import org.example.monitoringservice.wal.WindowJournal;
+import org.example.monitoringservice.window.EventTimeWatermark;
+import org.example.monitoringservice.window.HourlyAccumulator;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+// One partition of the open hour windows. Every device hashes to exactly one lane, and the lane's
+// windows, pending corrections, watermark and WAL are only ever touched by the lane's own thread:
+// no locks, and a device's samples are applied in the order their batches were submitted.
+// A swept window stays in the lane, and in its checkpoints, until it is marked persisted or reopened.
+@Slf4j
+public class WindowLane {
+
+    private final int index;
+    private final int laneCount;
+    private final Settings settings;
+    private final WindowJournal journal;
+    private final IngestMetrics ingestMetrics;
+    private final HeadChunks heads;
+    private final RawStoreMetrics rawStoreMetrics;
+    private final LiveTotals live;
+    private final ThreadPoolExecutor executor;
+
+    private final HourlyAccumulator windows = new HourlyAccumulator();
+    private final HourlyAccumulator pendingCorrections = new HourlyAccumulator(16);
+    // Swept, but not yet marked persisted
+    private final HourlyAccumulator sweptWindows = new HourlyAccumulator(16);
+    private final HourlyAccumulator sweptCorrections = new HourlyAccumulator(16);
+    // The slots of recently persisted hours, merged the same way the upsert merges them, so the
+    // total stored for an hour is known without reading it back
+    private final HourlyAccumulator persistedHours = new HourlyAccumulator(16);
+    private final EventTimeWatermark watermark = new EventTimeWatermark();
+
+    public WindowLane(int index, int laneCount, Settings settings, WindowJournal journal, IngestMetrics ingestMetrics,
+                      HeadChunks heads, RawStoreMetrics rawStoreMetrics, LiveTotals live) {
+        this.index = index;
+        this.laneCount = laneCount;
+        this.settings = settings;
+        this.journal = journal;
+        this.ingestMetrics = ingestMetrics;
+        this.heads = heads;
+        this.rawStoreMetrics = rawStoreMetrics;
+        this.live = live;
+        this.executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+            task -> new Thread(task, "window-lane-" + index));
+        ingestMetrics.registerLane(index, () -> executor.getQueue().size(), windows::size);
+    }
+
+    public static int laneOf(long deviceId, int laneCount) {
+        // Fibonacci hashing, so sequential device ids spread evenly over the lanes
+        return (int) (((deviceId * 0x9E3779B97F4A7C15L) >>> 32) % laneCount);
+    }
+
+    // Open raw chunks come back from their snapshot, then the WAL tops them up unless the snapshot
+    // already covers it; chunks of devices that now hash to another lane are sealed right away
+    public CompletableFuture<WindowJournal.RecoveryStats> recover() {
+        return run(() -> {
+            try {
+                WindowJournal.RecoveryStats stats;
+                if (heads == null) {
+                    stats = journal.recover(windows, pendingCorrections, watermark);
+                } else {
+                    heads.load();
+                    stats = journal.recover(windows, pendingCorrections, watermark,
+                        (deviceId, timestamp, value) -> {
+                            if (heads.generation() <= journal.generation()) {
+                                appendRaw(deviceId, timestamp, value);
+                            }
+                        });
+                    heads.sealIf(deviceId -> laneOf(deviceId, laneCount) != index);
+                }
+                if (stats.droppedCheckpointVersion() != 0) {
+                    log.warn("Discarded a version {} window checkpoint in lane {}, recovered from the log only",
+                        stats.droppedCheckpointVersion(), index);
+                }
+                return stats;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to recover window lane " + index, e);
+            }
+        });
+    }
+
+    // Completes once every sample is in the lane's windows and, with the WAL enabled, synced to disk
+    public CompletableFuture<Void> submit(MeasurementBatch batch) {
+        return run(() -> {
+            for (int i = 0; i < batch.size(); i++) {
+                bufferMeasurement(batch.deviceId(i), batch.timestamp(i), batch.value(i));
+            }
+            if (journal != null) {
+                journal.sync();
+            }
+            return null;
+        });
+    }
+
+    // Moves every window whose hour ended more than the allowed lateness before the watermark
+    // (every open window when flushing), plus all pending corrections, to the swept ones and returns
+    // them as rows to persist. Persisted hours past the retention are forgotten.
+    public CompletableFuture<SweepResult> sweep(boolean flushAll) {
+        return run(() -> {
+            List<HourlyConsumption> closed = new ArrayList<>();
+            List<HourlyConsumption> corrections = new ArrayList<>();
+            if (watermark.hasEvents()) {
+                persistedHours.closeWindowsBefore(closedBeforeHour() - settings.persistedRetentionHours(),
+                    (accumulator, slot) -> { });
+                int closeBefore = flushAll ? Integer.MAX_VALUE : closedBeforeHour();
+                windows.closeWindowsBefore(closeBefore, (accumulator, slot) -> {
+                    closed.add(toHourlyConsumption(accumulator, slot));
+                    sweptWindows.merge(accumulator, slot);
+                });
+            }
+            pendingCorrections.closeWindowsBefore(Integer.MAX_VALUE, (accumulator, slot) -> {
+                corrections.add(toHourlyConsumption(accumulator, slot));
+                sweptCorrections.merge(accumulator, slot);
+            });
+            return new SweepResult(closed, corrections);
+        });
+    }
+
+    // Puts swept rows that could not be persisted back, so the next sweep retries them. Their samples
+    // are still in the WAL or the checkpoint, so nothing is journaled.
+    public CompletableFuture<Void> reopen(List<HourlyConsumption> rows, boolean corrections) {
+        return run(() -> {
+            HourlyAccumulator swept = corrections ? sweptCorrections : sweptWindows;
+            HourlyAccumulator target = corrections ? pendingCorrections : windows;
+            for (HourlyConsumption row : rows) {
+                int slot = swept.find(row.getDeviceId(), toEpochHour(row.getTimestamp()));
+                if (slot >= 0) {
+                    target.merge(swept, slot);
+                    swept.remove(slot);
+                }
+            }
+            return null;
+        });
+    }
+
+    // Returns the rows as stored after the upsert: a closed row merged with the earlier parts of its
+    // hour this lane persisted, a correction merged with its persisted hour. A correction whose hour
+    // is past the retention, or was persisted before a restart, has no known total and is left out.
+    public CompletableFuture<List<HourlyConsumption>> markPersisted(List<HourlyConsumption> rows, boolean corrections) {
+        return run(() -> {
+            HourlyAccumulator swept = corrections ? sweptCorrections : sweptWindows;
+            List<HourlyConsumption> stored = new ArrayList<>(rows.size());
+            for (HourlyConsumption row : rows) {
+                int epochHour = toEpochHour(row.getTimestamp());
+                int slot = swept.find(row.getDeviceId(), epochHour);
+                if (slot >= 0) {
+                    swept.remove(slot);
+                }
+                if (!corrections || persistedHours.find(row.getDeviceId(), epochHour) >= 0) {
+                    int persisted = persistedHours.merge(row.getDeviceId(), epochHour, row.getSlotMask(),
+                        row.getSlotValues(), 0);
+                    stored.add(toHourlyConsumption(persistedHours, persisted));
+                }
+                if (journal != null) {
+                    journalPersisted(row.getDeviceId(), epochHour, corrections);
+                }
+            }
+            if (journal != null) {
+                journal.sync();
+            }
+            return stored;
+        });
+    }
+
+    // Takes out every window this lane does not own under the current lane count, e.g. after a
+    // restart with a different number of lanes
+    public CompletableFuture<WindowHandoff> releaseForeignWindows() {
+        return run(() -> {
+            WindowHandoff handoff = WindowHandoff.empty();
+            HourlyAccumulator.WindowFilter foreign = (accumulator, slot) ->
+                laneOf(accumulator.deviceId(slot), laneCount) != index;
+            windows.removeWindows(foreign, (accumulator, slot) -> copy(accumulator, slot, handoff.windows()));
+            pendingCorrections.removeWindows(foreign, (accumulator, slot) -> copy(accumulator, slot, handoff.corrections()));
+            persistedHours.removeWindows(foreign, (accumulator, slot) -> { });
+            return new WindowHandoff(handoff.windows(), handoff.corrections(), watermark.maxEventTime());
+        });
+    }
+
+    // Merges the windows of the handoff that belong to this lane
+    public CompletableFuture<Integer> adopt(WindowHandoff handoff) {
+        return run(() -> {
+            int adopted = 0;
+            adopted += adoptInto(handoff.windows(), windows);
+            adopted += adoptInto(handoff.corrections(), pendingCorrections);
+            if (handoff.maxEventTime() != Long.MIN_VALUE) {
+                watermark.observe(handoff.maxEventTime());
+            }
+            return adopted;
+        });
+    }
+
+    public CompletableFuture<Void> checkpointAsync() {
+        return run(() -> {
+            if (journal != null) {
+                checkpoint();
+            }
+            return null;
+        });
+    }
+
+    // The raw samples of one device that are still in its open chunk
+    public CompletableFuture<RawSamples> headSamples(long deviceId, long fromMillis, long toMillis) {
+        return run(() -> {
+            RawSamples samples = new RawSamples();
+            if (heads != null) {
+                heads.collect(deviceId, fromMillis, toMillis, samples);
+            }
+            return samples;
+        });
+    }
+
+    // Sends the throttled running totals whose interval has passed
+    public CompletableFuture<Void> flushLive() {
+        return run(() -> {
+            if (live != null) {
+                live.drainDue(System.currentTimeMillis());
+            }
+            return null;
+        });
+    }
+
+    // Takes a final checkpoint and stops the lane thread once every queued task has run. Without the
+    // WAL there is nothing to restore open raw chunks from, so they are sealed instead.
+    public void close() throws IOException {
+        CompletableFuture<Void> closed = run(() -> {
+            try {
+                if (journal != null) {
+                    checkpoint();
+                    journal.close();
+                } else if (heads != null) {
+                    heads.sealAll();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return null;
+        });
+        executor.shutdown();
+        try {
+            closed.join();
+        } catch (Exception e) {
+            throw new IOException("Failed to close window lane " + index, e);
+        }
+    }
+
+    public int index() {
+        return index;
+    }
+
+    public int openWindows() {
+        return windows.size();
+    }
+
+    public int pendingCorrections() {
+        return pendingCorrections.size();
+    }
+
+    private void bufferMeasurement(long deviceId, long timestamp, double value) {
+        int epochHour = HourlyAccumulator.epochHour(timestamp);
+
+        if (watermark.hasEvents()) {
+            if (timestamp > watermark.current() + settings.maxFutureSkewMs()) {
+                log.warn("Dropping measurement from device {} dated {} ms ahead of the stream",
+                    deviceId, timestamp - watermark.current());
+                ingestMetrics.recordFutureSampleDropped();
+                return;
+            }
+
+            if (epochHour < closedBeforeHour() && windows.find(deviceId, epochHour) < 0) {
+                if (pendingCorrections.containsSample(deviceId, timestamp)) {
+                    ingestMetrics.recordDuplicateSample();
+                    return;
+                }
+                journalSample(deviceId, timestamp, value, true);
+                pendingCorrections.add(deviceId, timestamp, value);
+                appendRaw(deviceId, timestamp, value);
+                ingestMetrics.recordLateSamples(1);
+                return;
+            }
+        }
+
+        // Redeliveries and simulator retries land in a slot that is already set
+        if (windows.containsSample(deviceId, timestamp)) {
+            ingestMetrics.recordDuplicateSample();
+            return;
+        }
+
+        if (windows.size() >= settings.maxOpenWindows() && windows.find(deviceId, epochHour) < 0) {
+            log.warn("Dropping measurement from device {}: {} windows already open in lane {}",
+                deviceId, settings.maxOpenWindows(), index);
+            ingestMetrics.recordOverflowSampleDropped();
+            return;
+        }
+
+        journalSample(deviceId, timestamp, value, false);
+        int slot = windows.add(deviceId, timestamp, value);
+        watermark.observe(timestamp);
+        appendRaw(deviceId, timestamp, value);
+        // Only samples of open windows: late ones go to a correction instead of a running total
+        if (live != null) {
+            live.offer(new LiveUpdate(deviceId, HourlyAccumulator.hourStartMillis(epochHour), windows.sum(slot),
+                windows.count(slot), timestamp), System.currentTimeMillis());
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("Buffer for device {} at hour {}: {}/{} measurements",
+                deviceId, epochHour, windows.count(slot), settings.expectedSamples());
+        }
+    }
+
+    // Logged before the sample reaches the accumulator, so a checkpoint forced by a full
+    // segment never contains it twice
+    private void journalSample(long deviceId, long timestamp, double value, boolean late) {
+        if (journal == null) {
+            return;
+        }
+        boolean appended = late
+            ? journal.appendLateSample(deviceId, timestamp, value)
+            : journal.appendSample(deviceId, timestamp, value);
+        if (!appended) {
+            checkpoint();
+            if (late) {
+                journal.appendLateSample(deviceId, timestamp, value);
+            } else {
+                journal.appendSample(deviceId, timestamp, value);
+            }
+        }
+    }
+
+    // A CLOSE or CORRECTED record drops the whole window on replay, so samples of the same hour that
+    // arrived while it was being persisted are journaled again after it
+    private void journalPersisted(long deviceId, int epochHour, boolean corrections) {
+        boolean appended = corrections
+            ? journal.appendCorrected(deviceId, epochHour)
+            : journal.appendClose(deviceId, epochHour);
+        // A full segment is checkpointed, and the checkpoint no longer holds the window anyway
+        if (!appended) {
+            checkpoint();
+            return;
+        }
+        HourlyAccumulator target = corrections ? pendingCorrections : windows;
+        int slot = target.find(deviceId, epochHour);
+        if (slot < 0) {
+            return;
+        }
+        for (int i = 0; i < HourlyAccumulator.SLOTS; i++) {
+            if ((target.slotMask(slot) & (1 << i)) != 0) {
+                long timestamp = HourlyAccumulator.hourStartMillis(epochHour) + i * HourlyAccumulator.SLOT_MILLIS;
+                journalSample(deviceId, timestamp, target.slotValue(slot, i), corrections);
+            }
+        }
+    }
+
+    // Raw samples are secondary: a chunk that cannot be written is logged and dropped, and ingest goes on
+    private void appendRaw(long deviceId, long timestamp, double value) {
+        if (heads == null) {
+            return;
+        }
+        try {
+            heads.append(deviceId, timestamp, value);
+        } catch (IOException e) {
+            log.error("❌Failed to seal the raw chunk of device {} in lane {}: {}", deviceId, index, e.getMessage(), e);
+            rawStoreMetrics.recordAppendFailure();
+        }
+    }
+
+    private void checkpoint() {
+        long start = System.nanoTime();
+        try {
+            if (heads != null) {
+                heads.snapshot(journal.generation() + 1);
+            }
+            journal.checkpoint(List.of(windows, sweptWindows), List.of(pendingCorrections, sweptCorrections), watermark);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to checkpoint window lane " + index, e);
+        }
+        log.info("Lane {}: checkpointed {} open windows and {} pending corrections in {} ms",
+            index, windows.size(), pendingCorrections.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private int closedBeforeHour() {
+        return HourlyAccumulator.epochHour(watermark.current() - settings.allowedLatenessMs());
+    }
+
+    private int adoptInto(HourlyAccumulator source, HourlyAccumulator target) {
+        int[] adopted = new int[1];
+        source.forEach((accumulator, slot) -> {
+            if (laneOf(accumulator.deviceId(slot), laneCount) == index) {
+                copy(accumulator, slot, target);
+                adopted[0]++;
+            }
+        });
+        return adopted[0];
+    }
+
+    private static void copy(HourlyAccumulator source, int slot, HourlyAccumulator target) {
+        target.merge(source, slot);
+    }
+
+    private HourlyConsumption toHourlyConsumption(HourlyAccumulator accumulator, int slot) {
+        HourlyConsumption hourlyConsumption = new HourlyConsumption();
+        hourlyConsumption.setDeviceId(accumulator.deviceId(slot));
+        hourlyConsumption.setTimestamp(toHourStart(accumulator.epochHour(slot)));
+        hourlyConsumption.setEnergyConsumption(accumulator.sum(slot));
+        hourlyConsumption.setSampleCount(accumulator.count(slot));
+        hourlyConsumption.setComplete(accumulator.count(slot) >= settings.expectedSamples());
+        hourlyConsumption.setSlotMask(accumulator.slotMask(slot));
+        double[] slotValues = new double[HourlyAccumulator.SLOTS];
+        for (int i = 0; i < slotValues.length; i++) {
+            slotValues[i] = accumulator.slotValue(slot, i);
+        }
+        hourlyConsumption.setSlotValues(slotValues);
+        return hourlyConsumption;
+    }
+
+    private static LocalDateTime toHourStart(int epochHour) {
+        return LocalDateTime.ofInstant(
+            Instant.ofEpochMilli(HourlyAccumulator.hourStartMillis(epochHour)),
+            ZoneId.systemDefault()
+        );
+    }
+
+    private static int toEpochHour(LocalDateTime hourStart) {
+        return HourlyAccumulator.epochHour(hourStart.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+    }
+
+    private <T> CompletableFuture<T> run(Supplier<T> task) {
+        return CompletableFuture.supplyAsync(task, executor);
+    }
+
+    public record Settings(long allowedLatenessMs, int expectedSamples, long maxFutureSkewMs, int maxOpenWindows,
+                           int persistedRetentionHours) {
+    }
+
+    public record SweepResult(List<HourlyConsumption> closed, List<HourlyConsumption> corrections) {
+    }
+}
@@ -0,0 +1,411 @@
+package org.example.monitoringservice.ingest;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.monitoringservice.dto.DeviceMeasurementDTO;
+import org.example.monitoringservice.entity.HourlyConsumption;
+import org.example.monitoringservice.live.LiveTotals;
+import org.example.monitoringservice.metrics.IngestMetrics;
+import org.example.monitoringservice.metrics.RawStoreMetrics;
+import org.example.monitoringservice.service.LiveConsumptionPublisher;
+import org.example.monitoringservice.tsdb.HeadChunks;
+import org.example.monitoringservice.tsdb.RawSampleStore;
+import org.example.monitoringservice.tsdb.RawSamples;
+import org.example.monitoringservice.wal.WindowJournal;
+import org.example.monitoringservice.window.EventTimeWatermark;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+// Routes measurements to the window lanes by device id and fans sweeps and checkpoints out to them
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class WindowLanes {
+
+    private final IngestMetrics ingestMetrics;
+    private final RawStoreMetrics rawStoreMetrics;
+    private final LiveConsumptionPublisher liveConsumptionPublisher;
+
+    @Value("${monitoring.window.lanes:0}")
+    private int configuredLanes;
+
+    @Value("${monitoring.window.allowed-lateness-ms:300000}")
+    private long allowedLatenessMs;
+
+    @Value("${monitoring.window.expected-samples:6}")
+    private int expectedSamples;
+
+    @Value("${monitoring.window.max-future-skew-ms:3600000}")
+    private long maxFutureSkewMs;
+
+    @Value("${monitoring.window.max-open-windows:2000000}")
+    private int maxOpenWindows;
+
+    @Value("${monitoring.window.persisted-retention-hours:2}")
+    private int persistedRetentionHours;
+
+    @Value("${monitoring.wal.enabled:true}")
+    private boolean walEnabled;
+
+    @Value("${monitoring.wal.dir:/var/lib/monitoring/wal}")
+    private String walDir;
+
+    @Value("${monitoring.wal.segment-size-mb:64}")
+    private int walSegmentSizeMb;
+
+    @Value("${monitoring.raw.enabled:true}")
+    private boolean rawEnabled;
+
+    @Value("${monitoring.raw.dir:/var/lib/monitoring/raw}")
+    private String rawDir;
+
+    @Value("${monitoring.raw.segment-size-mb:256}")
+    private int rawSegmentSizeMb;
+
+    @Value("${monitoring.raw.chunk-samples:240}")
+    private int rawChunkSamples;
+
+    @Value("${monitoring.raw.decimals:3}")
+    private int rawDecimals;
+
+    @Value("${monitoring.raw.retention-days:365}")
+    private int rawRetentionDays;
+
+    @Value("${monitoring.live.enabled:true}")
+    private boolean liveEnabled;
+
+    @Value("${monitoring.live.min-interval-ms:5000}")
+    private long liveMinIntervalMs;
+
+    private WindowLane[] lanes;
+    private RawSampleStore rawStore;
+
+    // Runs before the listener containers start, so no measurement is processed on top of a partial state
+    @PostConstruct
+    public void start() throws IOException {
+        int laneCount = configuredLanes > 0 ? configuredLanes : Runtime.getRuntime().availableProcessors();
+        WindowLane.Settings settings = new WindowLane.Settings(allowedLatenessMs, expectedSamples, maxFutureSkewMs,
+            Math.max(1, (maxOpenWindows + laneCount - 1) / laneCount), persistedRetentionHours);
+
+        if (rawEnabled) {
+            openRawStore();
+        }
+
+        lanes = new WindowLane[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            WindowJournal journal = walEnabled ? new WindowJournal(laneDirectory(i), walSegmentSizeMb * 1024 * 1024) : null;
+            HeadChunks heads = rawStore != null ? newHeadChunks(laneDirectory(i)) : null;
+            LiveTotals live = liveEnabled ? new LiveTotals(liveMinIntervalMs, liveConsumptionPublisher::offer) : null;
+            lanes[i] = new WindowLane(i, laneCount, settings, journal, ingestMetrics, heads, rawStoreMetrics, live);
+        }
+        log.info("Started {} window lanes", laneCount);
+
+        if (!walEnabled) {
+            log.warn("Window WAL disabled: open hours are lost if the service restarts");
+            return;
+        }
+        recover();
+    }
+
+    private void openRawStore() throws IOException {
+        rawStore = new RawSampleStore(Paths.get(rawDir), rawSegmentSizeMb * 1024L * 1024L);
+        RawSampleStore.OpenStats stats = rawStore.open();
+        if (stats.truncatedBytes() > 0) {
+            log.warn("Cut {} bytes of torn raw chunks off the raw sample store", stats.truncatedBytes());
+        }
+        log.info("Opened raw sample store: {} chunks with {} samples in {} segments ({} ms)", stats.chunks(),
+            stats.samples(), stats.segments(), stats.elapsedNanos() / 1_000_000);
+        rawStoreMetrics.registerStore(rawStore);
+    }
+
+    // Open raw chunks are snapshotted per WAL directory, next to the sealed chunks
+    private HeadChunks newHeadChunks(Path walDirectory) {
+        return new HeadChunks(rawStore, Paths.get(rawDir, "heads", walDirectory.getFileName() + ".bin"),
+            rawChunkSamples, rawDecimals);
+    }
+
+    // Every lane replays its own WAL directory. Windows that hash to another lane (the lane count
+    // changed) or sit in a directory no lane owns any more are moved to their owner, which then
+    // checkpoints before the old location is emptied.
+    private void recover() throws IOException {
+        long start = System.nanoTime();
+        List<CompletableFuture<WindowJournal.RecoveryStats>> recoveries = new ArrayList<>();
+        for (WindowLane lane : lanes) {
+            recoveries.add(lane.recover());
+        }
+        long replayed = 0;
+        for (CompletableFuture<WindowJournal.RecoveryStats> recovery : recoveries) {
+            replayed += recovery.join().replayedRecords();
+        }
+
+        List<WindowHandoff> handoffs = new ArrayList<>();
+        for (WindowLane lane : lanes) {
+            handoffs.add(lane.releaseForeignWindows().join());
+        }
+        List<Path> orphans = recoverOrphans(handoffs);
+
+        int moved = 0;
+        for (WindowHandoff handoff : handoffs) {
+            if (handoff.isEmpty()) {
+                continue;
+            }
+            for (WindowLane lane : lanes) {
+                moved += lane.adopt(handoff).join();
+            }
+        }
+        if (moved > 0 || !orphans.isEmpty()) {
+            joinAll(lanes, WindowLane::checkpointAsync);
+        }
+        for (Path orphan : orphans) {
+            deleteJournal(orphan);
+        }
+
+        int openWindows = 0;
+        int pendingCorrections = 0;
+        for (WindowLane lane : lanes) {
+            openWindows += lane.openWindows();
+            pendingCorrections += lane.pendingCorrections();
+        }
+        log.info("Recovered {} open windows and {} pending corrections across {} lanes ({} WAL records replayed, " +
+                "{} windows moved between lanes) in {} ms", openWindows, pendingCorrections, lanes.length,
+            replayed, moved, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    // The single-directory layout used before lanes existed, and lane directories above the lane count
+    private List<Path> recoverOrphans(List<WindowHandoff> handoffs) throws IOException {
+        Path root = Paths.get(walDir);
+        List<Path> directories = new ArrayList<>();
+        if (containsJournal(root)) {
+            directories.add(root);
+        }
+        if (Files.isDirectory(root)) {
+            try (DirectoryStream<Path> laneDirectories = Files.newDirectoryStream(root, "lane-*")) {
+                for (Path directory : laneDirectories) {
+                    int lane = Integer.parseInt(directory.getFileName().toString().substring("lane-".length()));
+                    if (lane >= lanes.length) {
+                        directories.add(directory);
+                    }
+                }
+            }
+        }
+
+        for (Path directory : directories) {
+            WindowHandoff handoff = WindowHandoff.empty();
+            EventTimeWatermark watermark = new EventTimeWatermark();
+            try (WindowJournal journal = new WindowJournal(directory, walSegmentSizeMb * 1024 * 1024)) {
+                if (rawStore == null) {
+                    journal.recover(handoff.windows(), handoff.corrections(), watermark);
+                } else {
+                    recoverOrphanRawChunks(directory, journal, handoff, watermark);
+                }
+            }
+            handoffs.add(new WindowHandoff(handoff.windows(), handoff.corrections(), watermark.maxEventTime()));
+            log.info("Moving {} open windows out of {}", handoff.windows().size(), directory);
+        }
+        return directories;
+    }
+
+    // No lane owns these raw chunks any more, so they are sealed as they are
+    private void recoverOrphanRawChunks(Path directory, WindowJournal journal, WindowHandoff handoff,
+                                        EventTimeWatermark watermark) throws IOException {
+        HeadChunks heads = newHeadChunks(directory);
+        heads.load();
+        try {
+            journal.recover(handoff.windows(), handoff.corrections(), watermark, (deviceId, timestamp, value) -> {
+                if (heads.generation() <= journal.generation()) {
+                    try {
+                        heads.append(deviceId, timestamp, value);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        heads.sealAll();
+        rawStore.sync();
+        heads.delete();
+    }
+
+    private static boolean containsJournal(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return false;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "{checkpoint.bin,wal-*.log}")) {
+            return files.iterator().hasNext();
+        }
+    }
+
+    // Only called once the lanes holding the moved windows have checkpointed
+    private void deleteJournal(Path directory) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "{checkpoint.bin*,wal-*.log}")) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+        if (!directory.equals(Paths.get(walDir))) {
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    // Splits the batch by lane and blocks until every lane has made its part durable
+    public void accept(List<DeviceMeasurementDTO> measurements) {
+        MeasurementBatch[] batches = new MeasurementBatch[lanes.length];
+        int expectedPerLane = measurements.size() / lanes.length + 1;
+        for (DeviceMeasurementDTO measurement : measurements) {
+            int lane = WindowLane.laneOf(measurement.getDeviceId(), lanes.length);
+            if (batches[lane] == null) {
+                batches[lane] = new MeasurementBatch(expectedPerLane);
+            }
+            batches[lane].add(measurement.getDeviceId(), measurement.getTimestamp(), measurement.getMeasurementValue());
+        }
+
+        List<CompletableFuture<Void>> submitted = new ArrayList<>();
+        for (int i = 0; i < lanes.length; i++) {
+            if (batches[i] != null) {
+                submitted.add(lanes[i].submit(batches[i]));
+            }
+        }
+        CompletableFuture.allOf(submitted.toArray(new CompletableFuture[0])).join();
+    }
+
+    // Raw samples of one device in [from, to), sealed and still open. The open chunk is read first: if
+    // it is sealed in between, its samples are read twice and deduplicated rather than missed.
+    public RawSamples rawSamples(long deviceId, long fromMillis, long toMillis) throws IOException {
+        RawSamples samples = lanes[WindowLane.laneOf(deviceId, lanes.length)]
+            .headSamples(deviceId, fromMillis, toMillis).join();
+        rawStore.scan(deviceId, fromMillis, toMillis, samples);
+        samples.sortAndDeduplicate();
+        return samples;
+    }
+
+    public boolean rawEnabled() {
+        return rawStore != null;
+    }
+
+    @Scheduled(cron = "${monitoring.raw.retention-cron:0 45 3 * * *}")
+    public void purgeRawSamples() {
+        if (rawStore == null || rawRetentionDays <= 0) {
+            return;
+        }
+        try {
+            int dropped = rawStore.dropSegmentsBefore(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(rawRetentionDays));
+            if (dropped > 0) {
+                log.info("Dropped {} raw chunks older than {} days", dropped, rawRetentionDays);
+            }
+        } catch (IOException e) {
+            log.error("❌Raw sample retention failed: {}", e.getMessage(), e);
+        }
+    }
+
+    public WindowLane.SweepResult sweep(boolean flushAll) {
+        List<CompletableFuture<WindowLane.SweepResult>> sweeps = new ArrayList<>();
+        for (WindowLane lane : lanes) {
+            sweeps.add(lane.sweep(flushAll));
+        }
+        List<HourlyConsumption> closed = new ArrayList<>();
+        List<HourlyConsumption> corrections = new ArrayList<>();
+        for (CompletableFuture<WindowLane.SweepResult> sweep : sweeps) {
+            WindowLane.SweepResult result = sweep.join();
+            closed.addAll(result.closed());
+            corrections.addAll(result.corrections());
+        }
+        return new WindowLane.SweepResult(closed, corrections);
+    }
+
+    public void reopen(List<HourlyConsumption> rows, boolean corrections) {
+        forEachLane(rows, (lane, laneRows) -> lane.reopen(laneRows, corrections));
+    }
+
+    // The rows as stored after the upsert, see WindowLane.markPersisted
+    public List<HourlyConsumption> markPersisted(List<HourlyConsumption> rows, boolean corrections) {
+        List<HourlyConsumption> stored = new ArrayList<>(rows.size());
+        for (List<HourlyConsumption> laneRows : forEachLane(rows, (lane, laneRows) -> lane.markPersisted(laneRows, corrections))) {
+            stored.addAll(laneRows);
+        }
+        return stored;
+    }
+
+    @Scheduled(fixedDelayString = "${monitoring.wal.checkpoint-interval-ms:300000}",
+        initialDelayString = "${monitoring.wal.checkpoint-interval-ms:300000}")
+    public void checkpoint() {
+        if (walEnabled) {
+            joinAll(lanes, WindowLane::checkpointAsync);
+        }
+    }
+
+    // Sends the running totals the per-device throttle held back once their interval has passed
+    @Scheduled(fixedDelayString = "${monitoring.live.flush-interval-ms:1000}")
+    public void flushLive() {
+        if (liveEnabled) {
+            joinAll(lanes, WindowLane::flushLive);
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        for (WindowLane lane : lanes) {
+            lane.close();
+        }
+        if (rawStore != null) {
+            rawStore.close();
+        }
+    }
+
+    public int laneCount() {
+        return lanes.length;
+    }
+
+    private <T> List<T> forEachLane(List<HourlyConsumption> rows,
+                                    BiFunction<WindowLane, List<HourlyConsumption>, CompletableFuture<T>> action) {
+        List<List<HourlyConsumption>> rowsByLane = new ArrayList<>(lanes.length);
+        for (int i = 0; i < lanes.length; i++) {
+            rowsByLane.add(new ArrayList<>());
+        }
+        for (HourlyConsumption row : rows) {
+            rowsByLane.get(WindowLane.laneOf(row.getDeviceId(), lanes.length)).add(row);
+        }
+
+        List<CompletableFuture<T>> pending = new ArrayList<>();
+        for (int i = 0; i < lanes.length; i++) {
+            if (!rowsByLane.get(i).isEmpty()) {
+                pending.add(action.apply(lanes[i], rowsByLane.get(i)));
+            }
+        }
+        CompletableFuture.allOf(pending.toArray(new CompletableFuture[0])).join();
+        List<T> results = new ArrayList<>(pending.size());
+        for (CompletableFuture<T> result : pending) {
+            results.add(result.join());
+        }
+        return results;
+    }
+
+    private static void joinAll(WindowLane[] lanes, Function<WindowLane, CompletableFuture<Void>> action) {
+        List<CompletableFuture<Void>> pending = new ArrayList<>();
+        for (WindowLane lane : lanes) {
+            pending.add(action.apply(lane));
+        }
+        CompletableFuture.allOf(pending.toArray(new CompletableFuture[0])).join();
+    }
+
+    private Path laneDirectory(int lane) {
+        return Paths.get(walDir, "lane-" + lane);
+    }
+}
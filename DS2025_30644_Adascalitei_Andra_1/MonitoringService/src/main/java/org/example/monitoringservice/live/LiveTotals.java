@@ -0,0 +1,66 @@
+package org.example.monitoringservice.live;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.function.Consumer;
+
+// Per-device throttle for the running hourly totals of one window lane; only the lane thread touches it.
+// The first update after a quiet interval is sent at once. Updates within minIntervalMs of the last one
+// only replace the device's pending update, which drainDue sends once the interval has passed, so a
+// device sends at most one update per interval and the final total of a burst is never lost.
+public class LiveTotals {
+
+    private final long minIntervalMs;
+    private final Consumer<LiveUpdate> sink;
+    private final Map<Long, DeviceState> devices = new HashMap<>();
+
+    public LiveTotals(long minIntervalMs, Consumer<LiveUpdate> sink) {
+        this.minIntervalMs = minIntervalMs;
+        this.sink = sink;
+    }
+
+    public void offer(LiveUpdate update, long nowMillis) {
+        DeviceState state = devices.get(update.deviceId());
+        if (state == null) {
+            state = new DeviceState();
+            devices.put(update.deviceId(), state);
+        } else if (nowMillis - state.lastSentAt < minIntervalMs) {
+            state.pending = update;
+            return;
+        }
+        state.lastSentAt = nowMillis;
+        state.pending = null;
+        sink.accept(update);
+    }
+
+    // Sends the pending updates that are due and forgets devices that stayed quiet for a whole interval
+    public int drainDue(long nowMillis) {
+        int sent = 0;
+        Iterator<Map.Entry<Long, DeviceState>> iterator = devices.entrySet().iterator();
+        while (iterator.hasNext()) {
+            DeviceState state = iterator.next().getValue();
+            if (nowMillis - state.lastSentAt < minIntervalMs) {
+                continue;
+            }
+            if (state.pending == null) {
+                iterator.remove();
+                continue;
+            }
+            sink.accept(state.pending);
+            state.lastSentAt = nowMillis;
+            state.pending = null;
+            sent++;
+        }
+        return sent;
+    }
+
+    public int trackedDevices() {
+        return devices.size();
+    }
+
+    private static final class DeviceState {
+        private long lastSentAt;
+        private LiveUpdate pending;
+    }
+}
@@ -0,0 +1,5 @@
+package org.example.monitoringservice.live;
+
+// Running total of a device's still open hour, as of the sample at timestampMillis
+public record LiveUpdate(long deviceId, long hourStartMillis, double total, int samples, long timestampMillis) {
+}
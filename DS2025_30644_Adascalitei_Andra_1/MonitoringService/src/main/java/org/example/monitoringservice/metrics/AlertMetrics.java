@@ -0,0 +1,91 @@
+package org.example.monitoringservice.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.function.Supplier;
+
+@Component
+public class AlertMetrics {
+
+    private final MeterRegistry registry;
+    private final Counter deviceCooldownSuppressed;
+    private final Counter escalations;
+    private final Counter coalesced;
+    private final Counter singleSent;
+    private final Counter summarySent;
+    private final Counter notificationsPublished;
+    private final Counter notificationsRetried;
+
+    public AlertMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.deviceCooldownSuppressed = Counter.builder("monitoring.alerts.suppressed")
+            .tag("reason", "device_cooldown")
+            .register(registry);
+        this.escalations = Counter.builder("monitoring.alerts.escalated")
+            .register(registry);
+        this.coalesced = Counter.builder("monitoring.alerts.coalesced")
+            .register(registry);
+        this.singleSent = Counter.builder("monitoring.alerts.sent")
+            .tag("kind", "single")
+            .register(registry);
+        this.summarySent = Counter.builder("monitoring.alerts.sent")
+            .tag("kind", "summary")
+            .register(registry);
+        this.notificationsPublished = Counter.builder("monitoring.notifications.published")
+            .register(registry);
+        this.notificationsRetried = Counter.builder("monitoring.notifications.retried")
+            .register(registry);
+    }
+
+    public void recordSuppressed() {
+        deviceCooldownSuppressed.increment();
+    }
+
+    public void recordEscalation() {
+        escalations.increment();
+    }
+
+    // Devices whose alerts reached a user inside a summary instead of as messages of their own
+    public void recordSummary(int devices) {
+        summarySent.increment();
+        coalesced.increment(devices - 1);
+    }
+
+    public void recordSingle() {
+        singleSent.increment();
+    }
+
+    // Users whose alerts are waiting for the next coalescing window or for their cooldown to end
+    public void registerPendingUsers(Supplier<Number> pendingUsers) {
+        Gauge.builder("monitoring.alerts.pending.users", pendingUsers)
+            .register(registry);
+    }
+
+    // Confirmed by the broker and routed to a queue
+    public void recordNotificationsPublished(int notifications) {
+        notificationsPublished.increment(notifications);
+    }
+
+    public void recordNotificationRetried() {
+        notificationsRetried.increment();
+    }
+
+    public void recordNotificationFailed(String reason) {
+        recordNotificationFailed(reason, 1);
+    }
+
+    public void recordNotificationFailed(String reason, int notifications) {
+        Counter.builder("monitoring.notifications.failed")
+            .tag("reason", reason)
+            .register(registry)
+            .increment(notifications);
+    }
+
+    public void registerOutboundQueue(Supplier<Number> depth) {
+        Gauge.builder("monitoring.notifications.queue.depth", depth)
+            .register(registry);
+    }
+}
@@ -0,0 +1,67 @@
+package org.example.monitoringservice.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.example.monitoringservice.cache.LruTtlCache;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+@Component
+public class CacheMetrics {
+
+    private static final String CACHE = "daily";
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Map<LruTtlCache.Cause, Counter> evictions = new EnumMap<>(LruTtlCache.Cause.class);
+    private final MeterRegistry registry;
+
+    public CacheMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.hits = Counter.builder("monitoring.cache.gets")
+            .tag("cache", CACHE)
+            .tag("result", "hit")
+            .register(registry);
+        this.misses = Counter.builder("monitoring.cache.gets")
+            .tag("cache", CACHE)
+            .tag("result", "miss")
+            .register(registry);
+        for (LruTtlCache.Cause cause : LruTtlCache.Cause.values()) {
+            evictions.put(cause, Counter.builder("monitoring.cache.evictions")
+                .tag("cache", CACHE)
+                .tag("cause", cause.name().toLowerCase())
+                .register(registry));
+        }
+        Gauge.builder("monitoring.cache.hit.ratio", this::hitRatio)
+            .tag("cache", CACHE)
+            .register(registry);
+    }
+
+    public void recordHit() {
+        hits.increment();
+    }
+
+    public void recordMiss() {
+        misses.increment();
+    }
+
+    public void recordEviction(LruTtlCache.Cause cause) {
+        evictions.get(cause).increment();
+    }
+
+    public void registerSize(Supplier<Number> size) {
+        Gauge.builder("monitoring.cache.size", size)
+            .tag("cache", CACHE)
+            .register(registry);
+    }
+
+    // Since startup
+    private double hitRatio() {
+        double total = hits.count() + misses.count();
+        return total == 0 ? 0 : hits.count() / total;
+    }
+}
@@ -0,0 +1,115 @@
+package org.example.monitoringservice.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+@Component
+public class IngestMetrics {
+
+    private final MeterRegistry registry;
+    private final Counter singleMessages;
+    private final Counter batchMessages;
+    private final Counter hourlyRowsWritten;
+    private final Timer singleTimer;
+    private final Timer batchTimer;
+    private final Counter partialWindows;
+    private final Counter lateSamples;
+    private final Counter futureSamplesDropped;
+    private final Counter overflowSamplesDropped;
+    private final Counter duplicateSamples;
+    private final Counter batchRetries;
+    private final Counter deadLettered;
+
+    public IngestMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.singleMessages = Counter.builder("monitoring.ingest.messages")
+            .tag("mode", "single")
+            .register(registry);
+        this.batchMessages = Counter.builder("monitoring.ingest.messages")
+            .tag("mode", "batch")
+            .register(registry);
+        this.hourlyRowsWritten = Counter.builder("monitoring.ingest.hourly.rows")
+            .register(registry);
+        this.singleTimer = Timer.builder("monitoring.ingest.delivery")
+            .tag("mode", "single")
+            .register(registry);
+        this.batchTimer = Timer.builder("monitoring.ingest.delivery")
+            .tag("mode", "batch")
+            .register(registry);
+        this.partialWindows = Counter.builder("monitoring.window.partial")
+            .register(registry);
+        this.lateSamples = Counter.builder("monitoring.window.late.samples")
+            .register(registry);
+        this.futureSamplesDropped = Counter.builder("monitoring.window.dropped")
+            .tag("reason", "future")
+            .register(registry);
+        this.overflowSamplesDropped = Counter.builder("monitoring.window.dropped")
+            .tag("reason", "capacity")
+            .register(registry);
+        this.duplicateSamples = Counter.builder("monitoring.window.dropped")
+            .tag("reason", "duplicate")
+            .register(registry);
+        this.batchRetries = Counter.builder("monitoring.ingest.batch.retries")
+            .register(registry);
+        this.deadLettered = Counter.builder("monitoring.ingest.dead.lettered")
+            .register(registry);
+    }
+
+    public void recordSingle(long startNanos) {
+        singleMessages.increment();
+        singleTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordBatch(int size, long startNanos) {
+        batchMessages.increment(size);
+        batchTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordHourlyRows(int rows) {
+        hourlyRowsWritten.increment(rows);
+    }
+
+    public void recordPartialWindows(int windows) {
+        partialWindows.increment(windows);
+    }
+
+    public void recordLateSamples(int samples) {
+        lateSamples.increment(samples);
+    }
+
+    public void recordFutureSampleDropped() {
+        futureSamplesDropped.increment();
+    }
+
+    public void recordOverflowSampleDropped() {
+        overflowSamplesDropped.increment();
+    }
+
+    public void recordDuplicateSample() {
+        duplicateSamples.increment();
+    }
+
+    public void recordBatchRetry() {
+        batchRetries.increment();
+    }
+
+    public void recordDeadLettered() {
+        deadLettered.increment();
+    }
+
+    // Per-lane gauges; reading monitoring.window.open without a lane tag sums all lanes
+    public void registerLane(int lane, Supplier<Number> queueDepth, Supplier<Number> openWindows) {
+        Gauge.builder("monitoring.lane.queue.depth", queueDepth)
+            .tag("lane", String.valueOf(lane))
+            .register(registry);
+        Gauge.builder("monitoring.window.open", openWindows)
+            .tag("lane", String.valueOf(lane))
+            .register(registry);
+    }
+}
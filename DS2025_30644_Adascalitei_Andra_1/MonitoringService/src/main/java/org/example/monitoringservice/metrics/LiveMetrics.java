@@ -0,0 +1,47 @@
+package org.example.monitoringservice.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.function.Supplier;
+
+@Component
+public class LiveMetrics {
+
+    private final MeterRegistry registry;
+    private final Counter published;
+    private final Counter queueFull;
+    private final Counter publishFailed;
+
+    public LiveMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.published = Counter.builder("monitoring.live.updates")
+            .tag("result", "published")
+            .register(registry);
+        this.queueFull = Counter.builder("monitoring.live.updates")
+            .tag("result", "queue_full")
+            .register(registry);
+        this.publishFailed = Counter.builder("monitoring.live.updates")
+            .tag("result", "publish_failed")
+            .register(registry);
+    }
+
+    public void recordPublished(int updates) {
+        published.increment(updates);
+    }
+
+    public void recordQueueFull() {
+        queueFull.increment();
+    }
+
+    public void recordPublishFailed(int updates) {
+        publishFailed.increment(updates);
+    }
+
+    public void registerQueue(Supplier<Number> depth) {
+        Gauge.builder("monitoring.live.queue.depth", depth)
+            .register(registry);
+    }
+}
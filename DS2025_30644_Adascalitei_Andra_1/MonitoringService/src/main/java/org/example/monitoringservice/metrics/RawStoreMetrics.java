@@ -0,0 +1,38 @@
+package org.example.monitoringservice.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.example.monitoringservice.tsdb.RawSampleStore;
+import org.springframework.stereotype.Component;
+
+@Component
+public class RawStoreMetrics {
+
+    private final Counter failedAppends;
+    private final MeterRegistry registry;
+
+    public RawStoreMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.failedAppends = Counter.builder("monitoring.raw.append.failures")
+            .register(registry);
+    }
+
+    public void recordAppendFailure() {
+        failedAppends.increment();
+    }
+
+    // Sealed chunks only; open chunks live in the window lanes until they fill up
+    public void registerStore(RawSampleStore store) {
+        Gauge.builder("monitoring.raw.bytes", store::sizeBytes)
+            .register(registry);
+        Gauge.builder("monitoring.raw.samples", store::sampleCount)
+            .register(registry);
+        Gauge.builder("monitoring.raw.chunks", store::chunkCount)
+            .register(registry);
+        Gauge.builder("monitoring.raw.bytes.per.sample", () -> {
+            long samples = store.sampleCount();
+            return samples == 0 ? 0 : (double) store.sizeBytes() / samples;
+        }).register(registry);
+    }
+}
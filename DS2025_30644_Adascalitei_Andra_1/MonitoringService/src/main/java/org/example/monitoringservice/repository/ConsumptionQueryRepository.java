@@ -0,0 +1,94 @@
+package org.example.monitoringservice.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.example.monitoringservice.dto.ConsumptionQueryRequest.Resolution;
+import org.example.monitoringservice.dto.ConsumptionQueryResult.DeviceSeries;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Repository
+@RequiredArgsConstructor
+public class ConsumptionQueryRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // One statement for every device: an IN list on device_id and a half-open range on the period
+    // column, which the (device_id, period) unique keys serve as one index range per device. Hourly
+    // rows are also pruned to the monthly partitions the range covers.
+    public List<DeviceSeries> query(List<Long> deviceIds, Resolution resolution, LocalDate from, LocalDate to) {
+        String table;
+        String column;
+        Object start;
+        Object end;
+        switch (resolution) {
+            case DAY:
+                table = "daily_consumption";
+                column = "day";
+                start = Date.valueOf(from);
+                end = Date.valueOf(to.plusDays(1));
+                break;
+            case MONTH:
+                table = "monthly_consumption";
+                column = "month";
+                start = Date.valueOf(from.withDayOfMonth(1));
+                end = Date.valueOf(to.withDayOfMonth(1).plusMonths(1));
+                break;
+            default:
+                table = "hourly_consumption";
+                column = "timestamp";
+                start = Timestamp.valueOf(from.atStartOfDay());
+                end = Timestamp.valueOf(to.plusDays(1).atStartOfDay());
+        }
+
+        String sql = "SELECT device_id, " + column + ", energy_consumption FROM " + table +
+            " WHERE device_id IN (" + String.join(", ", Collections.nCopies(deviceIds.size(), "?")) + ")" +
+            " AND " + column + " >= ? AND " + column + " < ? ORDER BY device_id, " + column;
+        List<Object> args = new ArrayList<>(deviceIds);
+        args.add(start);
+        args.add(end);
+
+        Map<Long, SeriesBuilder> series = new LinkedHashMap<>();
+        for (Long deviceId : deviceIds) {
+            series.put(deviceId, new SeriesBuilder());
+        }
+        jdbcTemplate.query(sql, resultSet -> {
+            series.get(resultSet.getLong(1)).add(resultSet.getTimestamp(2).getTime(), resultSet.getDouble(3));
+        }, args.toArray());
+
+        List<DeviceSeries> result = new ArrayList<>(series.size());
+        series.forEach((deviceId, builder) -> result.add(builder.build(deviceId)));
+        return result;
+    }
+
+    private static final class SeriesBuilder {
+        private long[] timestamps = new long[0];
+        private double[] values = new double[0];
+        private int size;
+        private double total;
+
+        private void add(long timestamp, double value) {
+            if (size == timestamps.length) {
+                timestamps = Arrays.copyOf(timestamps, Math.max(16, size * 2));
+                values = Arrays.copyOf(values, Math.max(16, size * 2));
+            }
+            timestamps[size] = timestamp;
+            values[size] = value;
+            size++;
+            total += value;
+        }
+
+        private DeviceSeries build(long deviceId) {
+            return new DeviceSeries(deviceId, Arrays.copyOf(timestamps, size), Arrays.copyOf(values, size), total);
+        }
+    }
+}
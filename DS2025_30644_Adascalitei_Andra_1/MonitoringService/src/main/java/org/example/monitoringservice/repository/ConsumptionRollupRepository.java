@@ -0,0 +1,80 @@
+package org.example.monitoringservice.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.example.monitoringservice.entity.HourlyConsumption;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+@Repository
+@RequiredArgsConstructor
+public class ConsumptionRollupRepository {
+
+    // Recomputes one device-day from its (at most 24) hourly rows instead of adding the incoming
+    // energy, so redelivered hours and rows written twice by shard owners never count twice, and a
+    // refresh that fails can simply be repeated. The derived table gives ON DUPLICATE KEY UPDATE a
+    // name for the aggregated values.
+    private static final String REFRESH_DAY_SQL =
+        "INSERT INTO daily_consumption (device_id, day, energy_consumption, sample_count, hours) " +
+        "SELECT * FROM (" +
+        "SELECT device_id, ? AS day, SUM(energy_consumption) AS energy_consumption, " +
+        "SUM(COALESCE(sample_count, 0)) AS sample_count, COUNT(*) AS hours " +
+        "FROM hourly_consumption WHERE device_id = ? AND timestamp >= ? AND timestamp < ? GROUP BY device_id" +
+        ") AS rollup " +
+        "ON DUPLICATE KEY UPDATE energy_consumption = rollup.energy_consumption, " +
+        "sample_count = rollup.sample_count, hours = rollup.hours";
+
+    // Same for one device-month, from its (at most 31) daily rows
+    private static final String REFRESH_MONTH_SQL =
+        "INSERT INTO monthly_consumption (device_id, month, energy_consumption, sample_count, days) " +
+        "SELECT * FROM (" +
+        "SELECT device_id, ? AS month, SUM(energy_consumption) AS energy_consumption, " +
+        "SUM(COALESCE(sample_count, 0)) AS sample_count, COUNT(*) AS days " +
+        "FROM daily_consumption WHERE device_id = ? AND day >= ? AND day < ? GROUP BY device_id" +
+        ") AS rollup " +
+        "ON DUPLICATE KEY UPDATE energy_consumption = rollup.energy_consumption, " +
+        "sample_count = rollup.sample_count, days = rollup.days";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // Brings the days and months touched by freshly upserted hourly rows up to date, one JDBC batch each
+    public void refresh(List<HourlyConsumption> hourlyRows) {
+        if (hourlyRows.isEmpty()) {
+            return;
+        }
+        Set<DevicePeriod> days = new LinkedHashSet<>();
+        for (HourlyConsumption row : hourlyRows) {
+            days.add(new DevicePeriod(row.getDeviceId(), row.getTimestamp().toLocalDate()));
+        }
+        Set<DevicePeriod> months = new LinkedHashSet<>();
+        for (DevicePeriod day : days) {
+            months.add(new DevicePeriod(day.deviceId(), day.start().withDayOfMonth(1)));
+        }
+
+        List<DevicePeriod> dayList = new ArrayList<>(days);
+        jdbcTemplate.batchUpdate(REFRESH_DAY_SQL, dayList, dayList.size(), (ps, day) -> {
+            ps.setDate(1, Date.valueOf(day.start()));
+            ps.setLong(2, day.deviceId());
+            ps.setTimestamp(3, Timestamp.valueOf(day.start().atStartOfDay()));
+            ps.setTimestamp(4, Timestamp.valueOf(day.start().plusDays(1).atStartOfDay()));
+        });
+
+        List<DevicePeriod> monthList = new ArrayList<>(months);
+        jdbcTemplate.batchUpdate(REFRESH_MONTH_SQL, monthList, monthList.size(), (ps, month) -> {
+            ps.setDate(1, Date.valueOf(month.start()));
+            ps.setLong(2, month.deviceId());
+            ps.setDate(3, Date.valueOf(month.start()));
+            ps.setDate(4, Date.valueOf(month.start().plusMonths(1)));
+        });
+    }
+
+    private record DevicePeriod(long deviceId, LocalDate start) {
+    }
+}
@@ -0,0 +1,12 @@
+package org.example.monitoringservice.repository;
+
+import org.example.monitoringservice.entity.DailyConsumption;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface DailyConsumptionRepository extends JpaRepository<DailyConsumption, Long> {
+
+    List<DailyConsumption> findByDeviceIdAndDayBetweenOrderByDayAsc(Long deviceId, LocalDate from, LocalDate to);
+}
@@ -0,0 +1,7 @@
+package org.example.monitoringservice.repository;
+
+import org.example.monitoringservice.entity.DeviceThreshold;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface DeviceThresholdRepository extends JpaRepository<DeviceThreshold, Long> {
+}
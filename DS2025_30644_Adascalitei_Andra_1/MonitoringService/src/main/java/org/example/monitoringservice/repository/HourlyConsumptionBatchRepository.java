@@ -0,0 +1,70 @@
+package org.example.monitoringservice.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.example.monitoringservice.entity.HourlyConsumption;
+import org.example.monitoringservice.window.HourlyAccumulator;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.List;
+
+@Repository
+@RequiredArgsConstructor
+public class HourlyConsumptionBatchRepository {
+
+    // Upsert on the unique (device_id, timestamp) key. Of an incoming row, only the slots the stored
+    // row does not have yet are added, each with its own value: late samples, the other half of an
+    // hour split between two shard owners, or new samples next to a redelivered one. A row that is
+    // entirely a redelivery leaves the stored one untouched. Rows stored without a slot mask take
+    // every incoming slot.
+    // MySQL evaluates the SET list left to right, so slot_mask is assigned last and the earlier
+    // conditions still see the stored mask, while complete already sees the new sample_count.
+    static final String UPSERT_SQL =
+        "INSERT INTO hourly_consumption (device_id, timestamp, energy_consumption, sample_count, complete, slot_mask) " +
+        "VALUES (?, ?, ?, ?, ?, ?) AS incoming " +
+        "ON DUPLICATE KEY UPDATE " +
+        "energy_consumption = hourly_consumption.energy_consumption" + slotTerms() + ", " +
+        "sample_count = COALESCE(hourly_consumption.sample_count, 0) " +
+        "+ BIT_COUNT(incoming.slot_mask & ~COALESCE(hourly_consumption.slot_mask, 0)), " +
+        "complete = hourly_consumption.sample_count >= ?, " +
+        "slot_mask = COALESCE(hourly_consumption.slot_mask, 0) | incoming.slot_mask";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // One JDBC batch for all rows; with rewriteBatchedStatements=true the MySQL driver
+    // sends it as a single multi-row statement.
+    public void upsertAll(List<HourlyConsumption> rows, int expectedSamples) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(UPSERT_SQL, rows, rows.size(), (ps, row) -> bind(ps, row, expectedSamples));
+    }
+
+    static void bind(PreparedStatement ps, HourlyConsumption row, int expectedSamples) throws SQLException {
+        ps.setLong(1, row.getDeviceId());
+        ps.setTimestamp(2, Timestamp.valueOf(row.getTimestamp()));
+        ps.setDouble(3, row.getEnergyConsumption());
+        ps.setInt(4, row.getSampleCount());
+        ps.setBoolean(5, row.getComplete());
+        ps.setInt(6, row.getSlotMask());
+        for (int i = 0; i < HourlyAccumulator.SLOTS; i++) {
+            ps.setDouble(7 + i, row.getSlotValues()[i]);
+        }
+        ps.setInt(7 + HourlyAccumulator.SLOTS, expectedSamples);
+    }
+
+    // One "+ IF(...)" per slot: its value when the incoming row has the slot and the stored one does not
+    private static String slotTerms() {
+        StringBuilder terms = new StringBuilder();
+        for (int i = 0; i < HourlyAccumulator.SLOTS; i++) {
+            int bit = 1 << i;
+            terms.append(" + IF((incoming.slot_mask & ~COALESCE(hourly_consumption.slot_mask, 0) & ")
+                .append(bit).append(") <> 0, ?, 0)");
+        }
+        return terms.toString();
+    }
+
+}
@@ -1,6 +1,7 @@
 package org.example.monitoringservice.repository;
 
 import org.example.monitoringservice.entity.HourlyConsumption;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -15,7 +16,35 @@ public interface HourlyConsumptionRepository extends JpaRepository<HourlyConsump
         LocalDateTime start, 
         LocalDateTime end
     );
-    
-    @Query("SELECT h FROM HourlyConsumption h WHERE h.deviceId = :deviceId ORDER BY h.timestamp DESC")
-    List<HourlyConsumption> findByDeviceIdOrderByTimestampDesc(@Param("deviceId") Long deviceId);
+
+    // Only the columns of a chart series, half-open range [start, end)
+    @Query("SELECT h.timestamp AS timestamp, h.energyConsumption AS energyConsumption FROM HourlyConsumption h " +
+        "WHERE h.deviceId = :deviceId AND h.timestamp >= :start AND h.timestamp < :end ORDER BY h.timestamp")
+    List<HourlyValue> findValues(@Param("deviceId") Long deviceId,
+                                 @Param("start") LocalDateTime start,
+                                 @Param("end") LocalDateTime end);
+
+    // Keyset pages of a device's history, newest first. Served by the (device_id, timestamp) unique
+    // key, so a page costs the same however far back it is.
+    @Query("SELECT h FROM HourlyConsumption h WHERE h.deviceId = :deviceId ORDER BY h.timestamp DESC, h.id DESC")
+    List<HourlyConsumption> findDevicePage(@Param("deviceId") Long deviceId, Limit limit);
+
+    @Query("SELECT h FROM HourlyConsumption h WHERE h.deviceId = :deviceId " +
+        "AND (h.timestamp < :timestamp OR (h.timestamp = :timestamp AND h.id < :id)) " +
+        "ORDER BY h.timestamp DESC, h.id DESC")
+    List<HourlyConsumption> findDevicePageBefore(@Param("deviceId") Long deviceId,
+                                                 @Param("timestamp") LocalDateTime timestamp,
+                                                 @Param("id") Long id,
+                                                 Limit limit);
+
+    // Keyset pages of every row, oldest first, served by idx_hourly_consumption_timestamp_id
+    @Query("SELECT h FROM HourlyConsumption h ORDER BY h.timestamp ASC, h.id ASC")
+    List<HourlyConsumption> findPage(Limit limit);
+
+    @Query("SELECT h FROM HourlyConsumption h " +
+        "WHERE h.timestamp > :timestamp OR (h.timestamp = :timestamp AND h.id > :id) " +
+        "ORDER BY h.timestamp ASC, h.id ASC")
+    List<HourlyConsumption> findPageAfter(@Param("timestamp") LocalDateTime timestamp,
+                                          @Param("id") Long id,
+                                          Limit limit);
 }
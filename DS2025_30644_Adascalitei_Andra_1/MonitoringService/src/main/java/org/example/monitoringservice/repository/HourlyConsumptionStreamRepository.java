@@ -0,0 +1,58 @@
+package org.example.monitoringservice.repository;
+
+import org.example.monitoringservice.entity.HourlyConsumption;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.function.Consumer;
+
+// Reads hourly histories row by row for the NDJSON endpoints. With a fetch size of Integer.MIN_VALUE
+// the MySQL driver streams the result set instead of buffering it, so memory does not grow with the
+// number of rows; the connection stays busy until the last row has been handed over.
+@Repository
+public class HourlyConsumptionStreamRepository {
+
+    private static final String COLUMNS =
+        "SELECT id, device_id, timestamp, energy_consumption, sample_count, complete, slot_mask FROM hourly_consumption ";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public HourlyConsumptionStreamRepository(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(Integer.MIN_VALUE);
+    }
+
+    public void streamDevice(Long deviceId, Consumer<HourlyConsumption> consumer) {
+        jdbcTemplate.query(COLUMNS + "WHERE device_id = ? ORDER BY timestamp DESC, id DESC",
+            rowHandler(consumer), deviceId);
+    }
+
+    public void streamAll(Consumer<HourlyConsumption> consumer) {
+        jdbcTemplate.query(COLUMNS + "ORDER BY timestamp ASC, id ASC", rowHandler(consumer));
+    }
+
+    // One entity reused for every row: the consumer must be done with it when it returns
+    private static RowCallbackHandler rowHandler(Consumer<HourlyConsumption> consumer) {
+        HourlyConsumption row = new HourlyConsumption();
+        return resultSet -> {
+            mapRow(resultSet, row);
+            consumer.accept(row);
+        };
+    }
+
+    private static void mapRow(ResultSet resultSet, HourlyConsumption row) throws SQLException {
+        row.setId(resultSet.getLong("id"));
+        row.setDeviceId(resultSet.getLong("device_id"));
+        Timestamp timestamp = resultSet.getTimestamp("timestamp");
+        row.setTimestamp(timestamp.toLocalDateTime());
+        row.setEnergyConsumption(resultSet.getDouble("energy_consumption"));
+        row.setSampleCount(resultSet.getObject("sample_count", Integer.class));
+        row.setComplete(resultSet.getObject("complete", Boolean.class));
+        row.setSlotMask(resultSet.getObject("slot_mask", Integer.class));
+    }
+}
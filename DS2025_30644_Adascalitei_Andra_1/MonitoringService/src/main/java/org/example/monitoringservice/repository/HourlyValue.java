@@ -0,0 +1,11 @@
+package org.example.monitoringservice.repository;
+
+import java.time.LocalDateTime;
+
+// Projection of the two HourlyConsumption columns a chart needs
+public interface HourlyValue {
+
+    LocalDateTime getTimestamp();
+
+    Double getEnergyConsumption();
+}
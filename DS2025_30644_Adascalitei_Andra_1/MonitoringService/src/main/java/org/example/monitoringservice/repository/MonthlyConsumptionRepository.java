@@ -0,0 +1,12 @@
+package org.example.monitoringservice.repository;
+
+import org.example.monitoringservice.entity.MonthlyConsumption;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface MonthlyConsumptionRepository extends JpaRepository<MonthlyConsumption, Long> {
+
+    List<MonthlyConsumption> findByDeviceIdAndMonthBetweenOrderByMonthAsc(Long deviceId, LocalDate from, LocalDate to);
+}
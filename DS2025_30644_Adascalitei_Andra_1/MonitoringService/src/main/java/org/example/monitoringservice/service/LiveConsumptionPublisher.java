@@ -0,0 +1,123 @@
+package org.example.monitoringservice.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.example.monitoringservice.live.LiveUpdate;
+import org.example.monitoringservice.metrics.LiveMetrics;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.example.monitoringservice.config.RabbitMQConfig.LIVE_CONSUMPTION_ROUTING_KEY;
+import static org.example.monitoringservice.config.RabbitMQConfig.NOTIFICATION_EXCHANGE;
+
+// Publishes running hourly totals from its own thread, best effort: a newer total supersedes any lost
+// one within the throttle interval, so there are no confirms or retries, and updates are dropped and
+// counted when the queue is full. Uses a template of its own without mandatory, since the live queue
+// only exists while the WebSocket service runs and unroutable updates should simply vanish.
+@Component
+@Slf4j
+public class LiveConsumptionPublisher {
+
+    private final RabbitTemplate rabbitTemplate;
+    private final LiveMetrics liveMetrics;
+
+    @Value("${monitoring.live.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${monitoring.live.batch-size:500}")
+    private int batchSize;
+
+    private BlockingQueue<LiveUpdate> queue;
+    private Thread publisherThread;
+    private volatile boolean running;
+
+    public LiveConsumptionPublisher(ConnectionFactory connectionFactory, MessageConverter jsonMessageConverter,
+                                    LiveMetrics liveMetrics) {
+        this.rabbitTemplate = new RabbitTemplate(connectionFactory);
+        this.rabbitTemplate.setMessageConverter(jsonMessageConverter);
+        this.liveMetrics = liveMetrics;
+    }
+
+    @PostConstruct
+    public void start() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        liveMetrics.registerQueue(() -> queue.size());
+        running = true;
+        publisherThread = new Thread(this::run, "live-consumption-publisher");
+        publisherThread.setDaemon(true);
+        publisherThread.start();
+    }
+
+    // Called from the window lane threads; never blocks
+    public void offer(LiveUpdate update) {
+        if (!queue.offer(update)) {
+            liveMetrics.recordQueueFull();
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        publisherThread.interrupt();
+        publisherThread.join(1000);
+    }
+
+    private void run() {
+        List<LiveUpdate> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                LiveUpdate first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                publishBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void publishBatch(List<LiveUpdate> batch) {
+        int published = 0;
+        for (LiveUpdate update : batch) {
+            try {
+                rabbitTemplate.convertAndSend(NOTIFICATION_EXCHANGE, LIVE_CONSUMPTION_ROUTING_KEY, toMessage(update));
+                published++;
+            } catch (Exception e) {
+                // The rest of the batch would most likely fail the same way
+                log.warn("Failed to publish {} live consumption updates: {}", batch.size() - published, e.getMessage());
+                liveMetrics.recordPublishFailed(batch.size() - published);
+                break;
+            }
+        }
+        liveMetrics.recordPublished(published);
+    }
+
+    // A plain map, like the overconsumption notifications, so the consumer needs none of these classes
+    private static Map<String, Object> toMessage(LiveUpdate update) {
+        Map<String, Object> message = new HashMap<>();
+        message.put("deviceId", update.deviceId());
+        message.put("hourStart", update.hourStartMillis());
+        message.put("total", update.total());
+        message.put("samples", update.samples());
+        message.put("timestamp", update.timestampMillis());
+        return message;
+    }
+}
@@ -2,88 +2,131 @@ package org.example.monitoringservice.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.example.monitoringservice.cache.DailyConsumptionCache;
 import org.example.monitoringservice.dto.DeviceMeasurementDTO;
 import org.example.monitoringservice.entity.HourlyConsumption;
-import org.example.monitoringservice.entity.User;
-import org.example.monitoringservice.repository.HourlyConsumptionRepository;
-import org.example.monitoringservice.repository.UserRepository;
+import org.example.monitoringservice.index.DeviceOwnerIndex;
+import org.example.monitoringservice.index.DeviceThresholdIndex;
+import org.example.monitoringservice.ingest.WindowLane;
+import org.example.monitoringservice.ingest.WindowLanes;
+import org.example.monitoringservice.metrics.IngestMetrics;
+import org.example.monitoringservice.repository.ConsumptionRollupRepository;
+import org.example.monitoringservice.repository.HourlyConsumptionBatchRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
-import java.time.Instant;
-import java.time.LocalDateTime;
-import java.time.ZoneId;
-import java.time.temporal.ChronoUnit;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class MonitoringService {
 
-    private final HourlyConsumptionRepository hourlyConsumptionRepository;
-    private final UserRepository userRepository;
+    private final HourlyConsumptionBatchRepository hourlyConsumptionBatchRepository;
+    private final ConsumptionRollupRepository consumptionRollupRepository;
+    private final DeviceOwnerIndex deviceOwnerIndex;
+    private final DeviceThresholdIndex deviceThresholdIndex;
     private final NotificationService notificationService;
-    
-    private final Map<String, List<DeviceMeasurementDTO>> hourlyBuffer = new ConcurrentHashMap<>();
+    private final IngestMetrics ingestMetrics;
+    private final WindowLanes windowLanes;
+    private final DailyConsumptionCache dailyConsumptionCache;
+
+    @Value("${monitoring.window.expected-samples:6}")
+    private int expectedSamples;
 
     public void processMeasurement(DeviceMeasurementDTO measurement) {
         log.info("Processing measurement: {}", measurement);
-        
-        LocalDateTime measurementTime = LocalDateTime.ofInstant(
-            Instant.ofEpochMilli(measurement.getTimestamp()), 
-            ZoneId.systemDefault()
-        );
-        
-        LocalDateTime hourStart = measurementTime.truncatedTo(ChronoUnit.HOURS);
-        String bufferKey = measurement.getDeviceId() + "_" + hourStart;
-        
-        hourlyBuffer.computeIfAbsent(bufferKey, k -> new ArrayList<>()).add(measurement);
-        
-        List<DeviceMeasurementDTO> measurements = hourlyBuffer.get(bufferKey);
-        
-        log.info("Buffer for device {} at {}: {}/6 measurements", 
-            measurement.getDeviceId(), hourStart, measurements.size());
-        
-        if (measurements.size() >= 6) {
-            double totalConsumption = measurements.stream()
-                .mapToDouble(DeviceMeasurementDTO::getMeasurementValue)
-                .sum();
-            
-            HourlyConsumption hourlyConsumption = new HourlyConsumption();
-            hourlyConsumption.setDeviceId(measurement.getDeviceId());
-            hourlyConsumption.setTimestamp(hourStart);
-            hourlyConsumption.setEnergyConsumption(totalConsumption);
-            
-            hourlyConsumptionRepository.save(hourlyConsumption);
-            log.info("✅Hourly consumption saved: {} kWh for device {} at {}",
-                totalConsumption, measurement.getDeviceId(), hourStart);
-            checkOverconsumption(measurement.getDeviceId(), totalConsumption);
-            
-            hourlyBuffer.remove(bufferKey);
+        processBatch(List.of(measurement));
+    }
+
+    // Only touches memory and the WAL: once this returns the batch is durable and can be acknowledged
+    public void processBatch(List<DeviceMeasurementDTO> measurements) {
+        windowLanes.accept(measurements);
+    }
+
+    // Closes every window whose hour ended more than the allowed lateness before the watermark,
+    // persisting partial hours as well as complete ones, then adds pending late samples to stored rows
+    @Scheduled(fixedDelayString = "${monitoring.window.sweep-interval-ms:30000}")
+    public void closeExpiredWindows() {
+        persist(windowLanes.sweep(false));
+    }
+
+    // Persists every open window, partial or not, e.g. before this replica gives up its shards
+    public void flushOpenWindows() {
+        persist(windowLanes.sweep(true));
+    }
+
+    private void persist(WindowLane.SweepResult sweep) {
+        List<HourlyConsumption> closed = sweep.closed();
+        List<HourlyConsumption> corrections = sweep.corrections();
+
+        if (!closed.isEmpty()) {
+            try {
+                hourlyConsumptionBatchRepository.upsertAll(closed, expectedSamples);
+                // Idempotent, so if it fails the retried rows refresh the same days and months again
+                consumptionRollupRepository.refresh(closed);
+            } catch (Exception e) {
+                log.error("❌Failed to persist {} closed hours, keeping them open for the next sweep: {}",
+                    closed.size(), e.getMessage(), e);
+                windowLanes.reopen(closed, false);
+                windowLanes.reopen(corrections, true);
+                return;
+            }
+            List<HourlyConsumption> stored = windowLanes.markPersisted(closed, false);
+            dailyConsumptionCache.invalidate(closed);
+
+            long partial = closed.stream().filter(row -> !row.getComplete()).count();
+            ingestMetrics.recordHourlyRows(closed.size());
+            ingestMetrics.recordPartialWindows((int) partial);
+            log.info("✅Saved {} hourly consumption rows ({} partial)", closed.size(), partial);
+
+            checkThresholds(stored);
+        }
+
+        if (!corrections.isEmpty()) {
+            try {
+                hourlyConsumptionBatchRepository.upsertAll(corrections, expectedSamples);
+                consumptionRollupRepository.refresh(corrections);
+            } catch (Exception e) {
+                log.error("❌Failed to apply {} late-sample corrections, retrying on the next sweep: {}",
+                    corrections.size(), e.getMessage(), e);
+                windowLanes.reopen(corrections, true);
+                return;
+            }
+            List<HourlyConsumption> stored = windowLanes.markPersisted(corrections, true);
+            dailyConsumptionCache.invalidate(corrections);
+            ingestMetrics.recordHourlyRows(corrections.size());
+            log.info("Applied {} late-sample corrections to already closed hours", corrections.size());
+
+            checkThresholds(stored);
         }
     }
 
+    // A swept row is only what this replica saw since the last sweep, so the threshold is checked
+    // against the row as stored after the upsert merged it, which the lanes keep in memory
+    private void checkThresholds(List<HourlyConsumption> stored) {
+        for (HourlyConsumption hourlyConsumption : stored) {
+            checkOverconsumption(hourlyConsumption.getDeviceId(), hourlyConsumption.getEnergyConsumption());
+        }
+    }
+
+    // Runs for every closed hour of the fleet, so both lookups are in-memory and per-device logging is debug
     private void checkOverconsumption(Long deviceId, Double totalConsumption) {
         try {
-            if (deviceId != 2L) {
-                log.debug("Overconsumption check skipped for device {} (only checking device 2)", deviceId);
-                return;
-            }
-            
-            Double maxConsumption = 5.0;
+            Double maxConsumption = deviceThresholdIndex.thresholdOf(deviceId);
 
             Long userId = getUserIdForDevice(deviceId);
             if (userId == null) {
-                log.warn("NO user found for device {}, skipping overconsumption check", deviceId);
+                log.debug("NO user found for device {}, skipping overconsumption check", deviceId);
                 return;
             }
             
-            log.info("Checking overconsumption for device {}: Total={} kWh, Max={} kWh",
+            log.debug("Checking overconsumption for device {}: Total={} kWh, Max={} kWh",
                 deviceId, totalConsumption, maxConsumption);
             
             if (totalConsumption > maxConsumption) {
-                log.warn("!OVERCONSUMPTION ALERT! Device {} - Total: {} kWh, Max: {} kWh",
+                log.debug("!OVERCONSUMPTION ALERT! Device {} - Total: {} kWh, Max: {} kWh",
                     deviceId, totalConsumption, maxConsumption);
                 
                 try {
@@ -93,13 +136,11 @@ public class MonitoringService {
                         totalConsumption, 
                         maxConsumption
                     );
-                    
-                    log.info("Overconsumption notification sent for device {} to user {}", deviceId, userId);
                 } catch (Exception e) {
                     log.error("Failed to send notification: {}", e.getMessage(), e);
                 }
             } else {
-                log.info("✅Device {} within limits: {}/{} kWh",
+                log.debug("✅Device {} within limits: {}/{} kWh",
                     deviceId, totalConsumption, maxConsumption);
             }
         } catch (Exception e) {
@@ -108,20 +149,10 @@ public class MonitoringService {
     }
 
     private Long getUserIdForDevice(Long deviceId) {
-        try {
-
-            List<User> users = userRepository.findAll();
-            for (User user : users) {
-                if (deviceId.equals(user.getDeviceId())) {
-                    log.debug("Found user {} for device {}", user.getId(), deviceId);
-                    return user.getId();
-                }
-            }
-            log.warn("No user found for device {}", deviceId);
-            return null;
-        } catch (Exception e) {
-            log.error("Error finding user for device {}: {}", deviceId, e.getMessage());
+        long userId = deviceOwnerIndex.ownerOf(deviceId);
+        if (userId == DeviceOwnerIndex.NO_OWNER) {
             return null;
         }
+        return userId;
     }
 }
\ No newline at end of file
@@ -0,0 +1,226 @@
+package org.example.monitoringservice.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.monitoringservice.metrics.AlertMetrics;
+import org.springframework.amqp.core.ReturnedMessage;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// Sends notifications from its own thread, so a slow or blocked broker never holds up the caller.
+// Messages are published in batches and the batch's publisher confirms are awaited together; a nack,
+// a return (no queue bound) or a missing confirm puts the message back for a retry with exponential
+// backoff. Every message that is given up on is logged and counted.
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class NotificationPublisher {
+
+    private final RabbitTemplate rabbitTemplate;
+    private final AlertMetrics alertMetrics;
+
+    @Value("${notification.publisher.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${notification.publisher.batch-size:50}")
+    private int batchSize;
+
+    @Value("${notification.publisher.confirm-timeout-ms:5000}")
+    private long confirmTimeoutMs;
+
+    @Value("${notification.publisher.initial-backoff-ms:500}")
+    private long initialBackoffMs;
+
+    @Value("${notification.publisher.max-backoff-ms:30000}")
+    private long maxBackoffMs;
+
+    @Value("${notification.publisher.max-attempts:10}")
+    private int maxAttempts;
+
+    private BlockingQueue<Outbound> queue;
+    // Only touched by the publisher thread; other threads read its size through retryCount
+    private final List<Outbound> retries = new ArrayList<>();
+    private volatile int retryCount;
+    private Thread publisherThread;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        alertMetrics.registerOutboundQueue(() -> queue.size() + retryCount);
+        running = true;
+        publisherThread = new Thread(this::run, "notification-publisher");
+        publisherThread.start();
+    }
+
+    // Never blocks: when the queue is full the notification is dropped, logged and counted
+    public boolean publish(String exchange, String routingKey, Object payload) {
+        if (queue.offer(new Outbound(exchange, routingKey, payload))) {
+            return true;
+        }
+        alertMetrics.recordNotificationFailed("queue_full");
+        log.error("❌Notification queue full ({} messages), dropping notification {}", queueCapacity, payload);
+        return false;
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        publisherThread.interrupt();
+        publisherThread.join(confirmTimeoutMs * 2);
+        int unsent = queue.size() + retryCount;
+        if (unsent > 0) {
+            alertMetrics.recordNotificationFailed("shutdown", unsent);
+            log.error("❌Stopping with {} unsent notifications", unsent);
+        }
+    }
+
+    private void run() {
+        List<Outbound> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                collectDueRetries(batch);
+                if (batch.isEmpty()) {
+                    Outbound first = queue.poll(waitForNextRetryMs(), TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                }
+                queue.drainTo(batch, batchSize - batch.size());
+                publishBatch(batch);
+                batch.clear();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                // Whatever was taken but not confirmed is still unsent
+                retries.addAll(batch);
+                retryCount = retries.size();
+                break;
+            } catch (Exception e) {
+                log.error("❌Notification publisher failed: {}", e.getMessage(), e);
+                batch.forEach(this::scheduleRetry);
+                batch.clear();
+            }
+        }
+    }
+
+    private void publishBatch(List<Outbound> batch) throws InterruptedException {
+        List<CorrelationData> confirms = new ArrayList<>(batch.size());
+        for (Outbound outbound : batch) {
+            CorrelationData correlation = new CorrelationData(UUID.randomUUID().toString());
+            try {
+                rabbitTemplate.convertAndSend(outbound.exchange, outbound.routingKey, outbound.payload, correlation);
+            } catch (Exception e) {
+                log.warn("Failed to publish notification (attempt {}): {}", outbound.attempts + 1, e.getMessage());
+                correlation = null;
+            }
+            confirms.add(correlation);
+        }
+
+        // One wait for the whole batch: the broker confirms in bulk, so this costs about one round trip
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(confirmTimeoutMs);
+        int published = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            Outbound outbound = batch.get(i);
+            String failure = awaitConfirm(confirms.get(i), deadline);
+            if (failure == null) {
+                published++;
+            } else {
+                log.warn("Notification not confirmed (attempt {}): {}", outbound.attempts + 1, failure);
+                scheduleRetry(outbound);
+            }
+        }
+        alertMetrics.recordNotificationsPublished(published);
+    }
+
+    // Returns null once the broker confirmed the message into a queue, otherwise why it did not
+    private String awaitConfirm(CorrelationData correlation, long deadline) throws InterruptedException {
+        if (correlation == null) {
+            return "publish failed";
+        }
+        CorrelationData.Confirm confirm;
+        try {
+            long remaining = Math.max(0, deadline - System.nanoTime());
+            confirm = correlation.getFuture().get(remaining, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            return "no confirm within " + confirmTimeoutMs + " ms";
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                throw (InterruptedException) e;
+            }
+            return e.getMessage();
+        }
+        if (!confirm.isAck()) {
+            return "nack: " + confirm.getReason();
+        }
+        // Mandatory publishes that matched no queue are returned before the ack arrives
+        ReturnedMessage returned = correlation.getReturned();
+        if (returned != null) {
+            return "returned: " + returned.getReplyText();
+        }
+        return null;
+    }
+
+    private void scheduleRetry(Outbound outbound) {
+        outbound.attempts++;
+        if (outbound.attempts >= maxAttempts) {
+            alertMetrics.recordNotificationFailed("retries_exhausted");
+            log.error("❌Giving up on notification after {} attempts: {}", outbound.attempts, outbound.payload);
+            return;
+        }
+        long backoff = Math.min(maxBackoffMs, initialBackoffMs << Math.min(outbound.attempts - 1, 20));
+        outbound.nextAttemptAt = System.currentTimeMillis() + backoff;
+        retries.add(outbound);
+        retryCount = retries.size();
+        alertMetrics.recordNotificationRetried();
+    }
+
+    private void collectDueRetries(List<Outbound> batch) {
+        long now = System.currentTimeMillis();
+        Iterator<Outbound> iterator = retries.iterator();
+        while (iterator.hasNext() && batch.size() < batchSize) {
+            Outbound outbound = iterator.next();
+            if (outbound.nextAttemptAt <= now) {
+                iterator.remove();
+                batch.add(outbound);
+            }
+        }
+        retryCount = retries.size();
+    }
+
+    private long waitForNextRetryMs() {
+        long wait = 1000;
+        long now = System.currentTimeMillis();
+        for (Outbound outbound : retries) {
+            wait = Math.min(wait, Math.max(0, outbound.nextAttemptAt - now));
+        }
+        return wait;
+    }
+
+    private static final class Outbound {
+        private final String exchange;
+        private final String routingKey;
+        private final Object payload;
+        private int attempts;
+        private long nextAttemptAt;
+
+        private Outbound(String exchange, String routingKey, Object payload) {
+            this.exchange = exchange;
+            this.routingKey = routingKey;
+            this.payload = payload;
+        }
+    }
+}
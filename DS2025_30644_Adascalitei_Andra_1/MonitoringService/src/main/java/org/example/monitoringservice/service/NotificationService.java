@@ -1,11 +1,16 @@
 package org.example.monitoringservice.service;
 
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.example.monitoringservice.alert.AlertThrottle;
+import org.example.monitoringservice.metrics.AlertMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @Service
@@ -13,29 +18,107 @@ import java.util.Map;
 @Slf4j
 public class NotificationService {
 
-    private final RabbitTemplate rabbitTemplate;
+    private final NotificationPublisher notificationPublisher;
+    private final AlertMetrics alertMetrics;
 
     private static final String NOTIFICATION_EXCHANGE = "notification_exchange";
     private static final String OVERCONSUMPTION_ROUTING_KEY = "notification.overconsumption";
 
+    @Value("${notification.device-cooldown-ms:21600000}")
+    private long deviceCooldownMs;
+
+    @Value("${notification.user-cooldown-ms:900000}")
+    private long userCooldownMs;
+
+    private AlertThrottle alertThrottle;
+
+    @PostConstruct
+    public void init() {
+        alertThrottle = new AlertThrottle(deviceCooldownMs, userCooldownMs);
+        alertMetrics.registerPendingUsers(this::pendingUsers);
+    }
+
+    // Only queues the alert; flushAlerts sends it with the rest of the user's alerts of the same window
     public void sendOverconsumptionNotification(Long deviceId, Long userId, Double consumption, Double threshold) {
+        double overPercentage = ((consumption - threshold) / threshold) * 100;
+        AlertThrottle.Alert alert = new AlertThrottle.Alert(deviceId, userId, consumption, threshold, overPercentage,
+            AlertThrottle.severityOf(overPercentage));
+
+        AlertThrottle.Decision decision;
+        synchronized (this) {
+            decision = alertThrottle.offer(alert, System.currentTimeMillis());
+        }
+        switch (decision) {
+            case SUPPRESSED:
+                alertMetrics.recordSuppressed();
+                log.debug("Suppressed overconsumption alert for device {}: still in cooldown at {}", deviceId,
+                    alert.severity());
+                break;
+            case ESCALATED:
+                alertMetrics.recordEscalation();
+                log.info("Overconsumption of device {} escalated to {}", deviceId, alert.severity());
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${notification.coalesce-window-ms:60000}",
+        initialDelayString = "${notification.coalesce-window-ms:60000}")
+    public void flushAlerts() {
+        List<AlertThrottle.Delivery> deliveries;
+        synchronized (this) {
+            deliveries = alertThrottle.drain(System.currentTimeMillis());
+        }
+        for (AlertThrottle.Delivery delivery : deliveries) {
+            if (delivery.isSummary()) {
+                sendSummary(delivery);
+            } else {
+                sendSingle(delivery.worst());
+            }
+        }
+    }
+
+    private void sendSingle(AlertThrottle.Alert alert) {
+        Map<String, Object> notification = overconsumptionMessage(alert);
+
+        if (notificationPublisher.publish(NOTIFICATION_EXCHANGE, OVERCONSUMPTION_ROUTING_KEY, notification)) {
+            alertMetrics.recordSingle();
+            log.info("Queued overconsumption notification for device {} to user {}: {} kWh > {} kWh ({}% over)",
+                alert.deviceId(), alert.userId(), alert.consumption(), alert.threshold(),
+                String.format("%.1f", alert.overPercentage()));
+        }
+    }
+
+    // Carries the worst breach in the usual fields, so clients that ignore the summary fields still show it
+    private void sendSummary(AlertThrottle.Delivery delivery) {
+        Map<String, Object> notification = overconsumptionMessage(delivery.worst());
+        notification.put("summary", true);
+        notification.put("alertCount", delivery.devices());
+        notification.put("deviceIds", delivery.deviceIds());
+
+        if (notificationPublisher.publish(NOTIFICATION_EXCHANGE, OVERCONSUMPTION_ROUTING_KEY, notification)) {
+            alertMetrics.recordSummary(delivery.devices());
+            log.info("Queued overconsumption summary for user {}: {} devices, worst device {} ({}% over)",
+                delivery.userId(), delivery.devices(), delivery.worst().deviceId(),
+                String.format("%.1f", delivery.worst().overPercentage()));
+        }
+    }
+
+    private static Map<String, Object> overconsumptionMessage(AlertThrottle.Alert alert) {
         Map<String, Object> notification = new HashMap<>();
-        notification.put("userId", userId);
-        notification.put("deviceId", deviceId);
-        notification.put("deviceName", "Device " + deviceId);
-        notification.put("consumption", consumption);
-        notification.put("maxConsumption", threshold);
+        notification.put("userId", alert.userId());
+        notification.put("deviceId", alert.deviceId());
+        notification.put("deviceName", "Device " + alert.deviceId());
+        notification.put("consumption", alert.consumption());
+        notification.put("maxConsumption", alert.threshold());
         notification.put("timestamp", System.currentTimeMillis());
+        notification.put("overPercentage", alert.overPercentage());
+        notification.put("severity", alert.severity().name());
+        return notification;
+    }
 
-        double overPercentage = ((consumption - threshold) / threshold) * 100;
-        notification.put("overPercentage", overPercentage);
-
-        try {
-            rabbitTemplate.convertAndSend(NOTIFICATION_EXCHANGE, OVERCONSUMPTION_ROUTING_KEY, notification);
-            log.info("Sent overconsumption notification for device {} to user {}: {} kWh > {} kWh ({}% over)",
-                deviceId, userId, consumption, threshold, String.format("%.1f", overPercentage));
-        } catch (Exception e) {
-            log.error("Failed to send overconsumption notification: {}", e.getMessage(), e);
-        }
+    private synchronized int pendingUsers() {
+        return alertThrottle.pendingUsers();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,136 @@
+package org.example.monitoringservice.service;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.ShutdownSignalException;
+import lombok.extern.slf4j.Slf4j;
+import org.example.monitoringservice.config.RabbitMQConfig;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+// Refuses to start a replica whose sharding settings disagree with the running topology, before any
+// listener consumes a message. The broker must not hold more shard queues than
+// monitoring.sharding.shards, or the devices hashed onto the extra ones are never consumed. Each owned
+// shard is claimed with an exclusive queue tied to this replica's connection, so a replica started
+// with another replica-count (or the same index twice) finds its shards already claimed.
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "monitoring.sharding.enabled", havingValue = "true")
+public class ShardClaims implements SmartLifecycle {
+
+    private static final String CLAIM_SUFFIX = ".owner";
+
+    private final RabbitTemplate rabbitTemplate;
+    private final AmqpAdmin amqpAdmin;
+
+    @Value("${data.queue.name}")
+    private String dataQueueName;
+
+    @Value("${monitoring.sharding.shards:16}")
+    private int shards;
+
+    @Value("${monitoring.sharding.replica-index:0}")
+    private int replicaIndex;
+
+    @Value("${monitoring.sharding.replica-count:1}")
+    private int replicaCount;
+
+    @Value("#{@dataQueueNames}")
+    private String[] ownedQueues;
+
+    private volatile boolean running;
+
+    public ShardClaims(RabbitTemplate rabbitTemplate, AmqpAdmin amqpAdmin, ConnectionFactory connectionFactory) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.amqpAdmin = amqpAdmin;
+        // Exclusive queues vanish with the connection, so they are claimed again after a reconnect
+        connectionFactory.addConnectionListener(connection -> {
+            if (running) {
+                reclaim();
+            }
+        });
+    }
+
+    @Override
+    public void start() {
+        String extraShard = RabbitMQConfig.shardQueueName(dataQueueName, shards);
+        if (amqpAdmin.getQueueProperties(extraShard) != null) {
+            throw new IllegalStateException("Shard queue " + extraShard + " exists, so the ring has more than " +
+                shards + " shards. Every replica needs the same monitoring.sharding.shards as the ring.");
+        }
+        for (String queue : ownedQueues) {
+            if (!claim(queue)) {
+                throw new IllegalStateException("Shard " + queue + " is claimed by another running replica. " +
+                    "Replica " + replicaIndex + " of " + replicaCount + " disagrees with the running replicas: " +
+                    "stop every replica and start all of them with the same monitoring.sharding.replica-count " +
+                    "and distinct indexes.");
+            }
+        }
+        log.info("Replica {} of {} claimed {} of {} shards", replicaIndex, replicaCount, ownedQueues.length, shards);
+        running = true;
+    }
+
+    // Runs after ShardHandoff has flushed the open windows, so the next owner starts from stored rows
+    @Override
+    public void stop() {
+        running = false;
+        for (String queue : ownedQueues) {
+            try {
+                amqpAdmin.deleteQueue(queue + CLAIM_SUFFIX);
+            } catch (Exception e) {
+                // Dropped by the broker anyway once the connection closes
+                log.debug("Failed to release claim on {}: {}", queue, e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Starts before ShardHandoff and the listener containers, and stops after them
+    @Override
+    public int getPhase() {
+        return Integer.MAX_VALUE - 2000;
+    }
+
+    private void reclaim() {
+        for (String queue : ownedQueues) {
+            try {
+                if (!claim(queue)) {
+                    log.error("❌Shard {} was claimed by another replica while reconnecting; check the sharding " +
+                        "settings of every replica", queue);
+                }
+            } catch (Exception e) {
+                log.error("❌Failed to claim shard {} again after reconnecting: {}", queue, e.getMessage());
+            }
+        }
+    }
+
+    // False when another connection holds the claim
+    private boolean claim(String queue) {
+        try {
+            rabbitTemplate.execute(channel -> channel.queueDeclare(queue + CLAIM_SUFFIX, false, true, true, null));
+            return true;
+        } catch (RuntimeException e) {
+            if (replyCode(e) == AMQP.RESOURCE_LOCKED) {
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    private static int replyCode(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ShutdownSignalException signal && signal.getReason() instanceof AMQP.Channel.Close close) {
+                return close.getReplyCode();
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,49 @@
+package org.example.monitoringservice.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+// Hands this replica's open windows over when it stops: the listener containers (stopped in an
+// earlier phase) have already acked their last batch, so every window is flushed additively and
+// whichever replica owns a shard next keeps adding to the same hourly rows.
+@Component
+@RequiredArgsConstructor
+@Slf4j
+@ConditionalOnProperty(name = "monitoring.sharding.enabled", havingValue = "true")
+public class ShardHandoff implements SmartLifecycle {
+
+    private final MonitoringService monitoringService;
+
+    private volatile boolean running;
+
+    @Override
+    public void start() {
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        log.info("Stopping replica: flushing open windows before releasing shards");
+        try {
+            monitoringService.flushOpenWindows();
+        } catch (Exception e) {
+            // The WAL still holds anything that was not flushed; it is persisted after the next restart
+            log.error("❌Failed to flush open windows on shutdown: {}", e.getMessage(), e);
+        }
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Listener containers stop in the default phase (Integer.MAX_VALUE), before this one
+    @Override
+    public int getPhase() {
+        return Integer.MAX_VALUE - 1000;
+    }
+}
@@ -0,0 +1,95 @@
+package org.example.monitoringservice.storage;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.stream.Collectors;
+
+// Keeps the monthly partitions of hourly_consumption (see V3__partition_hourly_consumption.sql) a few
+// months ahead of the clock and drops the ones past retention. Dropping a partition removes a month
+// of rows as a metadata change, without the DELETE scan and undo log a row-by-row purge would need.
+// The daily and monthly rollups are not touched, so dropped hours stay visible in aggregate.
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class HourlyPartitionMaintenance {
+
+    private static final String PARTITIONS_SQL =
+        "SELECT PARTITION_NAME, PARTITION_DESCRIPTION FROM information_schema.PARTITIONS " +
+        "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'hourly_consumption' " +
+        "ORDER BY PARTITION_ORDINAL_POSITION";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${monitoring.retention.hourly-months:24}")
+    private int retentionMonths;
+
+    @Value("${monitoring.retention.months-ahead:3}")
+    private int monthsAhead;
+
+    // With several replicas sharing the database only the first one alters the table
+    @Value("${monitoring.sharding.replica-index:0}")
+    private int replicaIndex;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        maintain();
+    }
+
+    @Scheduled(cron = "${monitoring.retention.cron:0 15 3 * * *}")
+    public void maintain() {
+        if (replicaIndex != 0) {
+            return;
+        }
+        try {
+            List<HourlyPartitionPlanner.Partition> partitions = jdbcTemplate.query(PARTITIONS_SQL, (rs, rowNum) ->
+                new HourlyPartitionPlanner.Partition(rs.getString(1), parseBound(rs.getString(2))));
+            if (partitions.isEmpty() || partitions.get(0).name() == null) {
+                log.warn("hourly_consumption is not partitioned, skipping partition maintenance");
+                return;
+            }
+
+            HourlyPartitionPlanner.Plan plan = HourlyPartitionPlanner.plan(partitions, YearMonth.now(),
+                monthsAhead, retentionMonths);
+            if (!plan.create().isEmpty()) {
+                jdbcTemplate.execute(reorganizeSql(plan.create()));
+                log.info("Added hourly_consumption partitions {}", plan.create());
+            }
+            for (String partition : plan.drop()) {
+                jdbcTemplate.execute("ALTER TABLE hourly_consumption DROP PARTITION " + partition);
+                log.info("Dropped hourly_consumption partition {} (older than {} months)", partition, retentionMonths);
+            }
+        } catch (Exception e) {
+            log.error("❌Hourly partition maintenance failed: {}", e.getMessage(), e);
+        }
+    }
+
+    // Splits pmax into one partition per month, followed by a new pmax
+    private static String reorganizeSql(List<YearMonth> months) {
+        String partitions = months.stream()
+            .map(month -> "PARTITION " + HourlyPartitionPlanner.partitionName(month) +
+                " VALUES LESS THAN ('" + month.plusMonths(1).atDay(1) + " 00:00:00')")
+            .collect(Collectors.joining(", "));
+        return "ALTER TABLE hourly_consumption REORGANIZE PARTITION pmax INTO (" + partitions +
+            ", PARTITION pmax VALUES LESS THAN (MAXVALUE))";
+    }
+
+    // RANGE COLUMNS descriptions look like '2025-02-01 00:00:00'; pmax reads MAXVALUE
+    private static LocalDate parseBound(String description) {
+        if (description == null || description.equalsIgnoreCase("MAXVALUE")) {
+            return null;
+        }
+        String value = description.replace("'", "").trim();
+        return LocalDateTime.parse(value.replace(' ', 'T')).toLocalDate();
+    }
+}
@@ -0,0 +1,55 @@
+package org.example.monitoringservice.storage;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+
+// Works out which monthly partitions of hourly_consumption to add and which to drop. A partition is
+// named after the month it holds (p202501) and bounded by the first day of the next month; the
+// trailing pmax partition (no bound) catches anything beyond the last month.
+public final class HourlyPartitionPlanner {
+
+    private HourlyPartitionPlanner() {
+    }
+
+    // Months from the last bounded partition up to monthsAhead past the current one are split out of
+    // pmax. Partitions whose whole range ended before the retention window are dropped; retentionMonths
+    // of 0 keeps everything.
+    public static Plan plan(List<Partition> existing, YearMonth current, int monthsAhead, int retentionMonths) {
+        LocalDate lastBound = null;
+        List<String> drop = new ArrayList<>();
+        LocalDate keepFrom = retentionMonths > 0 ? current.minusMonths(retentionMonths).atDay(1) : null;
+        for (Partition partition : existing) {
+            if (partition.upperBound() == null) {
+                continue;
+            }
+            lastBound = partition.upperBound();
+            if (keepFrom != null && !partition.upperBound().isAfter(keepFrom)) {
+                drop.add(partition.name());
+            }
+        }
+
+        List<YearMonth> create = new ArrayList<>();
+        YearMonth month = lastBound != null ? YearMonth.from(lastBound) : current;
+        for (YearMonth last = current.plusMonths(monthsAhead); !month.isAfter(last); month = month.plusMonths(1)) {
+            create.add(month);
+        }
+        return new Plan(create, drop);
+    }
+
+    public static String partitionName(YearMonth month) {
+        return String.format("p%04d%02d", month.getYear(), month.getMonthValue());
+    }
+
+    // upperBound is the exclusive VALUES LESS THAN date, null for pmax
+    public record Partition(String name, LocalDate upperBound) {
+    }
+
+    public record Plan(List<YearMonth> create, List<String> drop) {
+
+        public boolean isEmpty() {
+            return create.isEmpty() && drop.isEmpty();
+        }
+    }
+}
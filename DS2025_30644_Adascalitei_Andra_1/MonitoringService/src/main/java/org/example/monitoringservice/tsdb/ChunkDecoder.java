@@ -0,0 +1,90 @@
+package org.example.monitoringservice.tsdb;
+
+// Reads back the bit stream written by ChunkEncoder
+public final class ChunkDecoder {
+
+    private final byte[] data;
+    private long bitPosition;
+
+    private ChunkDecoder(byte[] data, int offset) {
+        this.data = data;
+        this.bitPosition = (long) offset << 3;
+    }
+
+    public static void decode(byte[] data, int offset, int count, int decimals, SampleConsumer consumer) {
+        if (count == 0) {
+            return;
+        }
+        ChunkDecoder in = new ChunkDecoder(data, offset);
+        double scale = decimals >= 0 ? Math.pow(10, decimals) : 1.0;
+
+        long timestamp = in.readBits(64);
+        long valueBits = in.readBits(64);
+        consumer.accept(timestamp, toValue(valueBits, decimals, scale));
+
+        long delta = 0;
+        int leading = 0;
+        int trailing = 0;
+        for (int i = 1; i < count; i++) {
+            delta += in.readDeltaOfDelta();
+            timestamp += delta;
+
+            if (in.readBit() != 0) {
+                if (in.readBit() != 0) {
+                    leading = (int) in.readBits(5);
+                    int meaningful = (int) in.readBits(6) + 1;
+                    trailing = 64 - leading - meaningful;
+                }
+                int meaningful = 64 - leading - trailing;
+                valueBits ^= in.readBits(meaningful) << trailing;
+            }
+            consumer.accept(timestamp, toValue(valueBits, decimals, scale));
+        }
+    }
+
+    private static double toValue(long valueBits, int decimals, double scale) {
+        double value = Double.longBitsToDouble(valueBits);
+        return decimals >= 0 ? value / scale : value;
+    }
+
+    private long readDeltaOfDelta() {
+        if (readBit() == 0) {
+            return 0;
+        }
+        if (readBit() == 0) {
+            return readSigned(7);
+        }
+        if (readBit() == 0) {
+            return readSigned(9);
+        }
+        if (readBit() == 0) {
+            return readSigned(12);
+        }
+        return readBit() == 0 ? readSigned(32) : readBits(64);
+    }
+
+    private long readSigned(int bits) {
+        long value = readBits(bits);
+        return (value << (64 - bits)) >> (64 - bits);
+    }
+
+    private int readBit() {
+        int bit = (data[(int) (bitPosition >>> 3)] >>> (7 - (int) (bitPosition & 7))) & 1;
+        bitPosition++;
+        return bit;
+    }
+
+    private long readBits(int bits) {
+        long value = 0;
+        int remaining = bits;
+        while (remaining > 0) {
+            int available = 8 - (int) (bitPosition & 7);
+            int take = Math.min(available, remaining);
+            int chunk = ((data[(int) (bitPosition >>> 3)] & 0xFF) >>> (available - take)) & ((1 << take) - 1);
+            value = (value << take) | chunk;
+            bitPosition += take;
+            remaining -= take;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,145 @@
+package org.example.monitoringservice.tsdb;
+
+import java.util.Arrays;
+
+// Compresses one device's raw samples into a bit stream, following Facebook's Gorilla paper:
+// timestamps as the delta of their delta to the previous sample, values as the XOR with the
+// previous value, keeping only its meaningful bits. Samples must be appended in timestamp order.
+//
+// Values are rounded to a fixed number of decimals first (decimals >= 0) and stored as whole
+// multiples of that unit. Whole-number doubles end in zero mantissa bits, which is what lets the
+// XOR step compress noisy meter readings; with decimals < 0 values are stored exactly.
+public class ChunkEncoder {
+
+    private final int decimals;
+    private final double scale;
+
+    private byte[] bytes = new byte[64];
+    private long bitLength;
+    private int count;
+    private long firstTimestamp;
+    private long lastTimestamp;
+    private long lastDelta;
+    private long lastValueBits;
+    private int lastLeading = -1;
+    private int lastTrailing;
+
+    public ChunkEncoder(int decimals) {
+        this.decimals = decimals;
+        this.scale = decimals >= 0 ? Math.pow(10, decimals) : 1.0;
+    }
+
+    public void append(long timestampMillis, double value) {
+        long valueBits = Double.doubleToRawLongBits(decimals >= 0 ? Math.rint(value * scale) : value);
+        if (count == 0) {
+            firstTimestamp = timestampMillis;
+            writeBits(timestampMillis, 64);
+            writeBits(valueBits, 64);
+        } else {
+            long delta = timestampMillis - lastTimestamp;
+            writeDeltaOfDelta(delta - lastDelta);
+            writeValue(valueBits);
+            lastDelta = delta;
+        }
+        lastTimestamp = timestampMillis;
+        lastValueBits = valueBits;
+        count++;
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public int decimals() {
+        return decimals;
+    }
+
+    public long firstTimestamp() {
+        return firstTimestamp;
+    }
+
+    public long lastTimestamp() {
+        return lastTimestamp;
+    }
+
+    public int byteLength() {
+        return (int) ((bitLength + 7) >>> 3);
+    }
+
+    public byte[] toBytes() {
+        return Arrays.copyOf(bytes, byteLength());
+    }
+
+    // The live buffer, only valid up to byteLength(); lets the owner decode the chunk without copying it
+    byte[] buffer() {
+        return bytes;
+    }
+
+    // '0' for an unchanged interval, otherwise a prefix selecting how many bits the difference takes
+    private void writeDeltaOfDelta(long deltaOfDelta) {
+        if (deltaOfDelta == 0) {
+            writeBits(0, 1);
+        } else if (fits(deltaOfDelta, 7)) {
+            writeBits(0b10, 2);
+            writeBits(deltaOfDelta, 7);
+        } else if (fits(deltaOfDelta, 9)) {
+            writeBits(0b110, 3);
+            writeBits(deltaOfDelta, 9);
+        } else if (fits(deltaOfDelta, 12)) {
+            writeBits(0b1110, 4);
+            writeBits(deltaOfDelta, 12);
+        } else if (fits(deltaOfDelta, 32)) {
+            writeBits(0b11110, 5);
+            writeBits(deltaOfDelta, 32);
+        } else {
+            writeBits(0b11111, 5);
+            writeBits(deltaOfDelta, 64);
+        }
+    }
+
+    // '0' for a repeated value; '10' when the meaningful bits fit the previous window; '11' with a new window
+    private void writeValue(long valueBits) {
+        long xor = valueBits ^ lastValueBits;
+        if (xor == 0) {
+            writeBits(0, 1);
+            return;
+        }
+        int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+        int trailing = Long.numberOfTrailingZeros(xor);
+        if (lastLeading >= 0 && leading >= lastLeading && trailing >= lastTrailing) {
+            writeBits(0b10, 2);
+            writeBits(xor >>> lastTrailing, 64 - lastLeading - lastTrailing);
+        } else {
+            int meaningful = 64 - leading - trailing;
+            writeBits(0b11, 2);
+            writeBits(leading, 5);
+            writeBits(meaningful - 1, 6);
+            writeBits(xor >>> trailing, meaningful);
+            lastLeading = leading;
+            lastTrailing = trailing;
+        }
+    }
+
+    private static boolean fits(long value, int bits) {
+        long limit = 1L << (bits - 1);
+        return value >= -limit && value < limit;
+    }
+
+    // Appends the low 'bits' bits of value, most significant first
+    private void writeBits(long value, int bits) {
+        int needed = (int) ((bitLength + bits + 7) >>> 3);
+        if (needed > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(needed, bytes.length * 2));
+        }
+        int remaining = bits;
+        while (remaining > 0) {
+            int byteIndex = (int) (bitLength >>> 3);
+            int free = 8 - (int) (bitLength & 7);
+            int take = Math.min(free, remaining);
+            int chunk = (int) (value >>> (remaining - take)) & ((1 << take) - 1);
+            bytes[byteIndex] |= (byte) (chunk << (free - take));
+            bitLength += take;
+            remaining -= take;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package org.example.monitoringservice.tsdb;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.function.LongPredicate;
+
+// The open chunk of every device in one window lane: samples are compressed as they arrive, and a
+// chunk is sealed into the RawSampleStore once it holds chunkSamples samples, or when a sample older
+// than its last one shows up. Only the lane thread touches it.
+//
+// The lane snapshots the open chunks right before each WAL checkpoint, tagged with the WAL generation
+// that starts there. On recovery the WAL is replayed into the chunks only when the snapshot is not
+// newer than the WAL, so samples are not appended twice when a crash fell between the two.
+public class HeadChunks {
+
+    private static final int SNAPSHOT_MAGIC = 0x454D4844;
+    private static final int SNAPSHOT_VERSION = 1;
+
+    private final RawSampleStore store;
+    private final Path snapshotFile;
+    private final int chunkSamples;
+    private final int decimals;
+    private final Map<Long, ChunkEncoder> chunks = new HashMap<>();
+
+    private long generation;
+
+    public HeadChunks(RawSampleStore store, Path snapshotFile, int chunkSamples, int decimals) {
+        this.store = store;
+        this.snapshotFile = snapshotFile;
+        this.chunkSamples = Math.min(chunkSamples, RawSampleStore.MAX_CHUNK_SAMPLES);
+        this.decimals = decimals;
+    }
+
+    public void append(long deviceId, long timestampMillis, double value) throws IOException {
+        ChunkEncoder chunk = chunks.get(deviceId);
+        if (chunk != null && timestampMillis <= chunk.lastTimestamp()) {
+            chunks.remove(deviceId);
+            store.append(deviceId, chunk);
+            chunk = null;
+        }
+        if (chunk == null) {
+            chunk = new ChunkEncoder(decimals);
+            chunks.put(deviceId, chunk);
+        }
+        chunk.append(timestampMillis, value);
+        if (chunk.count() >= chunkSamples) {
+            chunks.remove(deviceId);
+            store.append(deviceId, chunk);
+        }
+    }
+
+    public void collect(long deviceId, long fromMillis, long toMillis, SampleConsumer consumer) {
+        ChunkEncoder chunk = chunks.get(deviceId);
+        if (chunk == null || chunk.firstTimestamp() >= toMillis || chunk.lastTimestamp() < fromMillis) {
+            return;
+        }
+        ChunkDecoder.decode(chunk.buffer(), 0, chunk.count(), chunk.decimals(), (timestamp, value) -> {
+            if (timestamp >= fromMillis && timestamp < toMillis) {
+                consumer.accept(timestamp, value);
+            }
+        });
+    }
+
+    public int sealIf(LongPredicate deviceFilter) throws IOException {
+        int sealed = 0;
+        Iterator<Map.Entry<Long, ChunkEncoder>> iterator = chunks.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Long, ChunkEncoder> entry = iterator.next();
+            if (deviceFilter.test(entry.getKey())) {
+                store.append(entry.getKey(), entry.getValue());
+                iterator.remove();
+                sealed++;
+            }
+        }
+        return sealed;
+    }
+
+    public int sealAll() throws IOException {
+        return sealIf(deviceId -> true);
+    }
+
+    public int size() {
+        return chunks.size();
+    }
+
+    public long generation() {
+        return generation;
+    }
+
+    // Chunks sealed so far are synced first, since the snapshot no longer holds their samples
+    public void snapshot(long walGeneration) throws IOException {
+        store.sync();
+        int bytes = 4 + 4 + 8 + 4 + 4;
+        for (ChunkEncoder chunk : chunks.values()) {
+            bytes += 8 + 4 + 4 + chunk.byteLength();
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(bytes);
+        buffer.putInt(SNAPSHOT_MAGIC)
+            .putInt(SNAPSHOT_VERSION)
+            .putLong(walGeneration)
+            .putInt(decimals)
+            .putInt(chunks.size());
+        for (Map.Entry<Long, ChunkEncoder> entry : chunks.entrySet()) {
+            ChunkEncoder chunk = entry.getValue();
+            buffer.putLong(entry.getKey())
+                .putInt(chunk.count())
+                .putInt(chunk.byteLength())
+                .put(chunk.buffer(), 0, chunk.byteLength());
+        }
+        buffer.flip();
+
+        Files.createDirectories(snapshotFile.getParent());
+        Path tmp = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            out.force(true);
+        }
+        Files.move(tmp, snapshotFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        generation = walGeneration;
+    }
+
+    // Rebuilds the open chunks by re-appending their decoded samples, so the encoder state is exact
+    public int load() throws IOException {
+        if (!Files.exists(snapshotFile)) {
+            return 0;
+        }
+        try (FileChannel in = FileChannel.open(snapshotFile, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+            if (buffer.remaining() < 24 || buffer.getInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("Not a head chunk snapshot: " + snapshotFile);
+            }
+            int version = buffer.getInt();
+            if (version != SNAPSHOT_VERSION) {
+                throw new IOException("Unsupported head chunk snapshot version " + version);
+            }
+            generation = buffer.getLong();
+            int snapshotDecimals = buffer.getInt();
+            int count = buffer.getInt();
+            for (int i = 0; i < count; i++) {
+                long deviceId = buffer.getLong();
+                int samples = buffer.getInt();
+                byte[] payload = new byte[buffer.getInt()];
+                buffer.get(payload);
+                ChunkEncoder chunk = new ChunkEncoder(decimals);
+                // Snapshots written with other decimals decode to plain values and are re-rounded
+                ChunkDecoder.decode(payload, 0, samples, snapshotDecimals, chunk::append);
+                chunks.put(deviceId, chunk);
+            }
+            return count;
+        }
+    }
+
+    public void delete() throws IOException {
+        Files.deleteIfExists(snapshotFile);
+    }
+}
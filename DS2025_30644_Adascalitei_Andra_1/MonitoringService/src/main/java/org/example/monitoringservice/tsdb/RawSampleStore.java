@@ -0,0 +1,379 @@
+package org.example.monitoringservice.tsdb;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32C;
+
+// Sealed chunks of raw samples in append-only segment files, with an in-memory index of every
+// device's chunks rebuilt from the chunk headers on open. Chunks of all devices share the segments
+// in the order they were sealed, so retention drops whole segments once their newest sample is old.
+//
+// Chunk record: crc32c int, deviceId long, firstTimestamp long, lastTimestamp long, count short,
+// decimals byte, payload length int, payload. The checksum covers everything after itself; the
+// first record that fails it marks a torn tail, which is cut off.
+public class RawSampleStore implements Closeable {
+
+    public static final int HEADER_BYTES = 4 + 8 + 8 + 8 + 2 + 1 + 4;
+    public static final int MAX_CHUNK_SAMPLES = 0xFFFF;
+
+    private static final String SEGMENT_GLOB = "chunks-*.dat";
+
+    private final Path directory;
+    private final long segmentBytes;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+    private final Map<Long, DeviceChunks> index = new HashMap<>();
+
+    private Segment current;
+    private long samples;
+    private long chunks;
+
+    public RawSampleStore(Path directory, long segmentBytes) {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+    }
+
+    public OpenStats open() throws IOException {
+        long start = System.nanoTime();
+        Files.createDirectories(directory);
+        List<Path> paths = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_GLOB)) {
+            files.forEach(paths::add);
+        }
+
+        long truncatedBytes = 0;
+        lock.writeLock().lock();
+        try {
+            for (Path path : paths) {
+                Segment segment = new Segment(segmentId(path), path,
+                    FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE));
+                segments.put(segment.id, segment);
+            }
+            for (Segment segment : segments.values()) {
+                truncatedBytes += load(segment);
+            }
+            current = segments.isEmpty() ? null : segments.lastEntry().getValue();
+            return new OpenStats(segments.size(), chunks, samples, truncatedBytes, System.nanoTime() - start);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void append(long deviceId, ChunkEncoder chunk) throws IOException {
+        int payloadBytes = chunk.byteLength();
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + payloadBytes);
+        record.position(4);
+        record.putLong(deviceId)
+            .putLong(chunk.firstTimestamp())
+            .putLong(chunk.lastTimestamp())
+            .putShort((short) chunk.count())
+            .put((byte) chunk.decimals())
+            .putInt(payloadBytes)
+            .put(chunk.buffer(), 0, payloadBytes);
+        CRC32C crc = new CRC32C();
+        crc.update(record.array(), 4, record.capacity() - 4);
+        record.putInt(0, (int) crc.getValue());
+        record.flip();
+
+        lock.writeLock().lock();
+        try {
+            if (current == null || (current.size > 0 && current.size + record.remaining() > segmentBytes)) {
+                rollSegment();
+            }
+            long offset = current.size;
+            while (record.hasRemaining()) {
+                current.channel.write(record, offset + record.position());
+            }
+            current.size += record.capacity();
+            index(deviceId, current, offset, record.capacity(), chunk.firstTimestamp(), chunk.lastTimestamp(),
+                chunk.count());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Makes every chunk appended so far durable
+    public void sync() throws IOException {
+        Segment segment;
+        lock.readLock().lock();
+        try {
+            segment = current;
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (segment != null) {
+            segment.channel.force(false);
+        }
+    }
+
+    // Decodes every sealed sample of the device with from <= timestamp < to, chunk by chunk in the order
+    // they were sealed; returns the number of chunks read
+    public int scan(long deviceId, long fromMillis, long toMillis, SampleConsumer consumer) throws IOException {
+        lock.readLock().lock();
+        try {
+            DeviceChunks deviceChunks = index.get(deviceId);
+            if (deviceChunks == null) {
+                return 0;
+            }
+            SampleConsumer inRange = (timestamp, value) -> {
+                if (timestamp >= fromMillis && timestamp < toMillis) {
+                    consumer.accept(timestamp, value);
+                }
+            };
+            ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + 1024);
+            int read = 0;
+            for (int i = 0; i < deviceChunks.size; i++) {
+                if (deviceChunks.firstTimestamps[i] >= toMillis || deviceChunks.lastTimestamps[i] < fromMillis) {
+                    continue;
+                }
+                long ref = deviceChunks.refs[i];
+                Segment segment = segments.get(segmentOf(ref));
+                int length = deviceChunks.lengths[i];
+                if (record.capacity() < length) {
+                    record = ByteBuffer.allocate(length);
+                }
+                record.clear().limit(length);
+                long position = offsetOf(ref);
+                while (record.hasRemaining()) {
+                    if (segment.channel.read(record, position + record.position()) < 0) {
+                        throw new IOException("Chunk past the end of " + segment.path);
+                    }
+                }
+                int count = record.getShort(28) & 0xFFFF;
+                int decimals = record.get(30);
+                ChunkDecoder.decode(record.array(), HEADER_BYTES, count, decimals, inRange);
+                read++;
+            }
+            return read;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Deletes the oldest segments whose newest sample is before the cutoff, never the one being appended to
+    public int dropSegmentsBefore(long cutoffMillis) throws IOException {
+        lock.writeLock().lock();
+        try {
+            int lastDropped = -1;
+            while (!segments.isEmpty()) {
+                Segment oldest = segments.firstEntry().getValue();
+                if (oldest == current || oldest.maxTimestamp >= cutoffMillis) {
+                    break;
+                }
+                oldest.channel.close();
+                Files.delete(oldest.path);
+                segments.remove(oldest.id);
+                lastDropped = oldest.id;
+            }
+            if (lastDropped < 0) {
+                return 0;
+            }
+            int dropped = 0;
+            for (DeviceChunks deviceChunks : index.values()) {
+                long before = deviceChunks.samples;
+                dropped += deviceChunks.dropThroughSegment(lastDropped);
+                samples -= before - deviceChunks.samples;
+            }
+            index.values().removeIf(deviceChunks -> deviceChunks.size == 0);
+            chunks -= dropped;
+            return dropped;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public long sizeBytes() {
+        lock.readLock().lock();
+        try {
+            long size = 0;
+            for (Segment segment : segments.values()) {
+                size += segment.size;
+            }
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long sampleCount() {
+        lock.readLock().lock();
+        try {
+            return samples;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long chunkCount() {
+        lock.readLock().lock();
+        try {
+            return chunks;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (current != null) {
+                current.channel.force(false);
+            }
+            for (Segment segment : segments.values()) {
+                segment.channel.close();
+            }
+            segments.clear();
+            index.clear();
+            current = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Indexes every valid record of a segment and cuts the file at the first invalid one
+    private long load(Segment segment) throws IOException {
+        long fileSize = segment.channel.size();
+        MappedByteBuffer buffer = segment.channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+        CRC32C crc = new CRC32C();
+        byte[] scratch = new byte[1024];
+        long position = 0;
+        while (position + HEADER_BYTES <= fileSize) {
+            int at = (int) position;
+            int payloadBytes = buffer.getInt(at + 31);
+            long length = HEADER_BYTES + (long) payloadBytes;
+            if (payloadBytes < 0 || position + length > fileSize) {
+                break;
+            }
+            if (scratch.length < length - 4) {
+                scratch = new byte[(int) length - 4];
+            }
+            buffer.get(at + 4, scratch, 0, (int) length - 4);
+            crc.reset();
+            crc.update(scratch, 0, (int) length - 4);
+            if ((int) crc.getValue() != buffer.getInt(at)) {
+                break;
+            }
+            index(buffer.getLong(at + 4), segment, position, (int) length, buffer.getLong(at + 12),
+                buffer.getLong(at + 20), buffer.getShort(at + 28) & 0xFFFF);
+            position += length;
+        }
+        segment.size = position;
+        if (position < fileSize) {
+            segment.channel.truncate(position);
+            segment.channel.force(true);
+        }
+        return fileSize - position;
+    }
+
+    private void rollSegment() throws IOException {
+        int id = segments.isEmpty() ? 1 : segments.lastKey() + 1;
+        if (current != null) {
+            current.channel.force(false);
+        }
+        Path path = directory.resolve(String.format("chunks-%08d.dat", id));
+        current = new Segment(id, path, FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+            StandardOpenOption.READ, StandardOpenOption.WRITE));
+        segments.put(id, current);
+    }
+
+    private void index(long deviceId, Segment segment, long offset, int length, long firstTimestamp,
+                       long lastTimestamp, int count) {
+        index.computeIfAbsent(deviceId, id -> new DeviceChunks())
+            .add(((long) segment.id << 40) | offset, length, firstTimestamp, lastTimestamp, count);
+        segment.maxTimestamp = Math.max(segment.maxTimestamp, lastTimestamp);
+        chunks++;
+        samples += count;
+    }
+
+    private static int segmentOf(long ref) {
+        return (int) (ref >>> 40);
+    }
+
+    private static long offsetOf(long ref) {
+        return ref & ((1L << 40) - 1);
+    }
+
+    private static int segmentId(Path path) {
+        String name = path.getFileName().toString();
+        return Integer.parseInt(name.substring("chunks-".length(), name.length() - ".dat".length()));
+    }
+
+    private static final class Segment {
+        private final int id;
+        private final Path path;
+        private final FileChannel channel;
+        private long size;
+        private long maxTimestamp = Long.MIN_VALUE;
+
+        private Segment(int id, Path path, FileChannel channel) {
+            this.id = id;
+            this.path = path;
+            this.channel = channel;
+        }
+    }
+
+    // Chunk locations of one device in sealing order: segment id and offset packed into one long
+    private static final class DeviceChunks {
+        private long[] refs = new long[4];
+        private int[] lengths = new int[4];
+        private int[] counts = new int[4];
+        private long[] firstTimestamps = new long[4];
+        private long[] lastTimestamps = new long[4];
+        private int size;
+        private long samples;
+
+        private void add(long ref, int length, long firstTimestamp, long lastTimestamp, int count) {
+            if (size == refs.length) {
+                refs = Arrays.copyOf(refs, size * 2);
+                lengths = Arrays.copyOf(lengths, size * 2);
+                counts = Arrays.copyOf(counts, size * 2);
+                firstTimestamps = Arrays.copyOf(firstTimestamps, size * 2);
+                lastTimestamps = Arrays.copyOf(lastTimestamps, size * 2);
+            }
+            refs[size] = ref;
+            lengths[size] = length;
+            counts[size] = count;
+            firstTimestamps[size] = firstTimestamp;
+            lastTimestamps[size] = lastTimestamp;
+            size++;
+            samples += count;
+        }
+
+        // Chunks are indexed in segment order, so the dropped ones are a prefix
+        private int dropThroughSegment(int segmentId) {
+            int dropped = 0;
+            while (dropped < size && segmentOf(refs[dropped]) <= segmentId) {
+                samples -= counts[dropped];
+                dropped++;
+            }
+            if (dropped == 0) {
+                return 0;
+            }
+            System.arraycopy(refs, dropped, refs, 0, size - dropped);
+            System.arraycopy(lengths, dropped, lengths, 0, size - dropped);
+            System.arraycopy(counts, dropped, counts, 0, size - dropped);
+            System.arraycopy(firstTimestamps, dropped, firstTimestamps, 0, size - dropped);
+            System.arraycopy(lastTimestamps, dropped, lastTimestamps, 0, size - dropped);
+            size -= dropped;
+            return dropped;
+        }
+    }
+
+    public record OpenStats(int segments, long chunks, long samples, long truncatedBytes, long elapsedNanos) {
+    }
+}
@@ -0,0 +1,73 @@
+package org.example.monitoringservice.tsdb;
+
+import java.util.Arrays;
+
+// Growable columns of (timestamp, value) pairs collected by a range scan
+public class RawSamples implements SampleConsumer {
+
+    private long[] timestamps = new long[256];
+    private double[] values = new double[256];
+    private int size;
+
+    @Override
+    public void accept(long timestampMillis, double value) {
+        if (size == timestamps.length) {
+            timestamps = Arrays.copyOf(timestamps, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+        }
+        timestamps[size] = timestampMillis;
+        values[size] = value;
+        size++;
+    }
+
+    public void addAll(RawSamples other) {
+        for (int i = 0; i < other.size; i++) {
+            accept(other.timestamps[i], other.values[i]);
+        }
+    }
+
+    // Chunks are each in order but may overlap (late samples, a chunk rebuilt after a crash), and a
+    // sample can then be read twice. A device has at most one sample per timestamp, so equal
+    // timestamps are duplicates.
+    public void sortAndDeduplicate() {
+        boolean sorted = true;
+        for (int i = 1; i < size && sorted; i++) {
+            sorted = timestamps[i - 1] < timestamps[i];
+        }
+        if (sorted) {
+            return;
+        }
+
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(timestamps[a], timestamps[b]));
+        long[] sortedTimestamps = new long[size];
+        double[] sortedValues = new double[size];
+        int kept = 0;
+        for (int index : order) {
+            if (kept > 0 && sortedTimestamps[kept - 1] == timestamps[index]) {
+                continue;
+            }
+            sortedTimestamps[kept] = timestamps[index];
+            sortedValues[kept] = values[index];
+            kept++;
+        }
+        timestamps = sortedTimestamps;
+        values = sortedValues;
+        size = kept;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long[] timestamps() {
+        return Arrays.copyOf(timestamps, size);
+    }
+
+    public double[] values() {
+        return Arrays.copyOf(values, size);
+    }
+}
@@ -0,0 +1,6 @@
+package org.example.monitoringservice.tsdb;
+
+@FunctionalInterface
+public interface SampleConsumer {
+    void accept(long timestampMillis, double value);
+}
@@ -0,0 +1,411 @@
+package org.example.monitoringservice.wal;
+
+import org.example.monitoringservice.window.EventTimeWatermark;
+import org.example.monitoringservice.window.HourlyAccumulator;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+// Crash-safe state for open hour windows: an append-only, memory-mapped log of accepted samples
+// and closed windows, plus periodic checkpoints of the whole accumulator. Late samples waiting to be
+// added to stored rows are journaled the same way. A checkpoint starts a new log generation, so
+// recovery is "load checkpoint, replay the current log".
+//
+// Log record (32 bytes): type int, crc32c int, deviceId long, timestamp long, value double.
+// SAMPLE/CLOSE track open windows, LATE/CORRECTED track late samples not yet added to stored rows.
+// A zero type marks the end of the log; a checksum mismatch marks a torn tail.
+public class WindowJournal implements Closeable {
+
+    public static final int RECORD_BYTES = 32;
+
+    private static final int SAMPLE = 1;
+    private static final int CLOSE = 2;
+    private static final int LATE = 3;
+    private static final int CORRECTED = 4;
+
+    private static final int CHECKPOINT_MAGIC = 0x454D5343;
+    private static final int CHECKPOINT_VERSION = 4;
+    private static final int CHECKPOINT_HEADER_BYTES = 4 + 4 + 8 + 8;
+    // deviceId, epochHour, slot mask, then the value of every slot in the mask
+    private static final int CHECKPOINT_WINDOW_BYTES = 8 + 4 + 1 + 8 * HourlyAccumulator.SLOTS;
+    private static final String CHECKPOINT_FILE = "checkpoint.bin";
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final CRC32C crc = new CRC32C();
+    private final ByteBuffer checksumScratch = ByteBuffer.allocate(RECORD_BYTES - 4);
+
+    private long generation;
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    private int syncedPosition;
+
+    public WindowJournal(Path directory, int segmentBytes) {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes - segmentBytes % RECORD_BYTES;
+    }
+
+    public RecoveryStats recover(HourlyAccumulator accumulator, HourlyAccumulator pendingCorrections,
+                                 EventTimeWatermark watermark) throws IOException {
+        return recover(accumulator, pendingCorrections, watermark, null);
+    }
+
+    // The listener, when given, also sees every replayed sample, late ones included
+    public RecoveryStats recover(HourlyAccumulator accumulator, HourlyAccumulator pendingCorrections,
+                                 EventTimeWatermark watermark, SampleListener listener) throws IOException {
+        long start = System.nanoTime();
+        Files.createDirectories(directory);
+
+        generation = 0;
+        int checkpointWindows = 0;
+        int droppedVersion = 0;
+        Path checkpoint = directory.resolve(CHECKPOINT_FILE);
+        if (Files.exists(checkpoint)) {
+            int version = checkpointVersion(checkpoint);
+            if (version == CHECKPOINT_VERSION) {
+                checkpointWindows = loadCheckpoint(checkpoint, accumulator, pendingCorrections, watermark);
+            } else {
+                // Only the current layout is read; whatever the log after it holds is replayed
+                Files.delete(checkpoint);
+                generation = latestSegmentGeneration();
+                droppedVersion = version;
+            }
+        }
+
+        deleteSegmentsExcept(generation);
+        openSegment(generation, false);
+        int replayed = replaySegment(accumulator, pendingCorrections, watermark, listener);
+        syncedPosition = segment.position();
+
+        return new RecoveryStats(checkpointWindows, replayed, droppedVersion, System.nanoTime() - start);
+    }
+
+    // Returns false when the current segment is full; the caller should checkpoint and retry
+    public boolean appendSample(long deviceId, long timestampMillis, double value) {
+        return append(SAMPLE, deviceId, timestampMillis, value);
+    }
+
+    public boolean appendClose(long deviceId, int epochHour) {
+        return append(CLOSE, deviceId, HourlyAccumulator.hourStartMillis(epochHour), 0.0);
+    }
+
+    public boolean appendLateSample(long deviceId, long timestampMillis, double value) {
+        return append(LATE, deviceId, timestampMillis, value);
+    }
+
+    public boolean appendCorrected(long deviceId, int epochHour) {
+        return append(CORRECTED, deviceId, HourlyAccumulator.hourStartMillis(epochHour), 0.0);
+    }
+
+    // Flushes every record appended since the previous sync to the device
+    public void sync() {
+        int position = segment.position();
+        if (position > syncedPosition) {
+            segment.force(syncedPosition, position - syncedPosition);
+            syncedPosition = position;
+        }
+    }
+
+    public long generation() {
+        return generation;
+    }
+
+    public int pendingRecords() {
+        return segment.position() / RECORD_BYTES;
+    }
+
+    // Snapshots the open windows and switches to an empty log generation. The new checkpoint only
+    // becomes visible through an atomic rename, so a crash at any point leaves a consistent pair.
+    public void checkpoint(HourlyAccumulator accumulator, HourlyAccumulator pendingCorrections,
+                           EventTimeWatermark watermark) throws IOException {
+        checkpoint(List.of(accumulator), List.of(pendingCorrections), watermark);
+    }
+
+    // Same, with the windows spread over several accumulators, e.g. open ones and ones being persisted
+    public void checkpoint(List<HourlyAccumulator> accumulators, List<HourlyAccumulator> pendingCorrections,
+                           EventTimeWatermark watermark) throws IOException {
+        long nextGeneration = generation + 1;
+        Path tmp = directory.resolve(CHECKPOINT_FILE + ".tmp");
+
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+            buffer.putInt(CHECKPOINT_MAGIC)
+                .putInt(CHECKPOINT_VERSION)
+                .putLong(nextGeneration)
+                .putLong(watermark.maxEventTime());
+            writeWindows(out, buffer, accumulators);
+            writeWindows(out, buffer, pendingCorrections);
+            drain(out, buffer);
+            out.force(true);
+        }
+
+        Path previousSegment = segmentPath(generation);
+        closeSegment();
+        openSegment(nextGeneration, true);
+        Files.move(tmp, directory.resolve(CHECKPOINT_FILE),
+            StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        syncDirectory();
+        Files.deleteIfExists(previousSegment);
+
+        generation = nextGeneration;
+        syncedPosition = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (segment != null) {
+            sync();
+        }
+        closeSegment();
+    }
+
+    private boolean append(int type, long deviceId, long timestampMillis, double value) {
+        int position = segment.position();
+        if (segmentBytes - position < RECORD_BYTES) {
+            return false;
+        }
+        segment.putLong(position + 8, deviceId);
+        segment.putLong(position + 16, timestampMillis);
+        segment.putDouble(position + 24, value);
+        segment.putInt(position + 4, checksum(type, deviceId, timestampMillis, value));
+        segment.putInt(position, type);
+        segment.position(position + RECORD_BYTES);
+        return true;
+    }
+
+    private void writeWindows(FileChannel out, ByteBuffer buffer, List<HourlyAccumulator> accumulators)
+            throws IOException {
+        if (buffer.remaining() < Integer.BYTES) {
+            drain(out, buffer);
+        }
+        buffer.putInt(accumulators.stream().mapToInt(HourlyAccumulator::size).sum());
+        try {
+            for (HourlyAccumulator windows : accumulators) {
+                writeWindows(out, buffer, windows);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void writeWindows(FileChannel out, ByteBuffer buffer, HourlyAccumulator windows) {
+        windows.forEach((acc, slot) -> {
+            if (buffer.remaining() < CHECKPOINT_WINDOW_BYTES) {
+                drain(out, buffer);
+            }
+            int slotMask = acc.slotMask(slot);
+            buffer.putLong(acc.deviceId(slot))
+                .putInt(acc.epochHour(slot))
+                .put((byte) slotMask);
+            for (int i = 0; i < HourlyAccumulator.SLOTS; i++) {
+                if ((slotMask & (1 << i)) != 0) {
+                    buffer.putDouble(acc.slotValue(slot, i));
+                }
+            }
+        });
+    }
+
+    private int replaySegment(HourlyAccumulator accumulator, HourlyAccumulator pendingCorrections,
+                              EventTimeWatermark watermark, SampleListener listener) {
+        int position = 0;
+        int replayed = 0;
+        while (position + RECORD_BYTES <= segmentBytes) {
+            int type = segment.getInt(position);
+            if (type < SAMPLE || type > CORRECTED) {
+                break;
+            }
+            long deviceId = segment.getLong(position + 8);
+            long timestampMillis = segment.getLong(position + 16);
+            double value = segment.getDouble(position + 24);
+            if (segment.getInt(position + 4) != checksum(type, deviceId, timestampMillis, value)) {
+                break;
+            }
+
+            switch (type) {
+                case SAMPLE:
+                    accumulator.add(deviceId, timestampMillis, value);
+                    watermark.observe(timestampMillis);
+                    if (listener != null) {
+                        listener.onSample(deviceId, timestampMillis, value);
+                    }
+                    break;
+                case CLOSE:
+                    removeWindow(accumulator, deviceId, timestampMillis);
+                    break;
+                case LATE:
+                    pendingCorrections.add(deviceId, timestampMillis, value);
+                    if (listener != null) {
+                        listener.onSample(deviceId, timestampMillis, value);
+                    }
+                    break;
+                default:
+                    removeWindow(pendingCorrections, deviceId, timestampMillis);
+            }
+            position += RECORD_BYTES;
+            replayed++;
+        }
+        clearTail(position);
+        segment.position(position);
+        return replayed;
+    }
+
+    // Anything after the last valid record was never synced, so those deliveries were never
+    // acknowledged. Wipe it so a later replay cannot run from new records into stale ones.
+    private void clearTail(int position) {
+        boolean dirty = false;
+        for (int i = position; i < segmentBytes; i += Long.BYTES) {
+            if (segment.getLong(i) != 0L) {
+                segment.putLong(i, 0L);
+                dirty = true;
+            }
+        }
+        if (dirty) {
+            segment.force();
+        }
+    }
+
+    private static void removeWindow(HourlyAccumulator windows, long deviceId, long timestampMillis) {
+        int slot = windows.find(deviceId, HourlyAccumulator.epochHour(timestampMillis));
+        if (slot >= 0) {
+            windows.remove(slot);
+        }
+    }
+
+    private int loadCheckpoint(Path checkpoint, HourlyAccumulator accumulator, HourlyAccumulator pendingCorrections,
+                               EventTimeWatermark watermark) throws IOException {
+        try (FileChannel in = FileChannel.open(checkpoint, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+            // Magic and version were checked by checkpointVersion
+            buffer.position(8);
+            generation = buffer.getLong();
+            long maxEventTime = buffer.getLong();
+            int windows = readWindows(buffer, accumulator);
+            readWindows(buffer, pendingCorrections);
+            if (maxEventTime != Long.MIN_VALUE) {
+                watermark.restore(maxEventTime);
+            }
+            return windows;
+        }
+    }
+
+    private static int checkpointVersion(Path checkpoint) throws IOException {
+        try (FileChannel in = FileChannel.open(checkpoint, StandardOpenOption.READ)) {
+            if (in.size() < CHECKPOINT_HEADER_BYTES) {
+                throw new IOException("Not a window checkpoint: " + checkpoint);
+            }
+            MappedByteBuffer header = in.map(FileChannel.MapMode.READ_ONLY, 0, 8);
+            if (header.getInt() != CHECKPOINT_MAGIC) {
+                throw new IOException("Not a window checkpoint: " + checkpoint);
+            }
+            return header.getInt();
+        }
+    }
+
+    // The segment a checkpoint would have pointed to: after a checkpoint only its own generation is kept
+    private long latestSegmentGeneration() throws IOException {
+        long latest = 0;
+        try (DirectoryStream<Path> segments = Files.newDirectoryStream(directory, "wal-*.log")) {
+            for (Path path : segments) {
+                String name = path.getFileName().toString();
+                latest = Math.max(latest, Long.parseLong(name.substring(4, name.length() - 4)));
+            }
+        }
+        return latest;
+    }
+
+    private static int readWindows(ByteBuffer buffer, HourlyAccumulator windows) {
+        int count = buffer.getInt();
+        double[] values = new double[HourlyAccumulator.SLOTS];
+        for (int i = 0; i < count; i++) {
+            long deviceId = buffer.getLong();
+            int epochHour = buffer.getInt();
+            int slotMask = buffer.get() & 0xFF;
+            for (int slot = 0; slot < HourlyAccumulator.SLOTS; slot++) {
+                values[slot] = (slotMask & (1 << slot)) != 0 ? buffer.getDouble() : 0.0;
+            }
+            windows.merge(deviceId, epochHour, slotMask, values, 0);
+        }
+        return count;
+    }
+
+    private void openSegment(long segmentGeneration, boolean fresh) throws IOException {
+        Path path = segmentPath(segmentGeneration);
+        if (fresh) {
+            Files.deleteIfExists(path);
+        }
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+    }
+
+    private void closeSegment() throws IOException {
+        segment = null;
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    private void deleteSegmentsExcept(long keepGeneration) throws IOException {
+        Path keep = segmentPath(keepGeneration);
+        try (DirectoryStream<Path> segments = Files.newDirectoryStream(directory, "wal-*.log")) {
+            for (Path path : segments) {
+                if (!path.equals(keep)) {
+                    Files.delete(path);
+                }
+            }
+        }
+    }
+
+    private void syncDirectory() {
+        try (FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ)) {
+            dir.force(true);
+        } catch (IOException e) {
+            // Not every platform allows opening a directory; the rename is still atomic there
+        }
+    }
+
+    private Path segmentPath(long segmentGeneration) {
+        return directory.resolve("wal-" + segmentGeneration + ".log");
+    }
+
+    private int checksum(int type, long deviceId, long timestampMillis, double value) {
+        checksumScratch.clear();
+        checksumScratch.putInt(type).putLong(deviceId).putLong(timestampMillis).putDouble(value);
+        crc.reset();
+        crc.update(checksumScratch.array(), 0, checksumScratch.position());
+        return (int) crc.getValue();
+    }
+
+    private static void drain(FileChannel out, ByteBuffer buffer) {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        buffer.clear();
+    }
+
+    public interface SampleListener {
+        void onSample(long deviceId, long timestampMillis, double value);
+    }
+
+    // droppedCheckpointVersion is 0 unless a checkpoint of another layout was discarded
+    public record RecoveryStats(int checkpointWindows, int replayedRecords, int droppedCheckpointVersion,
+                                long elapsedNanos) {
+    }
+}
@@ -0,0 +1,38 @@
+package org.example.monitoringservice.window;
+
+// Event-time progress of the measurement stream: the newest sample timestamp seen, advanced by the
+// wall-clock time elapsed since it arrived, so windows still close when devices go quiet.
+// Not thread-safe; guard it with the same lock as the accumulator it drives.
+public class EventTimeWatermark {
+
+    private long maxEventTime = Long.MIN_VALUE;
+    private long observedAtMillis;
+
+    public void observe(long eventTimeMillis) {
+        if (eventTimeMillis > maxEventTime) {
+            maxEventTime = eventTimeMillis;
+            observedAtMillis = System.currentTimeMillis();
+        }
+    }
+
+    // Used when recovering from a checkpoint; the idle clock restarts from now
+    public void restore(long eventTimeMillis) {
+        maxEventTime = Long.MIN_VALUE;
+        observe(eventTimeMillis);
+    }
+
+    public long maxEventTime() {
+        return maxEventTime;
+    }
+
+    public boolean hasEvents() {
+        return maxEventTime != Long.MIN_VALUE;
+    }
+
+    public long current() {
+        if (!hasEvents()) {
+            return Long.MIN_VALUE;
+        }
+        return maxEventTime + Math.max(0, System.currentTimeMillis() - observedAtMillis);
+    }
+}
@@ -0,0 +1,311 @@
+package org.example.monitoringservice.window;
+
+import java.util.Arrays;
+
+// Open-addressing table of hourly windows keyed by (deviceId, epochHour). Each window keeps the value
+// of each of its six 10-minute slots and a bitmask of the slots it has a sample for, in parallel
+// primitive arrays, so adding a sample allocates nothing; sum, count, min and max are derived from
+// them. A second sample for a slot that is already set is treated as a redelivery and ignored, and
+// merging two windows only takes the slots the target lacks.
+// Not thread-safe: confine an instance to one thread or lock around it.
+public class HourlyAccumulator {
+
+    public static final long HOUR_MILLIS = 3_600_000L;
+    public static final long SLOT_MILLIS = 600_000L;
+    public static final int SLOTS = 6;
+    public static final int DUPLICATE = -1;
+    // Table bytes per slot of capacity, free or not
+    public static final int BYTES_PER_SLOT = Long.BYTES + Integer.BYTES + Double.BYTES * SLOTS + Byte.BYTES;
+
+    private static final int FREE = -1;
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private long[] deviceIds;
+    private int[] epochHours;
+    // SLOTS values per window: slotValues[window * SLOTS + i] is the sample of slot i, if its bit is set
+    private double[] slotValues;
+    private byte[] slotMasks;
+
+    private int mask;
+    private int size;
+    private int resizeThreshold;
+
+    public HourlyAccumulator() {
+        this(1024);
+    }
+
+    public HourlyAccumulator(int expectedWindows) {
+        allocate(tableSizeFor(expectedWindows));
+    }
+
+    public static int epochHour(long timestampMillis) {
+        return (int) Math.floorDiv(timestampMillis, HOUR_MILLIS);
+    }
+
+    public static long hourStartMillis(int epochHour) {
+        return epochHour * HOUR_MILLIS;
+    }
+
+    // The 10-minute slot within its hour that the timestamp falls into, and its bit in a slot mask
+    public static int slotIndex(long timestampMillis) {
+        return (int) (Math.floorMod(timestampMillis, HOUR_MILLIS) / SLOT_MILLIS);
+    }
+
+    public static int slotBit(long timestampMillis) {
+        return 1 << slotIndex(timestampMillis);
+    }
+
+    // Returns the slot of the sample's window, or DUPLICATE if the window already has a sample for
+    // that 10-minute slot. A slot is only valid until the next add or remove.
+    public int add(long deviceId, long timestampMillis, double value) {
+        int epochHour = epochHour(timestampMillis);
+        int index = slotIndex(timestampMillis);
+        int slot = indexOf(deviceId, epochHour);
+        if (epochHours[slot] == FREE) {
+            slot = insert(slot, deviceId, epochHour);
+        } else if ((slotMasks[slot] & (1 << index)) != 0) {
+            return DUPLICATE;
+        }
+        slotMasks[slot] |= (byte) (1 << index);
+        slotValues[slot * SLOTS + index] = value;
+        return slot;
+    }
+
+    // Folds an already aggregated window (restored, handed over or put back after a failed flush)
+    // into the table; values[offset + i] is the value of slot i. Slots the window already has keep
+    // their value, the same as a redelivered sample.
+    public int merge(long deviceId, int epochHour, int slotMask, double[] values, int offset) {
+        int slot = indexOf(deviceId, epochHour);
+        if (epochHours[slot] == FREE) {
+            slot = insert(slot, deviceId, epochHour);
+        }
+        int added = slotMask & ~slotMasks[slot] & ((1 << SLOTS) - 1);
+        for (int i = 0; i < SLOTS; i++) {
+            if ((added & (1 << i)) != 0) {
+                slotValues[slot * SLOTS + i] = values[offset + i];
+            }
+        }
+        slotMasks[slot] |= (byte) added;
+        return slot;
+    }
+
+    public int merge(HourlyAccumulator source, int sourceSlot) {
+        return merge(source.deviceIds[sourceSlot], source.epochHours[sourceSlot], source.slotMask(sourceSlot),
+            source.slotValues, sourceSlot * SLOTS);
+    }
+
+    // -1 when the window is not open
+    public int find(long deviceId, int epochHour) {
+        int slot = indexOf(deviceId, epochHour);
+        return epochHours[slot] == FREE ? -1 : slot;
+    }
+
+    // True if the sample's window is open and already has a sample for its 10-minute slot
+    public boolean containsSample(long deviceId, long timestampMillis) {
+        int slot = find(deviceId, epochHour(timestampMillis));
+        return slot >= 0 && (slotMasks[slot] & slotBit(timestampMillis)) != 0;
+    }
+
+    public long deviceId(int slot) {
+        return deviceIds[slot];
+    }
+
+    public int epochHour(int slot) {
+        return epochHours[slot];
+    }
+
+    public double sum(int slot) {
+        double sum = 0;
+        int slotMask = slotMasks[slot];
+        for (int i = 0; i < SLOTS; i++) {
+            if ((slotMask & (1 << i)) != 0) {
+                sum += slotValues[slot * SLOTS + i];
+            }
+        }
+        return sum;
+    }
+
+    public double min(int slot) {
+        double min = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < SLOTS; i++) {
+            if ((slotMasks[slot] & (1 << i)) != 0) {
+                min = Math.min(min, slotValues[slot * SLOTS + i]);
+            }
+        }
+        return min;
+    }
+
+    public double max(int slot) {
+        double max = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < SLOTS; i++) {
+            if ((slotMasks[slot] & (1 << i)) != 0) {
+                max = Math.max(max, slotValues[slot * SLOTS + i]);
+            }
+        }
+        return max;
+    }
+
+    public int count(int slot) {
+        return Integer.bitCount(slotMask(slot));
+    }
+
+    // The value of one 10-minute slot; 0 when the window has no sample for it
+    public double slotValue(int slot, int index) {
+        return (slotMasks[slot] & (1 << index)) != 0 ? slotValues[slot * SLOTS + index] : 0.0;
+    }
+
+    public int slotMask(int slot) {
+        return slotMasks[slot] & 0xFF;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        Arrays.fill(epochHours, FREE);
+        size = 0;
+    }
+
+    public void forEach(WindowVisitor visitor) {
+        for (int slot = 0; slot < epochHours.length; slot++) {
+            if (epochHours[slot] != FREE) {
+                visitor.visit(this, slot);
+            }
+        }
+    }
+
+    // Hands every window older than the given hour to the visitor, then removes them all.
+    // The visitor must not modify the accumulator.
+    public int closeWindowsBefore(int epochHourExclusive, WindowVisitor visitor) {
+        return removeWindows((accumulator, slot) -> accumulator.epochHour(slot) < epochHourExclusive, visitor);
+    }
+
+    // Same as closeWindowsBefore, for an arbitrary selection of windows
+    public int removeWindows(WindowFilter filter, WindowVisitor visitor) {
+        long[] closedDevices = new long[16];
+        int[] closedHours = new int[16];
+        int closed = 0;
+        for (int slot = 0; slot < epochHours.length; slot++) {
+            if (epochHours[slot] == FREE || !filter.test(this, slot)) {
+                continue;
+            }
+            visitor.visit(this, slot);
+            if (closed == closedHours.length) {
+                closedDevices = Arrays.copyOf(closedDevices, closed << 1);
+                closedHours = Arrays.copyOf(closedHours, closed << 1);
+            }
+            closedDevices[closed] = deviceIds[slot];
+            closedHours[closed] = epochHours[slot];
+            closed++;
+        }
+        for (int i = 0; i < closed; i++) {
+            remove(find(closedDevices[i], closedHours[i]));
+        }
+        return closed;
+    }
+
+    // Backward-shift deletion, so removed windows leave no tombstones behind
+    public void remove(int slot) {
+        int free = slot;
+        int next = (free + 1) & mask;
+        while (epochHours[next] != FREE) {
+            int home = hash(deviceIds[next], epochHours[next]) & mask;
+            // Move the entry back if its home slot is not cyclically within (free, next]
+            if (((next - home) & mask) >= ((next - free) & mask)) {
+                copySlot(next, free);
+                free = next;
+            }
+            next = (next + 1) & mask;
+        }
+        epochHours[free] = FREE;
+        size--;
+    }
+
+    public int capacity() {
+        return epochHours.length;
+    }
+
+    public long estimatedSizeInBytes() {
+        return (long) capacity() * BYTES_PER_SLOT;
+    }
+
+    public interface WindowVisitor {
+        void visit(HourlyAccumulator accumulator, int slot);
+    }
+
+    public interface WindowFilter {
+        boolean test(HourlyAccumulator accumulator, int slot);
+    }
+
+    private int indexOf(long deviceId, int epochHour) {
+        int slot = hash(deviceId, epochHour) & mask;
+        while (epochHours[slot] != FREE
+                && (epochHours[slot] != epochHour || deviceIds[slot] != deviceId)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    // Claims a free slot for a new, empty window
+    private int insert(int slot, long deviceId, int epochHour) {
+        if (size >= resizeThreshold) {
+            resize(epochHours.length << 1);
+            slot = indexOf(deviceId, epochHour);
+        }
+        deviceIds[slot] = deviceId;
+        epochHours[slot] = epochHour;
+        slotMasks[slot] = 0;
+        size++;
+        return slot;
+    }
+
+    private void copySlot(int from, int to) {
+        deviceIds[to] = deviceIds[from];
+        epochHours[to] = epochHours[from];
+        System.arraycopy(slotValues, from * SLOTS, slotValues, to * SLOTS, SLOTS);
+        slotMasks[to] = slotMasks[from];
+    }
+
+    private void resize(int newCapacity) {
+        long[] oldDeviceIds = deviceIds;
+        int[] oldEpochHours = epochHours;
+        double[] oldSlotValues = slotValues;
+        byte[] oldSlotMasks = slotMasks;
+
+        allocate(newCapacity);
+        for (int i = 0; i < oldEpochHours.length; i++) {
+            if (oldEpochHours[i] == FREE) {
+                continue;
+            }
+            int slot = indexOf(oldDeviceIds[i], oldEpochHours[i]);
+            deviceIds[slot] = oldDeviceIds[i];
+            epochHours[slot] = oldEpochHours[i];
+            System.arraycopy(oldSlotValues, i * SLOTS, slotValues, slot * SLOTS, SLOTS);
+            slotMasks[slot] = oldSlotMasks[i];
+        }
+    }
+
+    private void allocate(int capacity) {
+        deviceIds = new long[capacity];
+        epochHours = new int[capacity];
+        slotValues = new double[capacity * SLOTS];
+        slotMasks = new byte[capacity];
+        Arrays.fill(epochHours, FREE);
+        mask = capacity - 1;
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private static int tableSizeFor(int expected) {
+        int needed = (int) Math.ceil(Math.max(expected, 16) / LOAD_FACTOR);
+        return Integer.highestOneBit(needed - 1) << 1;
+    }
+
+    private static int hash(long deviceId, int epochHour) {
+        long h = deviceId * 0x9E3779B97F4A7C15L + epochHour;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+}
@@ -0,0 +1,16 @@
+-- Schema as Hibernate ddl-auto=update created it before migrations were introduced. Databases that
+-- already have these tables are baselined at version 1 and skip this script.
+
+CREATE TABLE users (
+    id BIGINT NOT NULL,
+    device_id BIGINT NOT NULL,
+    PRIMARY KEY (id)
+) ENGINE = InnoDB;
+
+CREATE TABLE hourly_consumption (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    device_id BIGINT NOT NULL,
+    timestamp DATETIME(6) NOT NULL,
+    energy_consumption DOUBLE NOT NULL,
+    PRIMARY KEY (id)
+) ENGINE = InnoDB;
@@ -0,0 +1,66 @@
+-- Hour windows with sample bookkeeping and one row per device-hour, owner lookups by device,
+-- per-device thresholds, and daily and monthly rollups.
+
+-- The original service wrote a row for every 6 measurements of a device-hour, so an hour could be
+-- stored as several rows. They are folded into the one with the lowest id before the unique key is
+-- added; the derived tables are grouped, so MySQL materializes them before touching the target.
+UPDATE hourly_consumption h
+JOIN (
+    SELECT MIN(id) AS id, SUM(energy_consumption) AS energy_consumption
+    FROM hourly_consumption GROUP BY device_id, timestamp HAVING COUNT(*) > 1
+) merged ON h.id = merged.id
+SET h.energy_consumption = merged.energy_consumption;
+
+DELETE h FROM hourly_consumption h
+JOIN (
+    SELECT device_id, timestamp, MIN(id) AS id
+    FROM hourly_consumption GROUP BY device_id, timestamp HAVING COUNT(*) > 1
+) merged ON h.device_id = merged.device_id AND h.timestamp = merged.timestamp AND h.id <> merged.id;
+
+-- Rows written before this version keep NULL counts and masks: every slot of a later row for the
+-- same hour is added to them
+ALTER TABLE hourly_consumption
+    ADD COLUMN sample_count INT,
+    ADD COLUMN complete BIT(1),
+    ADD COLUMN slot_mask INT,
+    ADD CONSTRAINT uk_hourly_consumption_device_hour UNIQUE (device_id, timestamp),
+    ADD INDEX idx_hourly_consumption_timestamp_id (timestamp, id);
+
+ALTER TABLE users ADD INDEX idx_users_device_id (device_id);
+
+CREATE TABLE device_threshold (
+    device_id BIGINT NOT NULL,
+    max_consumption DOUBLE NOT NULL,
+    PRIMARY KEY (device_id)
+) ENGINE = InnoDB;
+
+CREATE TABLE daily_consumption (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    device_id BIGINT NOT NULL,
+    day DATE NOT NULL,
+    energy_consumption DOUBLE NOT NULL,
+    sample_count INT,
+    hours INT,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_daily_consumption_device_day UNIQUE (device_id, day)
+) ENGINE = InnoDB;
+
+CREATE TABLE monthly_consumption (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    device_id BIGINT NOT NULL,
+    month DATE NOT NULL,
+    energy_consumption DOUBLE NOT NULL,
+    sample_count INT,
+    days INT,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_monthly_consumption_device_month UNIQUE (device_id, month)
+) ENGINE = InnoDB;
+
+-- Rollups of the hours already stored; later ones are kept current by ConsumptionRollupRepository
+INSERT INTO daily_consumption (device_id, day, energy_consumption, sample_count, hours)
+SELECT device_id, DATE(timestamp), SUM(energy_consumption), SUM(COALESCE(sample_count, 0)), COUNT(*)
+FROM hourly_consumption GROUP BY device_id, DATE(timestamp);
+
+INSERT INTO monthly_consumption (device_id, month, energy_consumption, sample_count, days)
+SELECT device_id, DATE_FORMAT(day, '%Y-%m-01'), SUM(energy_consumption), SUM(sample_count), COUNT(*)
+FROM daily_consumption GROUP BY device_id, DATE_FORMAT(day, '%Y-%m-01');
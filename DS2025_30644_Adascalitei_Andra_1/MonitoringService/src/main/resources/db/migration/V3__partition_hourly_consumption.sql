@@ -0,0 +1,13 @@
+-- Range-partitions hourly_consumption by month so old months are dropped as whole partitions and
+-- time-bounded queries only open the partitions they cover.
+-- MySQL requires every unique key to contain the partitioning column, so the primary key becomes
+-- (id, timestamp); (device_id, timestamp) and (timestamp, id) already qualify.
+-- Everything before 2025 shares one partition; HourlyPartitionMaintenance splits pmax into monthly
+-- partitions at startup and keeps a few months ahead of the clock.
+
+ALTER TABLE hourly_consumption DROP PRIMARY KEY, ADD PRIMARY KEY (id, timestamp);
+
+ALTER TABLE hourly_consumption PARTITION BY RANGE COLUMNS (timestamp) (
+    PARTITION p_history VALUES LESS THAN ('2025-01-01 00:00:00'),
+    PARTITION pmax VALUES LESS THAN (MAXVALUE)
+);
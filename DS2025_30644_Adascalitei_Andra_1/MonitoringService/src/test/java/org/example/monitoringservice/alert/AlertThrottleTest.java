@@ -0,0 +1,102 @@
+package org.example.monitoringservice.alert;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AlertThrottleTest {
+
+    private static final long HOUR = 3_600_000L;
+
+    @Test
+    void fleetWideBreachBecomesOneSummaryPerUser() {
+        AlertThrottle throttle = new AlertThrottle(6 * HOUR, HOUR / 4);
+        // 10 users with 500 devices each, all over a misconfigured threshold for 3 consecutive hours
+        int sent = 0;
+        for (int hour = 0; hour < 3; hour++) {
+            long now = hour * HOUR;
+            for (long device = 0; device < 5_000; device++) {
+                throttle.offer(alert(device, device % 10, 30), now);
+            }
+            List<AlertThrottle.Delivery> deliveries = throttle.drain(now + 60_000);
+            for (AlertThrottle.Delivery delivery : deliveries) {
+                assertTrue(delivery.isSummary());
+                assertEquals(500, delivery.devices());
+                assertEquals(AlertThrottle.MAX_SUMMARY_DEVICES, delivery.deviceIds().size());
+            }
+            sent += deliveries.size();
+        }
+
+        assertEquals(10, sent);
+        assertEquals(0, throttle.pendingUsers());
+    }
+
+    @Test
+    void deviceRealertsInsideCooldownOnlyWhenSeverityRises() {
+        AlertThrottle throttle = new AlertThrottle(6 * HOUR, 0);
+
+        assertEquals(AlertThrottle.Decision.ACCEPTED, throttle.offer(alert(1, 1, 30), 0));
+        assertEquals(AlertThrottle.Decision.SUPPRESSED, throttle.offer(alert(1, 1, 25), HOUR));
+        assertEquals(AlertThrottle.Decision.ESCALATED, throttle.offer(alert(1, 1, 80), 2 * HOUR));
+        assertEquals(AlertThrottle.Decision.SUPPRESSED, throttle.offer(alert(1, 1, 90), 3 * HOUR));
+        throttle.drain(3 * HOUR);
+        assertEquals(AlertThrottle.Decision.ACCEPTED, throttle.offer(alert(1, 1, 10), 9 * HOUR));
+    }
+
+    @Test
+    void userCooldownHoldsAlertsUntilItEndsOrSeverityRises() {
+        AlertThrottle throttle = new AlertThrottle(0, HOUR);
+
+        throttle.offer(alert(1, 7, 30), 0);
+        assertEquals(1, throttle.drain(0).size());
+
+        throttle.offer(alert(2, 7, 30), 60_000);
+        assertTrue(throttle.drain(60_000).isEmpty());
+
+        throttle.offer(alert(3, 7, 60), 120_000);
+        List<AlertThrottle.Delivery> escalated = throttle.drain(120_000);
+        assertEquals(1, escalated.size());
+        assertEquals(2, escalated.get(0).devices());
+        assertEquals(3, escalated.get(0).worst().deviceId());
+        assertEquals(AlertThrottle.Severity.CRITICAL, escalated.get(0).worst().severity());
+
+        throttle.offer(alert(4, 7, 10), 180_000);
+        assertTrue(throttle.drain(180_000).isEmpty());
+        List<AlertThrottle.Delivery> afterCooldown = throttle.drain(120_000 + HOUR);
+        assertEquals(1, afterCooldown.size());
+        assertFalse(afterCooldown.get(0).isSummary());
+    }
+
+    @Test
+    void deviceAlertingAgainReplacesItsPendingAlert() {
+        AlertThrottle throttle = new AlertThrottle(0, HOUR);
+
+        throttle.offer(alert(1, 7, 10), 0);
+        throttle.offer(alert(1, 7, 60), 60_000);
+        List<AlertThrottle.Delivery> single = throttle.drain(60_000);
+        assertEquals(1, single.size());
+        assertFalse(single.get(0).isSummary());
+        assertEquals(1, single.get(0).devices());
+        assertEquals(60, single.get(0).worst().overPercentage(), 1e-9);
+
+        // The worst device falls back, so the other one leads the summary
+        throttle.offer(alert(1, 8, 60), 0);
+        throttle.offer(alert(2, 8, 30), 0);
+        throttle.offer(alert(1, 8, 10), 60_000);
+        List<AlertThrottle.Delivery> summary = throttle.drain(60_000);
+        assertTrue(summary.get(0).isSummary());
+        assertEquals(2, summary.get(0).devices());
+        assertEquals(List.of(1L, 2L), summary.get(0).deviceIds());
+        assertEquals(2, summary.get(0).worst().deviceId());
+    }
+
+    private static AlertThrottle.Alert alert(long deviceId, long userId, double overPercentage) {
+        double threshold = 5.0;
+        return new AlertThrottle.Alert(deviceId, userId, threshold * (1 + overPercentage / 100), threshold,
+            overPercentage, AlertThrottle.severityOf(overPercentage));
+    }
+}
@@ -0,0 +1,49 @@
+package org.example.monitoringservice.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class LruTtlCacheTest {
+
+    private final List<LruTtlCache.Cause> evictions = new ArrayList<>();
+    private final LruTtlCache<String, String> cache = new LruTtlCache<>(2, evictions::add);
+
+    @Test
+    void evictsLeastRecentlyUsedEntryWhenFull() {
+        cache.put("a", "1", 1_000);
+        cache.put("b", "2", 1_000);
+        cache.get("a", 0);
+        cache.put("c", "3", 1_000);
+
+        assertEquals("1", cache.get("a", 0));
+        assertNull(cache.get("b", 0));
+        assertEquals("3", cache.get("c", 0));
+        assertEquals(List.of(LruTtlCache.Cause.SIZE), evictions);
+    }
+
+    @Test
+    void entriesExpireIndividually() {
+        cache.put("a", "1", 100);
+        cache.put("b", "2", 200);
+
+        assertNull(cache.get("a", 100));
+        assertEquals("2", cache.get("b", 100));
+        assertEquals(1, cache.size());
+        assertEquals(List.of(LruTtlCache.Cause.EXPIRED), evictions);
+    }
+
+    @Test
+    void invalidationOnlyCountsEntriesThatWereCached() {
+        cache.put("a", "1", 1_000);
+        cache.invalidate("a");
+        cache.invalidate("missing");
+
+        assertNull(cache.get("a", 0));
+        assertEquals(List.of(LruTtlCache.Cause.INVALIDATED), evictions);
+    }
+}
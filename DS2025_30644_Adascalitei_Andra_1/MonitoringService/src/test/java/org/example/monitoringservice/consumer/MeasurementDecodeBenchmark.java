@@ -0,0 +1,80 @@
+package org.example.monitoringservice.consumer;
+
+import org.example.monitoringservice.dto.DeviceMeasurementDTO;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+// Message size and decode throughput of the two measurement formats, through the converter the
+// listeners use: JSON as the simulator's Gson writes it, decoded by Jackson, and the binary records.
+// Only the body decode is measured, not the broker or the listener container. Not a test; run through
+// bench/measurement-decode-benchmark.sh.
+//
+// Usage: MeasurementDecodeBenchmark [messages] [rounds]
+public class MeasurementDecodeBenchmark {
+
+    private static final long START = 1_735_689_600_000L;
+
+    // Keeps the JIT from dropping the decoded values
+    private static double sink;
+
+    public static void main(String[] args) {
+        int messages = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        Jackson2JsonMessageConverter json = new Jackson2JsonMessageConverter();
+        json.setClassMapper(json.getJavaTypeMapper());
+        MeasurementMessageConverter converter = new MeasurementMessageConverter(json);
+
+        // Simulator-like: 10 000 devices every 10 minutes, full-precision values
+        Random random = new Random(42);
+        Message[] jsonMessages = new Message[messages];
+        Message[] binaryMessages = new Message[messages];
+        long jsonBytes = 0;
+        for (int i = 0; i < messages; i++) {
+            long timestamp = START + (i / 10_000) * 600_000L + random.nextInt(1_000);
+            long deviceId = 1 + i % 10_000;
+            double value = 0.25 + random.nextDouble() * 2.75;
+            byte[] body = ("{\"timestamp\":" + timestamp + ",\"deviceId\":" + deviceId + ",\"measurementValue\":"
+                + value + "}").getBytes(StandardCharsets.UTF_8);
+            jsonBytes += body.length;
+            jsonMessages[i] = message(body, MessageProperties.CONTENT_TYPE_JSON);
+            binaryMessages[i] = message(MeasurementMessageConverter.encode(timestamp, deviceId, value),
+                MeasurementMessageConverter.BINARY_CONTENT_TYPE);
+        }
+
+        System.out.printf("%,d messages, best of %d rounds%n%n", messages, rounds);
+        System.out.printf("%-8s %10s %12s %10s%n", "format", "B/message", "Mmsg/s", "ns/msg");
+        run("json", converter, jsonMessages, (double) jsonBytes / messages, rounds);
+        run("binary", converter, binaryMessages, MeasurementMessageConverter.BINARY_BYTES, rounds);
+    }
+
+    // The first round only warms up the JIT
+    private static void run(String name, MeasurementMessageConverter converter, Message[] messages,
+                            double bytesPerMessage, int rounds) {
+        double best = Double.MAX_VALUE;
+        for (int round = 0; round <= rounds; round++) {
+            long begin = System.nanoTime();
+            for (Message message : messages) {
+                DeviceMeasurementDTO measurement = (DeviceMeasurementDTO) converter.fromMessage(message);
+                sink += measurement.getMeasurementValue() + measurement.getDeviceId();
+            }
+            double seconds = (System.nanoTime() - begin) / 1e9;
+            if (round > 0) {
+                best = Math.min(best, seconds);
+            }
+        }
+        System.out.printf("%-8s %10.1f %12.2f %10.1f%n", name, bytesPerMessage, messages.length / best / 1e6,
+            best * 1e9 / messages.length);
+    }
+
+    private static Message message(byte[] body, String contentType) {
+        MessageProperties properties = new MessageProperties();
+        properties.setContentType(contentType);
+        properties.setInferredArgumentType(DeviceMeasurementDTO.class);
+        return new Message(body, properties);
+    }
+}
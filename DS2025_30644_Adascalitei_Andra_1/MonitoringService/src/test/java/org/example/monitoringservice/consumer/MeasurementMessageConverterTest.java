@@ -0,0 +1,63 @@
+package org.example.monitoringservice.consumer;
+
+import org.example.monitoringservice.dto.DeviceMeasurementDTO;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.amqp.support.converter.MessageConversionException;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MeasurementMessageConverterTest {
+
+    private final MeasurementMessageConverter converter =
+        new MeasurementMessageConverter(new Jackson2JsonMessageConverter());
+
+    @Test
+    void decodesBinaryRecords() {
+        byte[] body = MeasurementMessageConverter.encode(1_735_689_600_000L, 42, 0.8234567890123456);
+
+        assertEquals(MeasurementMessageConverter.BINARY_BYTES, body.length);
+        assertEquals(new DeviceMeasurementDTO(1_735_689_600_000L, 42, 0.8234567890123456),
+            converter.fromMessage(message(body, MeasurementMessageConverter.BINARY_CONTENT_TYPE)));
+    }
+
+    @Test
+    void fallsBackToJson() {
+        byte[] body = "{\"timestamp\":1735689600000,\"deviceId\":42,\"measurementValue\":0.5}"
+            .getBytes(StandardCharsets.UTF_8);
+
+        assertEquals(new DeviceMeasurementDTO(1_735_689_600_000L, 42, 0.5),
+            converter.fromMessage(message(body, MessageProperties.CONTENT_TYPE_JSON)));
+    }
+
+    @Test
+    void rejectsJsonWithMissingOrNullFields() {
+        byte[] missing = "{\"timestamp\":1735689600000,\"measurementValue\":0.5}".getBytes(StandardCharsets.UTF_8);
+        byte[] nullValue = "{\"timestamp\":1735689600000,\"deviceId\":42,\"measurementValue\":null}"
+            .getBytes(StandardCharsets.UTF_8);
+
+        assertThrows(MessageConversionException.class,
+            () -> converter.fromMessage(message(missing, MessageProperties.CONTENT_TYPE_JSON)));
+        assertThrows(MessageConversionException.class,
+            () -> converter.fromMessage(message(nullValue, MessageProperties.CONTENT_TYPE_JSON)));
+    }
+
+    @Test
+    void rejectsBinaryBodiesOfAnotherLength() {
+        assertThrows(MessageConversionException.class,
+            () -> converter.fromMessage(message(new byte[16], MeasurementMessageConverter.BINARY_CONTENT_TYPE)));
+    }
+
+    private static Message message(byte[] body, String contentType) {
+        MessageProperties properties = new MessageProperties();
+        properties.setContentType(contentType);
+        // What the listener adapter sets from the listener's parameter type
+        properties.setInferredArgumentType(DeviceMeasurementDTO.class);
+        return new Message(body, properties);
+    }
+}
@@ -0,0 +1,58 @@
+package org.example.monitoringservice.dto;
+
+import org.example.monitoringservice.repository.HourlyValue;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ConsumptionSeriesTest {
+
+    private static final ZoneId BUCHAREST = ZoneId.of("Europe/Bucharest");
+
+    @Test
+    void placesRowsByHourAndMarksMissingOnes() {
+        LocalDate day = LocalDate.of(2025, 6, 15);
+        ConsumptionSeries series = ConsumptionSeries.ofDay(day, List.of(
+            value(day.atTime(0, 0), 1.5),
+            value(day.atTime(13, 0), 2.25),
+            value(day.atTime(23, 0), 0.75)), BUCHAREST);
+
+        assertEquals(day.atStartOfDay(BUCHAREST).toInstant().toEpochMilli(), series.start());
+        assertEquals(ConsumptionSeries.HOUR_MILLIS, series.step());
+        assertEquals(24, series.values().length);
+        assertEquals(1.5, series.values()[0], 0.0);
+        assertEquals(2.25, series.values()[13], 0.0);
+        assertEquals(0.75, series.values()[23], 0.0);
+        assertEquals(0.0, series.values()[12], 0.0);
+        assertEquals((1 << 0) | (1 << 13) | (1 << 23), series.present());
+    }
+
+    @Test
+    void springForwardDayHasTwentyThreeHours() {
+        LocalDate day = LocalDate.of(2025, 3, 30);
+        ConsumptionSeries series = ConsumptionSeries.ofDay(day, List.of(value(day.atTime(4, 0), 1.0)), BUCHAREST);
+
+        assertEquals(23, series.values().length);
+        // 03:00 does not exist that night, so 04:00 is the fourth hour of the day
+        assertEquals(1 << 3, series.present());
+    }
+
+    private static HourlyValue value(LocalDateTime timestamp, double energy) {
+        return new HourlyValue() {
+            @Override
+            public LocalDateTime getTimestamp() {
+                return timestamp;
+            }
+
+            @Override
+            public Double getEnergyConsumption() {
+                return energy;
+            }
+        };
+    }
+}
@@ -0,0 +1,57 @@
+package org.example.monitoringservice.index;
+
+import org.example.monitoringservice.entity.User;
+import org.example.monitoringservice.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class DeviceOwnerIndexTest {
+
+    private final AtomicReference<Runnable> duringRead = new AtomicReference<>(() -> { });
+    private final AtomicReference<List<User>> table = new AtomicReference<>(List.of());
+
+    @Test
+    void reloadKeepsChangesMadeWhileItReadTheTable() {
+        table.set(List.of(new User(1L, 10L), new User(2L, 20L)));
+        DeviceOwnerIndex index = new DeviceOwnerIndex(users());
+        index.reload();
+
+        // The read returns the table as it was before these sync events were consumed
+        duringRead.set(() -> {
+            index.assign(3, 30);
+            index.assign(1, 11);
+            index.removeDevice(20);
+        });
+        index.reload();
+
+        assertEquals(3, index.ownerOf(30));
+        assertEquals(1, index.ownerOf(11));
+        assertEquals(DeviceOwnerIndex.NO_OWNER, index.ownerOf(10));
+        assertEquals(DeviceOwnerIndex.NO_OWNER, index.ownerOf(20));
+
+        // Replayed once: the next reload trusts the table again
+        duringRead.set(() -> { });
+        table.set(List.of(new User(1L, 10L)));
+        index.reload();
+
+        assertEquals(1, index.ownerOf(10));
+        assertEquals(DeviceOwnerIndex.NO_OWNER, index.ownerOf(30));
+    }
+
+    private UserRepository users() {
+        return (UserRepository) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{UserRepository.class},
+            (proxy, method, args) -> {
+                if (!method.getName().equals("findAll") || args != null) {
+                    throw new UnsupportedOperationException(method.getName());
+                }
+                List<User> snapshot = table.get();
+                duringRead.get().run();
+                return snapshot;
+            });
+    }
+}
@@ -0,0 +1,35 @@
+package org.example.monitoringservice.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LongLongHashMapTest {
+
+    @Test
+    void matchesHashMapUnderRandomPutsAndRemoves() {
+        LongLongHashMap map = new LongLongHashMap(16);
+        Map<Long, Long> reference = new HashMap<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 200_000; i++) {
+            long key = random.nextInt(20_000);
+            if (random.nextInt(3) == 0) {
+                assertEquals((long) reference.getOrDefault(key, LongLongHashMap.NO_VALUE), map.remove(key));
+                reference.remove(key);
+            } else {
+                long value = random.nextLong();
+                assertEquals((long) reference.getOrDefault(key, LongLongHashMap.NO_VALUE), map.put(key, value));
+                reference.put(key, value);
+            }
+        }
+
+        assertEquals(reference.size(), map.size());
+        for (long key = 0; key < 20_000; key++) {
+            assertEquals((long) reference.getOrDefault(key, LongLongHashMap.NO_VALUE), map.get(key));
+        }
+    }
+}
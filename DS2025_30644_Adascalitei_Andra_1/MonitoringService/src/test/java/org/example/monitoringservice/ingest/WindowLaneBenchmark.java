@@ -0,0 +1,69 @@
+package org.example.monitoringservice.ingest;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.monitoringservice.metrics.IngestMetrics;
+import org.example.monitoringservice.window.HourlyAccumulator;
+
+import java.io.IOException;
+import java.util.Random;
+
+// Ingest throughput of one window lane for a clean stream, one sample per device and 10-minute slot,
+// and for the same stream with every sample redelivered several times in random order. No journal,
+// raw store or live totals are attached. Not a test; run through bench/window-lane-benchmark.sh.
+//
+// Usage: WindowLaneBenchmark [devices] [copies] [rounds]
+public class WindowLaneBenchmark {
+
+    private static final long BASE = 1_700_000_000_000L / HourlyAccumulator.HOUR_MILLIS * HourlyAccumulator.HOUR_MILLIS;
+    private static final long TEN_MINUTES = 600_000L;
+
+    public static void main(String[] args) throws IOException {
+        int devices = args.length > 0 ? Integer.parseInt(args[0]) : 50_000;
+        int copies = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+        MeasurementBatch clean = new MeasurementBatch(devices * 6);
+        for (int sample = 0; sample < 6; sample++) {
+            for (long device = 0; device < devices; device++) {
+                clean.add(device, BASE + sample * TEN_MINUTES, (device % 97) * 0.01 + sample * 0.1);
+            }
+        }
+        Random random = new Random(42);
+        int[] order = new int[devices * 6 * copies];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i % (devices * 6);
+        }
+        for (int i = order.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = order[i];
+            order[i] = order[j];
+            order[j] = swap;
+        }
+        MeasurementBatch storm = new MeasurementBatch(order.length);
+        for (int index : order) {
+            storm.add(clean.deviceId(index), clean.timestamp(index), clean.value(index));
+        }
+
+        System.out.printf("%,d devices x 6 samples, best of %d rounds%n%n", devices, rounds);
+        System.out.printf("%-16s %12s %12s%n", "stream", "samples", "Msamples/s");
+        run("clean", clean, rounds);
+        run(copies + "x duplicates", storm, rounds);
+    }
+
+    // The first round only warms up the JIT
+    private static void run(String name, MeasurementBatch batch, int rounds) throws IOException {
+        double best = Double.MAX_VALUE;
+        for (int round = 0; round <= rounds; round++) {
+            WindowLane lane = new WindowLane(0, 1, new WindowLane.Settings(300_000, 6, 3_600_000, 1_000_000, 2),
+                null, new IngestMetrics(new SimpleMeterRegistry()), null, null, null);
+            long begin = System.nanoTime();
+            lane.submit(batch).join();
+            double seconds = (System.nanoTime() - begin) / 1e9;
+            lane.close();
+            if (round > 0) {
+                best = Math.min(best, seconds);
+            }
+        }
+        System.out.printf("%-16s %,12d %12.2f%n", name, batch.size(), batch.size() / best / 1e6);
+    }
+}
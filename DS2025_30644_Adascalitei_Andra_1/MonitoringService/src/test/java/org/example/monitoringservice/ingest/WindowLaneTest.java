@@ -0,0 +1,188 @@
+package org.example.monitoringservice.ingest;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.monitoringservice.entity.HourlyConsumption;
+import org.example.monitoringservice.metrics.IngestMetrics;
+import org.example.monitoringservice.wal.WindowJournal;
+import org.example.monitoringservice.window.HourlyAccumulator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class WindowLaneTest {
+
+    private static final long BASE = 1_700_000_000_000L / HourlyAccumulator.HOUR_MILLIS * HourlyAccumulator.HOUR_MILLIS;
+    private static final long TEN_MINUTES = 600_000L;
+    private static final int DEVICES = 50_000;
+    private static final int COPIES = 4;
+    // Within the allowed future skew, and past the first hour by more than the allowed lateness
+    private static final long CLOSING = BASE + HourlyAccumulator.HOUR_MILLIS + 6 * 60_000L;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void duplicateStormKeepsSums() {
+        MeasurementBatch clean = new MeasurementBatch(DEVICES * 6);
+        MeasurementBatch storm = new MeasurementBatch(DEVICES * 6 * COPIES);
+        for (int sample = 0; sample < 6; sample++) {
+            for (long device = 0; device < DEVICES; device++) {
+                clean.add(device, BASE + sample * TEN_MINUTES, value(device, sample));
+            }
+        }
+        // Every sample delivered COPIES times, redeliveries scattered through the stream
+        Random random = new Random(42);
+        int[] order = new int[DEVICES * 6 * COPIES];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i % (DEVICES * 6);
+        }
+        for (int i = order.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = order[i];
+            order[i] = order[j];
+            order[j] = swap;
+        }
+        for (int index : order) {
+            storm.add(clean.deviceId(index), clean.timestamp(index), clean.value(index));
+        }
+
+        double[] stormSums = new double[DEVICES];
+        ingest(storm, stormSums);
+
+        for (int device = 0; device < DEVICES; device++) {
+            double expected = 0;
+            for (int sample = 0; sample < 6; sample++) {
+                expected += value(device, sample);
+            }
+            assertEquals(expected, stormSums[device], 1e-9, "device " + device);
+        }
+    }
+
+    @Test
+    void checkpointKeepsSweptWindowsUntilMarkedPersisted() throws IOException {
+        WindowLane lane = journaledLane();
+        WindowLane recovered = journaledLane();
+        try {
+            lane.recover().join();
+            MeasurementBatch batch = new MeasurementBatch(4);
+            batch.add(1L, BASE, 1.0);
+            batch.add(1L, BASE + TEN_MINUTES, 2.0);
+            batch.add(2L, BASE, 3.0);
+            batch.add(3L, CLOSING, 4.0);
+            lane.submit(batch).join();
+
+            List<HourlyConsumption> closed = lane.sweep(false).join().closed();
+            assertEquals(2, closed.size());
+            lane.markPersisted(closed.stream().filter(row -> row.getDeviceId() == 2L).toList(), false).join();
+            // A checkpoint taken while device 1's row is still being persisted, then a crash
+            lane.checkpointAsync().join();
+
+            recovered.recover().join();
+            List<HourlyConsumption> rows = recovered.sweep(false).join().closed();
+            assertEquals(1, rows.size());
+            assertEquals(1L, rows.get(0).getDeviceId().longValue());
+            assertEquals(3.0, rows.get(0).getEnergyConsumption(), 1e-9);
+            assertEquals(0b11, rows.get(0).getSlotMask());
+        } finally {
+            recovered.close();
+            lane.close();
+        }
+    }
+
+    @Test
+    void reopenRestoresTheSweptWindow() throws IOException {
+        WindowLane lane = journaledLane();
+        try {
+            lane.recover().join();
+            MeasurementBatch batch = new MeasurementBatch(3);
+            batch.add(1L, BASE, 1.0);
+            batch.add(1L, BASE + 3 * TEN_MINUTES, 5.0);
+            batch.add(3L, CLOSING, 4.0);
+            lane.submit(batch).join();
+
+            // The upsert failed: the row goes back, and a redelivered sample is still a duplicate
+            lane.reopen(lane.sweep(false).join().closed(), false).join();
+            MeasurementBatch redelivered = new MeasurementBatch(1);
+            redelivered.add(1L, BASE + 3 * TEN_MINUTES, 5.0);
+            lane.submit(redelivered).join();
+
+            List<HourlyConsumption> rows = lane.sweep(false).join().closed();
+            assertEquals(1, rows.size());
+            assertEquals(6.0, rows.get(0).getEnergyConsumption(), 1e-9);
+            assertEquals(0b1001, rows.get(0).getSlotMask());
+            assertEquals(5.0, rows.get(0).getSlotValues()[3], 1e-9);
+        } finally {
+            lane.close();
+        }
+    }
+
+    @Test
+    void markPersistedReturnsTheHourAsStored() throws IOException {
+        WindowLane lane = new WindowLane(0, 1, new WindowLane.Settings(300_000, 6, 3_600_000, 1_000_000, 2),
+            null, new IngestMetrics(new SimpleMeterRegistry()), null, null, null);
+        try {
+            MeasurementBatch first = new MeasurementBatch(2);
+            first.add(1L, BASE, 1.0);
+            first.add(1L, BASE + TEN_MINUTES, 2.0);
+            lane.submit(first).join();
+            assertEquals(3.0, lane.markPersisted(lane.sweep(true).join().closed(), false).join().get(0)
+                .getEnergyConsumption(), 1e-9);
+
+            // The rest of the hour after a flush, then late samples of a persisted and an unknown hour
+            MeasurementBatch rest = new MeasurementBatch(2);
+            rest.add(1L, BASE + 2 * TEN_MINUTES, 4.0);
+            rest.add(3L, CLOSING, 4.0);
+            lane.submit(rest).join();
+            List<HourlyConsumption> stored = lane.markPersisted(lane.sweep(false).join().closed(), false).join();
+            assertEquals(1, stored.size());
+            assertEquals(7.0, stored.get(0).getEnergyConsumption(), 1e-9);
+            assertEquals(3, stored.get(0).getSampleCount());
+
+            MeasurementBatch late = new MeasurementBatch(2);
+            late.add(1L, BASE + 5 * TEN_MINUTES, 5.0);
+            late.add(2L, BASE, 1.0);
+            lane.submit(late).join();
+            List<HourlyConsumption> corrections = lane.sweep(false).join().corrections();
+            assertEquals(2, corrections.size());
+            stored = lane.markPersisted(corrections, true).join();
+            assertEquals(1, stored.size());
+            assertEquals(1L, stored.get(0).getDeviceId().longValue());
+            assertEquals(12.0, stored.get(0).getEnergyConsumption(), 1e-9);
+            assertEquals(0b100111, stored.get(0).getSlotMask());
+        } finally {
+            lane.close();
+        }
+    }
+
+    private WindowLane journaledLane() {
+        return new WindowLane(0, 1, new WindowLane.Settings(300_000, 6, 3_600_000, 1_000_000, 2),
+            new WindowJournal(directory, 1 << 20), new IngestMetrics(new SimpleMeterRegistry()), null, null, null);
+    }
+
+    private static void ingest(MeasurementBatch batch, double[] sums) {
+        WindowLane lane = new WindowLane(0, 1, new WindowLane.Settings(300_000, 6, 3_600_000, 1_000_000, 2),
+            null, new IngestMetrics(new SimpleMeterRegistry()), null, null, null);
+        lane.submit(batch).join();
+
+        for (HourlyConsumption row : lane.sweep(true).join().closed()) {
+            assertEquals(6, row.getSampleCount());
+            assertEquals(0b111111, row.getSlotMask());
+            sums[row.getDeviceId().intValue()] = row.getEnergyConsumption();
+        }
+        try {
+            lane.close();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static double value(long device, int sample) {
+        return (device % 97) * 0.01 + sample * 0.1;
+    }
+}
@@ -0,0 +1,59 @@
+package org.example.monitoringservice.live;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LiveTotalsTest {
+
+    private final List<LiveUpdate> sent = new ArrayList<>();
+    private final LiveTotals live = new LiveTotals(5_000, sent::add);
+
+    @Test
+    void sendsFirstUpdateAtOnceAndHoldsBackTheRest() {
+        live.offer(update(1, 1.0, 1), 0);
+        live.offer(update(1, 2.0, 2), 1_000);
+        live.offer(update(1, 3.0, 3), 2_000);
+
+        assertEquals(List.of(update(1, 1.0, 1)), sent);
+    }
+
+    @Test
+    void drainSendsOnlyTheLatestPendingUpdateOnceDue() {
+        live.offer(update(1, 1.0, 1), 0);
+        live.offer(update(1, 2.0, 2), 1_000);
+        live.offer(update(1, 3.0, 3), 2_000);
+
+        assertEquals(0, live.drainDue(4_999));
+        assertEquals(1, live.drainDue(5_000));
+        assertEquals(List.of(update(1, 1.0, 1), update(1, 3.0, 3)), sent);
+    }
+
+    @Test
+    void throttlesEachDeviceOnItsOwn() {
+        live.offer(update(1, 1.0, 1), 0);
+        live.offer(update(2, 5.0, 1), 1_000);
+        live.offer(update(1, 2.0, 2), 6_000);
+
+        assertEquals(List.of(update(1, 1.0, 1), update(2, 5.0, 1), update(1, 2.0, 2)), sent);
+    }
+
+    @Test
+    void forgetsDevicesThatStayedQuiet() {
+        live.offer(update(1, 1.0, 1), 0);
+        live.offer(update(2, 5.0, 1), 0);
+        live.offer(update(2, 6.0, 2), 1_000);
+
+        live.drainDue(5_000);
+        assertEquals(1, live.trackedDevices());
+        live.drainDue(10_000);
+        assertEquals(0, live.trackedDevices());
+    }
+
+    private static LiveUpdate update(long deviceId, double total, int samples) {
+        return new LiveUpdate(deviceId, 0, total, samples, samples * 600_000L);
+    }
+}
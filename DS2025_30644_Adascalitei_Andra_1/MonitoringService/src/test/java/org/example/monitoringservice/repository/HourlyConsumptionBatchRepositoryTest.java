@@ -0,0 +1,112 @@
+package org.example.monitoringservice.repository;
+
+import org.example.monitoringservice.entity.HourlyConsumption;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.mysql.MySQLContainer;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Runs the upsert on a real MySQL with the Flyway schema: the per-slot terms read the stored mask
+// before slot_mask is reassigned, which only MySQL's left-to-right SET evaluation guarantees.
+@Testcontainers(disabledWithoutDocker = true)
+class HourlyConsumptionBatchRepositoryTest {
+
+    private static final LocalDateTime HOUR = LocalDateTime.of(2025, 1, 1, 10, 0);
+    private static final int EXPECTED_SAMPLES = 6;
+
+    @Container
+    private static final MySQLContainer MYSQL = new MySQLContainer("mysql:8.4");
+
+    private static JdbcTemplate jdbcTemplate;
+
+    private final HourlyConsumptionBatchRepository repository = new HourlyConsumptionBatchRepository(jdbcTemplate);
+
+    @BeforeAll
+    static void migrate() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+            MYSQL.getJdbcUrl() + "?rewriteBatchedStatements=true", MYSQL.getUsername(), MYSQL.getPassword());
+        Flyway.configure().dataSource(dataSource).load().migrate();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    @BeforeEach
+    void clear() {
+        jdbcTemplate.update("DELETE FROM hourly_consumption");
+    }
+
+    @Test
+    void addsOnlyTheSlotsTheStoredHourLacks() {
+        repository.upsertAll(List.of(row(1L, 1.0, 2.0, 3.0, 0, 0, 0)), EXPECTED_SAMPLES);
+        // Slot 2 is a redelivery with another value; slot 3 is new
+        repository.upsertAll(List.of(row(1L, 0, 0, 30.0, 4.0, 0, 0)), EXPECTED_SAMPLES);
+
+        assertStored(1L, 10.0, 4, 0b1111, false);
+
+        repository.upsertAll(List.of(row(1L, 0, 0, 0, 0, 5.0, 6.0)), EXPECTED_SAMPLES);
+
+        assertStored(1L, 21.0, 6, 0b111111, true);
+    }
+
+    @Test
+    void redeliveredHourLeavesTheStoredRowAlone() {
+        HourlyConsumption row = row(2L, 1.0, 2.0, 0, 0, 0, 0);
+        repository.upsertAll(List.of(row), EXPECTED_SAMPLES);
+        repository.upsertAll(List.of(row, row(3L, 5.0, 0, 0, 0, 0, 0)), EXPECTED_SAMPLES);
+
+        assertStored(2L, 3.0, 2, 0b11, false);
+        assertStored(3L, 5.0, 1, 0b1, false);
+    }
+
+    @Test
+    void legacyRowWithoutMaskTakesEveryIncomingSlot() {
+        jdbcTemplate.update("INSERT INTO hourly_consumption (device_id, timestamp, energy_consumption) VALUES (?, ?, ?)",
+            4L, Timestamp.valueOf(HOUR), 7.5);
+
+        repository.upsertAll(List.of(row(4L, 1.0, 2.0, 0, 0, 0, 0)), EXPECTED_SAMPLES);
+
+        assertStored(4L, 10.5, 2, 0b11, false);
+    }
+
+    // A zero value marks a slot without a sample
+    private static HourlyConsumption row(long deviceId, double... slotValues) {
+        int slotMask = 0;
+        double sum = 0;
+        for (int i = 0; i < slotValues.length; i++) {
+            if (slotValues[i] != 0) {
+                slotMask |= 1 << i;
+                sum += slotValues[i];
+            }
+        }
+        HourlyConsumption row = new HourlyConsumption();
+        row.setDeviceId(deviceId);
+        row.setTimestamp(HOUR);
+        row.setEnergyConsumption(sum);
+        row.setSampleCount(Integer.bitCount(slotMask));
+        row.setComplete(Integer.bitCount(slotMask) >= EXPECTED_SAMPLES);
+        row.setSlotMask(slotMask);
+        row.setSlotValues(slotValues);
+        return row;
+    }
+
+    private static void assertStored(long deviceId, double energy, int sampleCount, int slotMask, boolean complete) {
+        Map<String, Object> stored = jdbcTemplate.queryForMap(
+            "SELECT energy_consumption, sample_count, slot_mask, complete = 1 AS complete FROM hourly_consumption " +
+                "WHERE device_id = ? AND timestamp = ?", deviceId, Timestamp.valueOf(HOUR));
+        assertEquals(energy, ((Number) stored.get("energy_consumption")).doubleValue(), 1e-9);
+        assertEquals(sampleCount, ((Number) stored.get("sample_count")).intValue());
+        assertEquals(slotMask, ((Number) stored.get("slot_mask")).intValue());
+        assertEquals(complete, ((Number) stored.get("complete")).intValue() == 1);
+    }
+}
@@ -0,0 +1,54 @@
+package org.example.monitoringservice.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HourlyPartitionPlannerTest {
+
+    @Test
+    void splitsPmaxUpToMonthsAheadAfterMigration() {
+        List<HourlyPartitionPlanner.Partition> partitions = List.of(
+            new HourlyPartitionPlanner.Partition("p_history", LocalDate.of(2025, 1, 1)),
+            new HourlyPartitionPlanner.Partition("pmax", null));
+
+        HourlyPartitionPlanner.Plan plan = HourlyPartitionPlanner.plan(partitions, YearMonth.of(2025, 11), 3, 0);
+
+        assertEquals(14, plan.create().size());
+        assertEquals(YearMonth.of(2025, 1), plan.create().get(0));
+        assertEquals(YearMonth.of(2026, 2), plan.create().get(13));
+        assertTrue(plan.drop().isEmpty());
+    }
+
+    @Test
+    void dropsOnlyPartitionsEntirelyBeforeRetention() {
+        List<HourlyPartitionPlanner.Partition> partitions = List.of(
+            new HourlyPartitionPlanner.Partition("p_history", LocalDate.of(2025, 1, 1)),
+            new HourlyPartitionPlanner.Partition("p202501", LocalDate.of(2025, 2, 1)),
+            new HourlyPartitionPlanner.Partition("p202502", LocalDate.of(2025, 3, 1)),
+            new HourlyPartitionPlanner.Partition("p202503", LocalDate.of(2025, 4, 1)),
+            new HourlyPartitionPlanner.Partition("pmax", null));
+
+        HourlyPartitionPlanner.Plan plan = HourlyPartitionPlanner.plan(partitions, YearMonth.of(2026, 2), 0, 12);
+
+        assertEquals(List.of("p_history", "p202501"), plan.drop());
+        assertEquals(YearMonth.of(2025, 4), plan.create().get(0));
+        assertEquals(YearMonth.of(2026, 2), plan.create().get(plan.create().size() - 1));
+    }
+
+    @Test
+    void nothingToDoOnceCaughtUp() {
+        List<HourlyPartitionPlanner.Partition> partitions = List.of(
+            new HourlyPartitionPlanner.Partition("p202511", LocalDate.of(2025, 12, 1)),
+            new HourlyPartitionPlanner.Partition("p202512", LocalDate.of(2026, 1, 1)),
+            new HourlyPartitionPlanner.Partition("pmax", null));
+
+        assertTrue(HourlyPartitionPlanner.plan(partitions, YearMonth.of(2025, 12), 0, 24).isEmpty());
+        assertEquals("p202601", HourlyPartitionPlanner.partitionName(YearMonth.of(2026, 1)));
+    }
+}
@@ -0,0 +1,65 @@
+package org.example.monitoringservice.tsdb;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChunkEncoderTest {
+
+    private static final long BASE = 1_700_000_000_000L;
+    private static final long TEN_MINUTES = 600_000L;
+
+    @Test
+    void roundTripsJitteredTimestampsAndRoundedValues() {
+        Random random = new Random(7);
+        ChunkEncoder chunk = new ChunkEncoder(3);
+        long[] timestamps = new long[240];
+        double[] values = new double[240];
+        long timestamp = BASE;
+        for (int i = 0; i < timestamps.length; i++) {
+            // A gap of a few hours now and then exercises the wide delta-of-delta buckets
+            timestamp += i % 50 == 49 ? 4 * 3_600_000L : TEN_MINUTES + random.nextInt(2_000) - 1_000;
+            timestamps[i] = timestamp;
+            values[i] = 0.25 + random.nextDouble() * 2.75;
+            chunk.append(timestamps[i], values[i]);
+        }
+
+        RawSamples decoded = new RawSamples();
+        ChunkDecoder.decode(chunk.toBytes(), 0, chunk.count(), chunk.decimals(), decoded);
+
+        assertEquals(timestamps.length, decoded.size());
+        for (int i = 0; i < timestamps.length; i++) {
+            assertEquals(timestamps[i], decoded.timestamps()[i]);
+            assertEquals(Math.rint(values[i] * 1000) / 1000, decoded.values()[i], 0.0);
+        }
+    }
+
+    @Test
+    void storesValuesExactlyWithoutDecimals() {
+        ChunkEncoder chunk = new ChunkEncoder(-1);
+        double[] values = {0.1 + 0.2, -3.5, Double.MIN_VALUE, 1e300, 0.0, 0.0, 42.0};
+        for (int i = 0; i < values.length; i++) {
+            chunk.append(BASE + i * TEN_MINUTES, values[i]);
+        }
+
+        RawSamples decoded = new RawSamples();
+        ChunkDecoder.decode(chunk.toBytes(), 0, chunk.count(), chunk.decimals(), decoded);
+
+        for (int i = 0; i < values.length; i++) {
+            assertEquals(Double.doubleToLongBits(values[i]), Double.doubleToLongBits(decoded.values()[i]));
+        }
+    }
+
+    @Test
+    void regularIntervalsAndSteadyReadingsTakeAFewBitsEach() {
+        ChunkEncoder chunk = new ChunkEncoder(3);
+        for (int i = 0; i < 240; i++) {
+            chunk.append(BASE + i * TEN_MINUTES, i % 6 == 0 ? 0.52 : 0.5);
+        }
+        // 16 bytes for the first sample, then one bit of timestamp and a short value window per sample
+        assertTrue(chunk.byteLength() < 16 + 240, "chunk took " + chunk.byteLength() + " bytes");
+    }
+}
@@ -0,0 +1,104 @@
+package org.example.monitoringservice.tsdb;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+// Bytes per sample and scan throughput of the raw sample store on simulator-like data: a per-device
+// base load, the simulator's time-of-day factors and +-10% noise, one sample every 10 minutes.
+// Not a test; run through bench/raw-store-benchmark.sh.
+//
+// Usage: RawSampleStoreBenchmark [devices] [days] [scans]
+public class RawSampleStoreBenchmark {
+
+    private static final long TEN_MINUTES = 600_000L;
+    private static final long START = 1_735_689_600_000L;
+
+    public static void main(String[] args) throws IOException {
+        int devices = args.length > 0 ? Integer.parseInt(args[0]) : 1_000;
+        int days = args.length > 1 ? Integer.parseInt(args[1]) : 60;
+        int scans = args.length > 2 ? Integer.parseInt(args[2]) : 2_000;
+        int samplesPerDevice = days * 144;
+
+        System.out.printf("%d devices x %d samples (%d days), %d scans per case%n%n",
+            devices, samplesPerDevice, days, scans);
+        System.out.printf("%-34s %10s %10s %12s %12s %10s%n", "case", "bytes", "B/sample", "vs 16 B", "Msamples/s",
+            "us/scan");
+        run("exact timestamps, 3 decimals", devices, samplesPerDevice, scans, 3, 0);
+        run("50 ms jitter, 3 decimals", devices, samplesPerDevice, scans, 3, 50);
+        run("1 s jitter, 3 decimals", devices, samplesPerDevice, scans, 3, 1_000);
+        run("50 ms jitter, 2 decimals", devices, samplesPerDevice, scans, 2, 50);
+        run("50 ms jitter, exact values", devices, samplesPerDevice, scans, -1, 50);
+    }
+
+    private static void run(String name, int devices, int samplesPerDevice, int scans, int decimals,
+                            int jitterMillis) throws IOException {
+        Path directory = Files.createTempDirectory("raw-bench");
+        try (RawSampleStore store = new RawSampleStore(directory, 256L * 1024 * 1024)) {
+            store.open();
+            HeadChunks heads = new HeadChunks(store, directory.resolve("heads/lane-0.bin"), 240, decimals);
+            Random random = new Random(42);
+            double[] baseLoads = new double[devices];
+            for (int device = 0; device < devices; device++) {
+                baseLoads[device] = 0.5 + random.nextDouble() * 1.5;
+            }
+            // Interleaved like live traffic: every device's sample i before anyone's sample i + 1
+            for (int i = 0; i < samplesPerDevice; i++) {
+                long slot = START + i * TEN_MINUTES;
+                for (int device = 0; device < devices; device++) {
+                    long timestamp = slot + (jitterMillis > 0 ? random.nextInt(jitterMillis) : 0);
+                    heads.append(device, timestamp, baseLoads[device] * hourlyFactor(slot)
+                        * (0.9 + random.nextDouble() * 0.2));
+                }
+            }
+            heads.sealAll();
+            store.sync();
+
+            long bytes = store.sizeBytes();
+            double perSample = (double) bytes / store.sampleCount();
+
+            // The first round only warms up the JIT
+            scanDays(store, random, devices, samplesPerDevice, scans);
+            long begin = System.nanoTime();
+            long read = scanDays(store, random, devices, samplesPerDevice, scans);
+            double seconds = (System.nanoTime() - begin) / 1e9;
+
+            System.out.printf("%-34s %10d %10.2f %12.1f %12.2f %10.1f%n", name, bytes, perSample, 16 / perSample,
+                read / seconds / 1e6, seconds * 1e6 / scans);
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    // A whole day of one random device per scan, served from the page cache
+    private static long scanDays(RawSampleStore store, Random random, int devices, int samplesPerDevice,
+                                 int scans) throws IOException {
+        long read = 0;
+        for (int i = 0; i < scans; i++) {
+            long from = START + random.nextInt(Math.max(1, samplesPerDevice / 144 - 1)) * 144 * TEN_MINUTES;
+            RawSamples day = new RawSamples();
+            store.scan(random.nextInt(devices), from, from + 144 * TEN_MINUTES, day);
+            read += day.size();
+        }
+        return read;
+    }
+
+    private static double hourlyFactor(long timestamp) {
+        int hour = (int) (timestamp / 3_600_000L % 24);
+        if (hour < 6) {
+            return 0.5;
+        } else if (hour < 9) {
+            return 1.2;
+        } else if (hour < 17) {
+            return 0.8;
+        } else if (hour < 22) {
+            return 1.5;
+        }
+        return 1.0;
+    }
+}
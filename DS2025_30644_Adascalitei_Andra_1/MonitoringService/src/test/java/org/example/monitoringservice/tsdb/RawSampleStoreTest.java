@@ -0,0 +1,116 @@
+package org.example.monitoringservice.tsdb;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RawSampleStoreTest {
+
+    private static final long BASE = 1_700_000_000_000L;
+    private static final long TEN_MINUTES = 600_000L;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void scansSealedAndReopenedChunksByTimeRange() throws IOException {
+        try (RawSampleStore store = new RawSampleStore(directory, 1 << 20)) {
+            store.open();
+            HeadChunks heads = new HeadChunks(store, directory.resolve("heads/lane-0.bin"), 10, 3);
+            for (int i = 0; i < 25; i++) {
+                heads.append(1L, BASE + i * TEN_MINUTES, i);
+                heads.append(2L, BASE + i * TEN_MINUTES, 100 + i);
+            }
+            assertEquals(4, store.chunkCount());
+
+            RawSamples open = new RawSamples();
+            heads.collect(1L, BASE, Long.MAX_VALUE, open);
+            assertEquals(5, open.size());
+        }
+
+        try (RawSampleStore store = new RawSampleStore(directory, 1 << 20)) {
+            RawSampleStore.OpenStats stats = store.open();
+            assertEquals(4, stats.chunks());
+            assertEquals(40, stats.samples());
+
+            RawSamples samples = new RawSamples();
+            int chunks = store.scan(1L, BASE + 5 * TEN_MINUTES, BASE + 15 * TEN_MINUTES, samples);
+            assertEquals(2, chunks);
+            assertEquals(10, samples.size());
+            assertEquals(BASE + 5 * TEN_MINUTES, samples.timestamps()[0]);
+            assertEquals(14.0, samples.values()[9], 0.0);
+        }
+    }
+
+    @Test
+    void cutsATornTailOnOpen() throws IOException {
+        try (RawSampleStore store = new RawSampleStore(directory, 1 << 20)) {
+            store.open();
+            HeadChunks heads = new HeadChunks(store, directory.resolve("heads/lane-0.bin"), 10, 3);
+            for (int i = 0; i < 20; i++) {
+                heads.append(1L, BASE + i * TEN_MINUTES, i);
+            }
+        }
+        Path segment = directory.resolve("chunks-00000001.dat");
+        long size = Files.size(segment);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(size - 3);
+        }
+
+        try (RawSampleStore store = new RawSampleStore(directory, 1 << 20)) {
+            RawSampleStore.OpenStats stats = store.open();
+            assertEquals(1, stats.chunks());
+            assertEquals(10, stats.samples());
+        }
+    }
+
+    @Test
+    void retentionDropsWholeOldSegments() throws IOException {
+        try (RawSampleStore store = new RawSampleStore(directory, 1)) {
+            store.open();
+            HeadChunks heads = new HeadChunks(store, directory.resolve("heads/lane-0.bin"), 10, 3);
+            for (int i = 0; i < 30; i++) {
+                heads.append(1L, BASE + i * TEN_MINUTES, i);
+            }
+            // One chunk per segment: the first two end before the cutoff, the last one is being appended to
+            assertEquals(2, store.dropSegmentsBefore(BASE + 25 * TEN_MINUTES));
+            assertEquals(10, store.sampleCount());
+
+            RawSamples samples = new RawSamples();
+            store.scan(1L, BASE, Long.MAX_VALUE, samples);
+            assertEquals(BASE + 20 * TEN_MINUTES, samples.timestamps()[0]);
+        }
+    }
+
+    @Test
+    void snapshotRestoresOpenChunksThatKeepEncoding() throws IOException {
+        try (RawSampleStore store = new RawSampleStore(directory, 1 << 20)) {
+            store.open();
+            HeadChunks heads = new HeadChunks(store, directory.resolve("heads/lane-0.bin"), 10, 3);
+            for (int i = 0; i < 6; i++) {
+                heads.append(1L, BASE + i * TEN_MINUTES, 0.5 + i);
+            }
+            heads.snapshot(3);
+
+            HeadChunks restored = new HeadChunks(store, directory.resolve("heads/lane-0.bin"), 10, 3);
+            assertEquals(1, restored.load());
+            assertEquals(3, restored.generation());
+            for (int i = 6; i < 10; i++) {
+                restored.append(1L, BASE + i * TEN_MINUTES, 0.5 + i);
+            }
+            assertEquals(1, store.chunkCount());
+
+            RawSamples samples = new RawSamples();
+            store.scan(1L, BASE, Long.MAX_VALUE, samples);
+            assertEquals(10, samples.size());
+            assertEquals(9.5, samples.values()[9], 0.0);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package org.example.monitoringservice.wal;
+
+import org.example.monitoringservice.window.EventTimeWatermark;
+import org.example.monitoringservice.window.HourlyAccumulator;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+// Recovery time of one lane's WAL: a checkpoint holding half of every device's hour plus a log with
+// the other half, recovered into an empty table. Not a test; run through bench/window-journal-benchmark.sh.
+//
+// Usage: WindowJournalBenchmark [devices] [rounds]
+public class WindowJournalBenchmark {
+
+    private static final long BASE = 1_700_000_000_000L / HourlyAccumulator.HOUR_MILLIS * HourlyAccumulator.HOUR_MILLIS;
+    private static final long TEN_MINUTES = 600_000L;
+    private static final int SEGMENT_BYTES = 64 * 1024 * 1024;
+
+    public static void main(String[] args) throws IOException {
+        int devices = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        Path directory = Files.createTempDirectory("window-journal-bench");
+        try {
+            write(directory, devices);
+            System.out.printf("%,d devices, 3 samples in the checkpoint and 3 in the log, best of %d rounds%n%n",
+                devices, rounds);
+            System.out.printf("%12s %12s %12s%n", "checkpoint", "replayed", "ms");
+            double best = Double.MAX_VALUE;
+            WindowJournal.RecoveryStats stats = null;
+            // The first round only warms up the JIT
+            for (int round = 0; round <= rounds; round++) {
+                try (WindowJournal journal = new WindowJournal(directory, SEGMENT_BYTES)) {
+                    stats = journal.recover(new HourlyAccumulator(devices), new HourlyAccumulator(),
+                        new EventTimeWatermark());
+                }
+                if (round > 0) {
+                    best = Math.min(best, stats.elapsedNanos() / 1e6);
+                }
+            }
+            System.out.printf("%,12d %,12d %12.1f%n", stats.checkpointWindows(), stats.replayedRecords(), best);
+        } finally {
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : files.toList()) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(directory);
+        }
+    }
+
+    private static void write(Path directory, int devices) throws IOException {
+        HourlyAccumulator accumulator = new HourlyAccumulator(devices);
+        EventTimeWatermark watermark = new EventTimeWatermark();
+        try (WindowJournal journal = new WindowJournal(directory, SEGMENT_BYTES)) {
+            journal.recover(accumulator, new HourlyAccumulator(), watermark);
+            for (int sample = 0; sample < 6; sample++) {
+                if (sample == 3) {
+                    journal.checkpoint(accumulator, new HourlyAccumulator(), watermark);
+                }
+                for (long device = 0; device < devices; device++) {
+                    long timestamp = BASE + sample * TEN_MINUTES;
+                    journal.appendSample(device, timestamp, 0.5);
+                    accumulator.add(device, timestamp, 0.5);
+                    watermark.observe(timestamp);
+                }
+            }
+            journal.sync();
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package org.example.monitoringservice.wal;
+
+import org.example.monitoringservice.window.EventTimeWatermark;
+import org.example.monitoringservice.window.HourlyAccumulator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WindowJournalTest {
+
+    private static final long BASE = 1_700_000_000_000L / HourlyAccumulator.HOUR_MILLIS * HourlyAccumulator.HOUR_MILLIS;
+    private static final long TEN_MINUTES = 600_000L;
+    private static final int SEGMENT_BYTES = 64 * 1024 * 1024;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recoversCheckpointPlusLogAndSkipsClosedWindows() throws IOException {
+        HourlyAccumulator accumulator = new HourlyAccumulator();
+        EventTimeWatermark watermark = new EventTimeWatermark();
+        try (WindowJournal journal = new WindowJournal(directory, SEGMENT_BYTES)) {
+            journal.recover(accumulator, new HourlyAccumulator(), watermark);
+            append(journal, accumulator, watermark, 1L, BASE, 1.0);
+            append(journal, accumulator, watermark, 2L, BASE, 2.0);
+            journal.checkpoint(accumulator, new HourlyAccumulator(), watermark);
+            append(journal, accumulator, watermark, 1L, BASE + TEN_MINUTES, 3.0);
+            append(journal, accumulator, watermark, 2L, BASE + TEN_MINUTES, 4.0);
+            journal.appendClose(2L, HourlyAccumulator.epochHour(BASE));
+            journal.sync();
+        }
+
+        HourlyAccumulator recovered = new HourlyAccumulator();
+        EventTimeWatermark recoveredWatermark = new EventTimeWatermark();
+        try (WindowJournal journal = new WindowJournal(directory, SEGMENT_BYTES)) {
+            WindowJournal.RecoveryStats stats = journal.recover(recovered, new HourlyAccumulator(), recoveredWatermark);
+            assertEquals(2, stats.checkpointWindows());
+            assertEquals(3, stats.replayedRecords());
+        }
+
+        assertEquals(1, recovered.size());
+        int slot = recovered.find(1L, HourlyAccumulator.epochHour(BASE));
+        assertEquals(4.0, recovered.sum(slot), 1e-9);
+        assertEquals(2, recovered.count(slot));
+        assertEquals(BASE + TEN_MINUTES, recoveredWatermark.maxEventTime());
+    }
+
+    @Test
+    void keepsLateSamplesPendingUntilCorrected() throws IOException {
+        try (WindowJournal journal = new WindowJournal(directory, SEGMENT_BYTES)) {
+            journal.recover(new HourlyAccumulator(), new HourlyAccumulator(), new EventTimeWatermark());
+            journal.appendLateSample(1L, BASE, 1.5);
+            journal.appendLateSample(2L, BASE, 2.5);
+            journal.appendCorrected(2L, HourlyAccumulator.epochHour(BASE));
+            journal.sync();
+        }
+
+        HourlyAccumulator pending = new HourlyAccumulator();
+        try (WindowJournal journal = new WindowJournal(directory, SEGMENT_BYTES)) {
+            journal.recover(new HourlyAccumulator(), pending, new EventTimeWatermark());
+        }
+
+        assertEquals(1, pending.size());
+        assertEquals(1.5, pending.sum(pending.find(1L, HourlyAccumulator.epochHour(BASE))), 1e-9);
+    }
+
+    @Test
+    void dropsCheckpointsOfAnotherVersionAndReplaysTheLog() throws IOException {
+        HourlyAccumulator accumulator = new HourlyAccumulator();
+        EventTimeWatermark watermark = new EventTimeWatermark();
+        try (WindowJournal journal = new WindowJournal(directory, SEGMENT_BYTES)) {
+            journal.recover(accumulator, new HourlyAccumulator(), watermark);
+            append(journal, accumulator, watermark, 1L, BASE, 1.0);
+            journal.checkpoint(accumulator, new HourlyAccumulator(), watermark);
+            append(journal, accumulator, watermark, 2L, BASE + TEN_MINUTES, 2.0);
+            journal.sync();
+        }
+        Path checkpoint = directory.resolve("checkpoint.bin");
+        try (FileChannel out = FileChannel.open(checkpoint, StandardOpenOption.WRITE)) {
+            out.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, 3), Integer.BYTES);
+        }
+
+        HourlyAccumulator recovered = new HourlyAccumulator();
+        try (WindowJournal journal = new WindowJournal(directory, SEGMENT_BYTES)) {
+            WindowJournal.RecoveryStats stats = journal.recover(recovered, new HourlyAccumulator(), new EventTimeWatermark());
+            assertEquals(3, stats.droppedCheckpointVersion());
+            assertEquals(0, stats.checkpointWindows());
+            assertEquals(1, stats.replayedRecords());
+            assertEquals(1L, journal.generation());
+        }
+
+        assertFalse(Files.exists(checkpoint));
+        assertEquals(1, recovered.size());
+        assertEquals(2.0, recovered.sum(recovered.find(2L, HourlyAccumulator.epochHour(BASE))), 1e-9);
+    }
+
+    @Test
+    void recoversHundredThousandDevicesFromCheckpointAndLog() throws IOException {
+        int devices = 100_000;
+        HourlyAccumulator accumulator = new HourlyAccumulator(devices);
+        EventTimeWatermark watermark = new EventTimeWatermark();
+        try (WindowJournal journal = new WindowJournal(directory, SEGMENT_BYTES)) {
+            journal.recover(accumulator, new HourlyAccumulator(), watermark);
+            for (int sample = 0; sample < 3; sample++) {
+                for (long device = 0; device < devices; device++) {
+                    append(journal, accumulator, watermark, device, BASE + sample * TEN_MINUTES, 0.5);
+                }
+            }
+            journal.checkpoint(accumulator, new HourlyAccumulator(), watermark);
+            for (int sample = 3; sample < 6; sample++) {
+                for (long device = 0; device < devices; device++) {
+                    append(journal, accumulator, watermark, device, BASE + sample * TEN_MINUTES, 0.5);
+                }
+            }
+            journal.sync();
+        }
+
+        HourlyAccumulator recovered = new HourlyAccumulator(devices);
+        WindowJournal.RecoveryStats stats;
+        try (WindowJournal journal = new WindowJournal(directory, SEGMENT_BYTES)) {
+            stats = journal.recover(recovered, new HourlyAccumulator(), new EventTimeWatermark());
+        }
+
+        assertEquals(devices, stats.checkpointWindows());
+        assertEquals(3 * devices, stats.replayedRecords());
+        assertEquals(devices, recovered.size());
+        int slot = recovered.find(42L, HourlyAccumulator.epochHour(BASE));
+        assertEquals(3.0, recovered.sum(slot), 1e-9);
+        assertEquals(6, recovered.count(slot));
+    }
+
+    private static void append(WindowJournal journal, HourlyAccumulator accumulator, EventTimeWatermark watermark,
+                               long deviceId, long timestamp, double value) {
+        assertTrue(journal.appendSample(deviceId, timestamp, value));
+        accumulator.add(deviceId, timestamp, value);
+        watermark.observe(timestamp);
+    }
+}
@@ -0,0 +1,46 @@
+package org.example.monitoringservice.window;
+
+// Memory and add throughput of the window table with one open window per device: table bytes per
+// window from its array capacity, the heap growth measured around it, and samples added per second.
+// Not a test; run through bench/hourly-accumulator-benchmark.sh.
+//
+// Usage: HourlyAccumulatorBenchmark [windows] [rounds]
+public class HourlyAccumulatorBenchmark {
+
+    private static final long BASE = 1_700_000_000_000L / HourlyAccumulator.HOUR_MILLIS * HourlyAccumulator.HOUR_MILLIS;
+    private static final long TEN_MINUTES = 600_000L;
+
+    public static void main(String[] args) {
+        int windows = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        System.out.printf("%,d open windows x 6 samples, best of %d rounds%n%n", windows, rounds);
+        System.out.printf("%12s %14s %14s %12s%n", "capacity", "B/window", "heap B/window", "Msamples/s");
+        Runtime runtime = Runtime.getRuntime();
+        double best = Double.MAX_VALUE;
+        long heapBytes = 0;
+        HourlyAccumulator accumulator = null;
+        // The first round only warms up the JIT
+        for (int round = 0; round <= rounds; round++) {
+            accumulator = null;
+            System.gc();
+            long before = runtime.totalMemory() - runtime.freeMemory();
+            accumulator = new HourlyAccumulator(windows);
+            long begin = System.nanoTime();
+            for (int sample = 0; sample < 6; sample++) {
+                for (long device = 0; device < windows; device++) {
+                    accumulator.add(device, BASE + sample * TEN_MINUTES, 0.5);
+                }
+            }
+            double seconds = (System.nanoTime() - begin) / 1e9;
+            System.gc();
+            heapBytes = runtime.totalMemory() - runtime.freeMemory() - before;
+            if (round > 0) {
+                best = Math.min(best, seconds);
+            }
+        }
+        System.out.printf("%,12d %14.1f %14.1f %12.2f%n", accumulator.capacity(),
+            (double) accumulator.estimatedSizeInBytes() / windows, (double) heapBytes / windows,
+            6.0 * windows / best / 1e6);
+    }
+}
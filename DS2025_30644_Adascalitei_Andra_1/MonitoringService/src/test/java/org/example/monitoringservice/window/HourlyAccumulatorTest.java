@@ -0,0 +1,128 @@
+package org.example.monitoringservice.window;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HourlyAccumulatorTest {
+
+    private static final long BASE = 1_700_000_000_000L / HourlyAccumulator.HOUR_MILLIS * HourlyAccumulator.HOUR_MILLIS;
+    private static final long TEN_MINUTES = 600_000L;
+
+    @Test
+    void foldsSamplesIntoOneWindowPerDeviceHour() {
+        HourlyAccumulator accumulator = new HourlyAccumulator();
+        for (int i = 0; i < 6; i++) {
+            accumulator.add(7L, BASE + i * TEN_MINUTES, i + 1.0);
+        }
+        accumulator.add(7L, BASE + HourlyAccumulator.HOUR_MILLIS, 10.0);
+        accumulator.add(8L, BASE, 3.0);
+
+        assertEquals(3, accumulator.size());
+        int slot = accumulator.find(7L, HourlyAccumulator.epochHour(BASE));
+        assertEquals(6, accumulator.count(slot));
+        assertEquals(21.0, accumulator.sum(slot), 1e-9);
+        assertEquals(1.0, accumulator.min(slot), 1e-9);
+        assertEquals(6.0, accumulator.max(slot), 1e-9);
+        assertEquals(0b111111, accumulator.slotMask(slot));
+    }
+
+    @Test
+    void ignoresSecondSampleForTheSameSlot() {
+        HourlyAccumulator accumulator = new HourlyAccumulator();
+        accumulator.add(7L, BASE, 1.0);
+        accumulator.add(7L, BASE + TEN_MINUTES, 2.0);
+
+        assertEquals(HourlyAccumulator.DUPLICATE, accumulator.add(7L, BASE, 1.0));
+        assertEquals(HourlyAccumulator.DUPLICATE, accumulator.add(7L, BASE + TEN_MINUTES + 1, 2.0));
+        assertTrue(accumulator.containsSample(7L, BASE + 5));
+        assertFalse(accumulator.containsSample(7L, BASE + 2 * TEN_MINUTES));
+
+        int slot = accumulator.find(7L, HourlyAccumulator.epochHour(BASE));
+        assertEquals(2, accumulator.count(slot));
+        assertEquals(3.0, accumulator.sum(slot), 1e-9);
+        assertEquals(0b11, accumulator.slotMask(slot));
+    }
+
+    @Test
+    void mergeOnlyAddsTheSlotsTheWindowLacks() {
+        HourlyAccumulator accumulator = new HourlyAccumulator();
+        accumulator.add(7L, BASE, 1.0);
+        accumulator.add(7L, BASE + TEN_MINUTES, 2.0);
+
+        // Slot 1 is a redelivery with a different value, slots 2 and 3 are new
+        double[] values = {0.0, 20.0, 3.0, 4.0, 0.0, 0.0};
+        int slot = accumulator.merge(7L, HourlyAccumulator.epochHour(BASE), 0b1110, values, 0);
+
+        assertEquals(0b1111, accumulator.slotMask(slot));
+        assertEquals(4, accumulator.count(slot));
+        assertEquals(10.0, accumulator.sum(slot), 1e-9);
+        assertEquals(2.0, accumulator.slotValue(slot, 1), 1e-9);
+        assertEquals(4.0, accumulator.max(slot), 1e-9);
+    }
+
+    @Test
+    void removeKeepsCollidingWindowsReachable() {
+        HourlyAccumulator accumulator = new HourlyAccumulator(16);
+        int devices = 10_000;
+        for (long device = 0; device < devices; device++) {
+            accumulator.add(device, BASE, device);
+        }
+        for (long device = 0; device < devices; device += 2) {
+            accumulator.remove(accumulator.find(device, HourlyAccumulator.epochHour(BASE)));
+        }
+
+        assertEquals(devices / 2, accumulator.size());
+        for (long device = 0; device < devices; device++) {
+            int slot = accumulator.find(device, HourlyAccumulator.epochHour(BASE));
+            if (device % 2 == 0) {
+                assertEquals(-1, slot);
+            } else {
+                assertEquals(device, accumulator.sum(slot), 1e-9);
+            }
+        }
+    }
+
+    @Test
+    void closeWindowsBeforeOnlyDrainsExpiredHours() {
+        HourlyAccumulator accumulator = new HourlyAccumulator();
+        int currentHour = HourlyAccumulator.epochHour(BASE);
+        for (long device = 0; device < 100; device++) {
+            accumulator.add(device, BASE - HourlyAccumulator.HOUR_MILLIS, 1.0);
+            accumulator.add(device, BASE, 2.0);
+        }
+
+        double[] closedSum = new double[1];
+        int closed = accumulator.closeWindowsBefore(currentHour, (acc, slot) -> closedSum[0] += acc.sum(slot));
+
+        assertEquals(100, closed);
+        assertEquals(100.0, closedSum[0], 1e-9);
+        assertEquals(100, accumulator.size());
+        for (long device = 0; device < 100; device++) {
+            assertEquals(-1, accumulator.find(device, currentHour - 1));
+            assertTrue(accumulator.find(device, currentHour) >= 0);
+        }
+    }
+
+    @Test
+    void millionOpenDeviceHoursFitThePresizedTable() {
+        int windows = 1_000_000;
+        HourlyAccumulator accumulator = new HourlyAccumulator(windows);
+        int capacity = accumulator.capacity();
+        for (int sample = 0; sample < 6; sample++) {
+            for (long device = 0; device < windows; device++) {
+                accumulator.add(device, BASE + sample * TEN_MINUTES, 0.5);
+            }
+        }
+
+        assertEquals(windows, accumulator.size());
+        // ceil(1,000,000 / 0.75) = 1,333,334 slots rounded up to the next power of two, which a million
+        // windows fill to 48%, under the 0.75 load factor, so the table never grows
+        assertEquals(1 << 21, capacity);
+        assertEquals(capacity, accumulator.capacity());
+        assertTrue(windows <= capacity * 0.75);
+        assertEquals((1L << 21) * HourlyAccumulator.BYTES_PER_SLOT, accumulator.estimatedSizeInBytes());
+    }
+}
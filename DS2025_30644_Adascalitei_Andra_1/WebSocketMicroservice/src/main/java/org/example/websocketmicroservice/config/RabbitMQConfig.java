@@ -15,6 +15,7 @@ public class RabbitMQConfig {
     // Queue names
     public static final String OVERCONSUMPTION_QUEUE = "overconsumption_queue";
     public static final String CHAT_QUEUE = "chat.queue";
+    public static final String LIVE_CONSUMPTION_QUEUE = "live_consumption_queue";
     
     // Exchange names  
     public static final String NOTIFICATION_EXCHANGE = "notification_exchange";
@@ -23,6 +24,11 @@ public class RabbitMQConfig {
     // Routing keys
     public static final String OVERCONSUMPTION_ROUTING_KEY = "notification.overconsumption";
     public static final String CHAT_ROUTING_KEY = "chat.message";
+    public static final String LIVE_CONSUMPTION_ROUTING_KEY = "consumption.live";
+
+    // Live updates are superseded within seconds, so they are never kept for long or across broker restarts
+    private static final int LIVE_CONSUMPTION_TTL_MS = 30000;
+    private static final int LIVE_CONSUMPTION_MAX_LENGTH = 100000;
 
     @Bean
     public Queue overconsumptionQueue() {
@@ -34,6 +40,14 @@ public class RabbitMQConfig {
         return new Queue(CHAT_QUEUE, true);
     }
 
+    @Bean
+    public Queue liveConsumptionQueue() {
+        return QueueBuilder.nonDurable(LIVE_CONSUMPTION_QUEUE)
+                .ttl(LIVE_CONSUMPTION_TTL_MS)
+                .maxLength(LIVE_CONSUMPTION_MAX_LENGTH)
+                .build();
+    }
+
     @Bean
     public TopicExchange notificationExchange() {
         return new TopicExchange(NOTIFICATION_EXCHANGE);
@@ -51,6 +65,13 @@ public class RabbitMQConfig {
                 .with(OVERCONSUMPTION_ROUTING_KEY);
     }
 
+    @Bean
+    public Binding liveConsumptionBinding() {
+        return BindingBuilder.bind(liveConsumptionQueue())
+                .to(notificationExchange())
+                .with(LIVE_CONSUMPTION_ROUTING_KEY);
+    }
+
     @Bean
     public Binding chatBinding() {
         return BindingBuilder.bind(chatQueue())
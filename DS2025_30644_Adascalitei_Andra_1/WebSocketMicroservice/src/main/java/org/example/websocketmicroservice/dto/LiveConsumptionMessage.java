@@ -0,0 +1,19 @@
+package org.example.websocketmicroservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Running total of a device's current hour; times are epoch milliseconds, like the chart series
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LiveConsumptionMessage {
+    private Long deviceId;
+    private Long hourStart;
+    private Double total;
+    private Integer samples;
+    private Long timestamp;
+}
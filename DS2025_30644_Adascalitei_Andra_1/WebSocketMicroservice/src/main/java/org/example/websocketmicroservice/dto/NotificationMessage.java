@@ -7,6 +7,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 @Data
 @Builder
@@ -28,6 +29,10 @@ public class NotificationMessage {
     private boolean read;
     private String severity; // INFO, WARNING, CRITICAL
 
+    // Set on overconsumption summaries: how many alerts were coalesced and which devices they came from
+    private Integer alertCount;
+    private List<Long> deviceIds;
+
     public enum NotificationType {
         OVERCONSUMPTION,
         DEVICE_OFFLINE,
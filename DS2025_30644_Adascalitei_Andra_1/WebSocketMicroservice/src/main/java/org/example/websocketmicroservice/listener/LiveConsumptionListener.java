@@ -0,0 +1,54 @@
+package org.example.websocketmicroservice.listener;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.stereotype.Component;
+import org.example.websocketmicroservice.config.RabbitMQConfig;
+import org.example.websocketmicroservice.dto.LiveConsumptionMessage;
+import org.example.websocketmicroservice.service.NotificationService;
+
+import java.util.Map;
+
+// Forwards the running hourly totals published by the monitoring service to the device's live topic
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class LiveConsumptionListener {
+
+    private final NotificationService notificationService;
+
+    @RabbitListener(queues = RabbitMQConfig.LIVE_CONSUMPTION_QUEUE)
+    public void handleLiveConsumption(Map<String, Object> message) {
+        try {
+            Long deviceId = getLongValue(message.get("deviceId"));
+            if (deviceId == null) {
+                log.error("Invalid live consumption message: missing deviceId");
+                return;
+            }
+
+            Long samples = getLongValue(message.get("samples"));
+            LiveConsumptionMessage update = LiveConsumptionMessage.builder()
+                    .deviceId(deviceId)
+                    .hourStart(getLongValue(message.get("hourStart")))
+                    .total(getDoubleValue(message.get("total")))
+                    .samples(samples != null ? samples.intValue() : null)
+                    .timestamp(getLongValue(message.get("timestamp")))
+                    .build();
+
+            notificationService.sendLiveConsumption(deviceId, update);
+        } catch (Exception e) {
+            log.error("Error processing live consumption update: {}", e.getMessage(), e);
+        }
+    }
+
+    private Long getLongValue(Object value) {
+        if (value instanceof Number) return ((Number) value).longValue();
+        return null;
+    }
+
+    private Double getDoubleValue(Object value) {
+        if (value instanceof Number) return ((Number) value).doubleValue();
+        return null;
+    }
+}
@@ -9,6 +9,8 @@ import org.example.websocketmicroservice.dto.NotificationMessage;
 import org.example.websocketmicroservice.service.NotificationService;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 @Component
@@ -42,8 +44,10 @@ public class OverconsumptionListener {
                 overPercentage = ((consumption - maxConsumption) / maxConsumption) * 100;
             }
 
-            // Determine severity
-            String severity = determineSeverity(overPercentage != null ? overPercentage : 0);
+            // Determine severity (monitoring sends it, older messages do not)
+            String severity = message.get("severity") instanceof String
+                ? (String) message.get("severity")
+                : determineSeverity(overPercentage != null ? overPercentage : 0);
 
             // Create notification message
             String notificationText = String.format(
@@ -54,6 +58,21 @@ public class OverconsumptionListener {
                 overPercentage != null ? overPercentage : 0.0
             );
 
+            // Summary of several breaches of the same user, led by the worst device
+            boolean summary = Boolean.TRUE.equals(message.get("summary"));
+            Integer alertCount = null;
+            List<Long> deviceIds = null;
+            if (summary) {
+                Long count = getLongValue(message.get("alertCount"));
+                alertCount = count != null ? count.intValue() : null;
+                deviceIds = getLongList(message.get("deviceIds"));
+                notificationText = String.format(
+                    "⚠️ %d overconsumption alerts on your devices. Worst: %s",
+                    alertCount != null ? alertCount : 0,
+                    notificationText.substring("⚠️ ".length())
+                );
+            }
+
             NotificationMessage notification = NotificationMessage.builder()
                     .notificationId(System.currentTimeMillis())
                     .userId(userId)
@@ -66,6 +85,8 @@ public class OverconsumptionListener {
                     .timestamp(LocalDateTime.now())
                     .read(false)
                     .severity(severity)
+                    .alertCount(alertCount)
+                    .deviceIds(deviceIds)
                     .build();
 
             // Send notification to specific user
@@ -105,6 +126,16 @@ public class OverconsumptionListener {
         return null;
     }
 
+    private List<Long> getLongList(Object value) {
+        if (!(value instanceof List)) return null;
+        List<Long> longs = new ArrayList<>();
+        for (Object item : (List<?>) value) {
+            Long longValue = getLongValue(item);
+            if (longValue != null) longs.add(longValue);
+        }
+        return longs;
+    }
+
     private Double getDoubleValue(Object value) {
         if (value == null) return null;
         if (value instanceof Double) return (Double) value;
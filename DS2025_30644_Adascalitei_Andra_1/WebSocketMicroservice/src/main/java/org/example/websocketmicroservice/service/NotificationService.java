@@ -2,6 +2,7 @@ package org.example.websocketmicroservice.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.example.websocketmicroservice.dto.LiveConsumptionMessage;
 import org.example.websocketmicroservice.dto.NotificationMessage;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
@@ -54,4 +55,13 @@ public class NotificationService {
             log.error("Failed to broadcast notification: {}", e.getMessage(), e);
         }
     }
-}
\ No newline at end of file
+
+    // Many updates per second across devices, so only failures are logged
+    public void sendLiveConsumption(Long deviceId, LiveConsumptionMessage update) {
+        try {
+            messagingTemplate.convertAndSend("/topic/consumption/" + deviceId, update);
+        } catch (Exception e) {
+            log.error("Failed to send live consumption of device {}: {}", deviceId, e.getMessage(), e);
+        }
+    }
+}